@@ -146,11 +146,7 @@ public class LazyMPEInference extends Observable implements ModelApplication {
 		// TODO: Check for consideration events when deciding to terminate?
 		
 		/* Commits the RandomVariableAtoms back to the Database */
-		int count = 0;
-		for (RandomVariableAtom atom : db.getAtomCache().getCachedRandomVariableAtoms()) {
-			atom.commitToDB();
-			count++;
-		}
+		int count = db.commitAll(db.getAtomCache().getCachedRandomVariableAtoms());
 		
 		double incompatibility = GroundKernels.getTotalWeightedIncompatibility(reasoner.getCompatibilityKernels());
 		double infeasibility = GroundKernels.getInfeasibilityNorm(reasoner.getConstraintKernels());
@@ -74,6 +74,15 @@ public class MPEInference implements ModelApplication {
 	 */
 	public static final ReasonerFactory REASONER_DEFAULT = new ADMMReasonerFactory();
 	
+	/**
+	 * Key for int property for the maximum number of results of a rule's
+	 * grounding query to hold in memory at once. If 0, all the results of
+	 * each query are read before grounding them.
+	 */
+	public static final String GROUNDING_FETCH_SIZE_KEY = CONFIG_PREFIX + ".groundingfetchsize";
+	/** Default value for GROUNDING_FETCH_SIZE_KEY */
+	public static final int GROUNDING_FETCH_SIZE_DEFAULT = 0;
+	
 	private Model model;
 	private Database db;
 	private ConfigBundle config;
@@ -103,17 +112,19 @@ public class MPEInference implements ModelApplication {
 		PersistedAtomManager atomManager = new PersistedAtomManager(db);
 		
 		log.info("Grounding out model.");
-		Grounding.groundAll(model, atomManager, reasoner);
+		int fetchSize = config.getInt(GROUNDING_FETCH_SIZE_KEY, GROUNDING_FETCH_SIZE_DEFAULT);
+		if (fetchSize < 0)
+			throw new IllegalArgumentException("Property " + GROUNDING_FETCH_SIZE_KEY + " must be non-negative.");
+		else if (fetchSize > 0)
+			Grounding.groundAll(model, atomManager, reasoner, fetchSize);
+		else
+			Grounding.groundAll(model, atomManager, reasoner);
 		log.info("Beginning inference.");
 		reasoner.optimize();
 		log.info("Inference complete. Writing results to Database.");
 		
 		/* Commits the RandomVariableAtoms back to the Database */
-		int count = 0;
-		for (RandomVariableAtom atom : atomManager.getPersistedRVAtoms()) {
-			atom.commitToDB();
-			count++;
-		}
+		int count = db.commitAll(atomManager.getPersistedRVAtoms());
 		
 		double incompatibility = GroundKernels.getTotalWeightedIncompatibility(reasoner.getCompatibilityKernels());
 		double infeasibility = GroundKernels.getInfeasibilityNorm(reasoner.getConstraintKernels());
@@ -0,0 +1,251 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.application.inference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.psl.application.ModelApplication;
+import edu.umd.cs.psl.application.util.GroundKernels;
+import edu.umd.cs.psl.application.util.Grounding;
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.database.Database;
+import edu.umd.cs.psl.database.rdbms.DatabaseComparer;
+import edu.umd.cs.psl.evaluation.result.FullInferenceResult;
+import edu.umd.cs.psl.evaluation.result.memory.ReasonerFullInferenceResult;
+import edu.umd.cs.psl.model.Model;
+import edu.umd.cs.psl.model.argument.GroundTerm;
+import edu.umd.cs.psl.model.argument.Term;
+import edu.umd.cs.psl.model.atom.Atom;
+import edu.umd.cs.psl.model.atom.AtomEventFramework;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.ObservedAtom;
+import edu.umd.cs.psl.model.atom.QueryAtom;
+import edu.umd.cs.psl.model.atom.RandomVariableAtom;
+import edu.umd.cs.psl.model.kernel.GroundKernel;
+import edu.umd.cs.psl.model.kernel.Kernel;
+import edu.umd.cs.psl.model.kernel.rule.AbstractRuleKernel;
+import edu.umd.cs.psl.model.predicate.Predicate;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasoner;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState;
+import edu.umd.cs.psl.reasoner.admm.StreamingADMMReasoner;
+
+/**
+ * Infers the most-probable explanation (MPE) state of the
+ * {@link RandomVariableAtom RandomVariableAtoms} in a {@link Database}
+ * repeatedly as its {@link ObservedAtom ObservedAtoms} change, keeping the
+ * ground model between rounds of inference.
+ * <p>
+ * The first call to {@link #mpeInference()} grounds the Model like
+ * {@link LazyMPEInference}. Afterwards, {@link #updateEvidence(Collection)}
+ * replaces the ground kernels of changed ObservedAtoms, so the next call only
+ * grounds the groundings that contain them. If
+ * {@link ADMMReasoner#INCREMENTAL_KEY} is true, the reasoner then only
+ * rebuilds the terms of the changed ground kernels, and the other terms keep
+ * their state, so the optimization starts from the previous solution.
+ */
+public class OnlineInferenceSession implements ModelApplication {
+
+	private static final Logger log = LoggerFactory.getLogger(OnlineInferenceSession.class);
+
+	private Model model;
+	private Database db;
+	private StreamingADMMReasoner reasoner;
+	private AtomEventFramework eventFramework;
+	private boolean grounded;
+
+	public OnlineInferenceSession(Model model, Database db, ConfigBundle config) {
+		this.model = model;
+		this.db = db;
+		reasoner = new StreamingADMMReasoner(config);
+		eventFramework = new AtomEventFramework(db, config);
+		grounded = false;
+		if (!config.getBoolean(ADMMReasoner.INCREMENTAL_KEY, ADMMReasoner.INCREMENTAL_DEFAULT))
+			log.warn("Property {} is false, so each round of inference will rebuild the whole model.",
+					ADMMReasoner.INCREMENTAL_KEY);
+
+		/* Registers the Model's Kernels with the AtomEventFramework */
+		for (Kernel k : model.getKernels())
+			k.registerForAtomEvents(eventFramework, reasoner);
+	}
+
+	/**
+	 * Replaces the ground kernels that contain ObservedAtoms whose truth
+	 * values changed, were added, or were removed in the Database.
+	 * <p>
+	 * Each atom is reloaded from the Database, its ground kernels are removed,
+	 * and the groundings of the Model's rules that contain it are grounded
+	 * again. Atoms that are not ObservedAtoms are skipped.
+	 *
+	 * @param atoms  the changed atoms, with {@link GroundTerm GroundTerms}
+	 *               as arguments
+	 * @return the number of ground kernels added
+	 * @throws IllegalArgumentException  if an atom has an argument that is
+	 *                                   not a GroundTerm
+	 */
+	public int updateEvidence(Collection<? extends Atom> atoms) {
+		if (!grounded) {
+			/* The whole model will be grounded from the current evidence */
+			for (Atom atom : atoms) {
+				QueryAtom key = new QueryAtom(atom.getPredicate(), getGroundArguments(atom));
+				if (db.getAtomCache().getCachedAtom(key) instanceof ObservedAtom)
+					db.getAtomCache().removeCachedAtom(key);
+			}
+			return 0;
+		}
+
+		int numRemoved = 0;
+		List<ObservedAtom> changed = new ArrayList<ObservedAtom>(atoms.size());
+		for (Atom atom : atoms) {
+			GroundTerm[] arguments = getGroundArguments(atom);
+			QueryAtom key = new QueryAtom(atom.getPredicate(), arguments);
+			GroundAtom old = db.getAtomCache().getCachedAtom(key);
+			if (old instanceof RandomVariableAtom) {
+				log.warn("Skipping update to random variable atom {}", old);
+				continue;
+			}
+
+			if (old != null) {
+				/* Removes the ground kernels of the stale atom from the reasoner and their other atoms */
+				for (GroundKernel gk : new ArrayList<GroundKernel>(old.getRegisteredGroundKernels())) {
+					reasoner.removeGroundKernel(gk);
+					for (GroundAtom other : gk.getAtoms())
+						other.unregisterGroundKernel(gk);
+					numRemoved++;
+				}
+				db.getAtomCache().removeCachedAtom(key);
+			}
+
+			GroundAtom atomNow = db.getAtom(atom.getPredicate(), arguments);
+			if (atomNow instanceof ObservedAtom)
+				changed.add((ObservedAtom) atomNow);
+			else
+				log.warn("Skipping update to random variable atom {}", atomNow);
+		}
+
+		/* Grounds the groundings that contain the reloaded atoms */
+		int numAdded = 0;
+		for (ObservedAtom atom : changed)
+			for (Kernel k : model.getKernels())
+				if (k instanceof AbstractRuleKernel)
+					numAdded += ((AbstractRuleKernel) k).groundContaining(atom, eventFramework, reasoner);
+
+		/* Grounds the groundings of any newly considered or activated atoms */
+		eventFramework.workOffJobQueue();
+		while (eventFramework.checkToActivate() > 0)
+			eventFramework.workOffJobQueue();
+
+		log.info("Updated {} evidence atoms: removed {} and added {} ground kernels",
+				new Object[] {changed.size(), numRemoved, numAdded});
+		return numAdded;
+	}
+
+	/**
+	 * Calls {@link #updateEvidence(Collection)} with the atoms that were
+	 * updated, added, or removed between the two Databases of a comparer.
+	 *
+	 * @param comparer  compares the previous evidence with the current
+	 * @param predicates  the Predicates of the evidence to compare
+	 * @return the number of ground kernels added
+	 */
+	public int updateEvidence(DatabaseComparer comparer, Collection<? extends Predicate> predicates) {
+		Set<QueryAtom> atoms = new HashSet<QueryAtom>();
+		for (Predicate p : predicates) {
+			atoms.addAll(comparer.queryUpdatedAtoms(p));
+			atoms.addAll(comparer.queryAddedAtoms(p));
+			atoms.addAll(comparer.queryRemovedAtoms(p));
+		}
+		return updateEvidence(atoms);
+	}
+
+	/**
+	 * Minimizes the total weighted incompatibility of the {@link GroundAtom GroundAtoms}
+	 * in the Database according to the Model and commits the updated truth
+	 * values back to the Database.
+	 * <p>
+	 * The first call grounds the Model. Later calls reuse the ground model,
+	 * updated by any calls to {@link #updateEvidence(Collection)}.
+	 *
+	 * @return inference results, including a snapshot of the state of the
+	 *         reasoner that later rounds of inference do not change
+	 */
+	public FullInferenceResult mpeInference() {
+		if (!grounded) {
+			log.info("Grounding out model.");
+			Grounding.groundAll(model, eventFramework, reasoner);
+			while (eventFramework.checkToActivate() > 0)
+				eventFramework.workOffJobQueue();
+			grounded = true;
+		}
+
+		log.info("Beginning inference.");
+		reasoner.optimize();
+		log.info("Inference complete. Writing results to Database.");
+
+		/* Commits the RandomVariableAtoms back to the Database */
+		int count = db.commitAll(db.getAtomCache().getCachedRandomVariableAtoms());
+
+		double incompatibility = GroundKernels.getTotalWeightedIncompatibility(reasoner.getCompatibilityKernels());
+		double infeasibility = GroundKernels.getInfeasibilityNorm(reasoner.getConstraintKernels());
+		int size = reasoner.size();
+		return new ReasonerFullInferenceResult(incompatibility, infeasibility,
+				count, size, new ADMMReasonerState(reasoner));
+	}
+
+	/**
+	 * Copies the arguments of an atom, which may be held in a Term[], into a
+	 * GroundTerm[].
+	 */
+	private static GroundTerm[] getGroundArguments(Atom atom) {
+		Term[] terms = atom.getArguments();
+		GroundTerm[] arguments = new GroundTerm[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			if (terms[i] instanceof GroundTerm)
+				arguments[i] = (GroundTerm) terms[i];
+			else
+				throw new IllegalArgumentException("Atom is not ground: " + atom);
+		}
+		return arguments;
+	}
+
+	/**
+	 * @return the reasoner holding the ground model
+	 */
+	public StreamingADMMReasoner getReasoner() {
+		return reasoner;
+	}
+
+	@Override
+	public void close() {
+		/* Unregisters the Model's Kernels with the AtomEventFramework */
+		for (Kernel k : model.getKernels())
+			k.unregisterForAtomEvents(eventFramework, reasoner);
+		reasoner.close();
+
+		model = null;
+		db = null;
+		reasoner = null;
+		eventFramework = null;
+	}
+
+}
@@ -17,13 +17,15 @@
 
 package edu.umd.cs.psl.application.inference;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +52,6 @@ import edu.umd.cs.psl.model.atom.ObservedAtom;
 import edu.umd.cs.psl.model.atom.PersistedAtomManager;
 import edu.umd.cs.psl.model.atom.QueryAtom;
 import edu.umd.cs.psl.model.atom.RandomVariableAtom;
-import edu.umd.cs.psl.model.kernel.GroundKernel;
 import edu.umd.cs.psl.model.kernel.Kernel;
 import edu.umd.cs.psl.model.kernel.predicateconstraint.DomainRangeConstraintKernel;
 import edu.umd.cs.psl.model.kernel.predicateconstraint.GroundValueConstraint;
@@ -61,13 +62,15 @@ import edu.umd.cs.psl.reasoner.ReasonerFactory;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasoner;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasonerFactory;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState;
-import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState.ADMMVariableEntry;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState.ChangedRegion;
 import edu.umd.cs.psl.reasoner.admm.ADMMStateActivator;
 import edu.umd.cs.psl.reasoner.admm.StreamingADMMReasoner;
 import edu.umd.cs.psl.reasoner.function.AtomFunctionVariable;
 import edu.umd.cs.psl.reasoner.function.MutableAtomFunctionVariable;
-import edu.umd.cs.psl.util.collection.MapSampler;
-import edu.umd.cs.psl.util.collection.MapSorter;
+import edu.umd.cs.psl.util.collection.IndexedMaxHeap;
+import edu.umd.cs.psl.util.collection.TopKSelector;
+import edu.umd.cs.psl.util.collection.WeightedSampler;
+import edu.umd.cs.psl.util.concurrent.ThreadPool;
 
 /**
  * @author jay
@@ -101,12 +104,92 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 	public static final String ACTIVATION_PERCENT = CONFIG_PREFIX + ".activation_percent";
 	public static final String SAMPLED_ACTIVATION = CONFIG_PREFIX + ".sampled_activation";
 	public static final String RELATIONAL_ACTIVATION = CONFIG_PREFIX + ".relational_activation";
+	/**
+	 * Key for long property. If set, seeds the random choices of sampled
+	 * activation so that they are reproducible.
+	 */
+	public static final String SAMPLING_SEED = CONFIG_PREFIX + ".sampling_seed";
+	/**
+	 * Key for boolean property. If true, inference starts from the
+	 * Activator's {@link ADMMReasonerState} instead of from the atoms' values.
+	 */
+	public static final String WARM_START = CONFIG_PREFIX + ".warm_start";
+	/**
+	 * Key for positive int property for the number of threads used to select
+	 * the variables to activate and to clamp the others. The Activator's
+	 * scoring is divided among threads by {@link ADMMStateActivator#NUM_THREADS}.
+	 */
+	public static final String NUM_THREADS = CONFIG_PREFIX + ".num_threads";
+	/** Default value for NUM_THREADS property (the number of processors) */
+	public static final int NUM_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Key for {@link ClampMode} enum property. Determines how the variables
+	 * that are not activated are clamped to their consensus estimates.
+	 */
+	public static final String CLAMP_MODE = CONFIG_PREFIX + ".clamp_mode";
+	/** Default value for CLAMP_MODE property */
+	public static final ClampMode CLAMP_MODE_DEFAULT = ClampMode.CONSTRAINT;
+	
+	/**
+	 * Key for non-negative long property for the latency budget of each call
+	 * to {@link #mpeInference()}, in milliseconds. If positive, the activation
+	 * quota is reduced to the number of variables the rest of the budget is
+	 * expected to pay for, at the per-variable cost of the optimization that
+	 * reached the Activator's state, and the reasoner stops at the end of the
+	 * budget with its latest checked iterate. 0 means no budget.
+	 */
+	public static final String LATENCY_BUDGET = CONFIG_PREFIX + ".latency_budget";
+	/** Default value for LATENCY_BUDGET property (no budget) */
+	public static final long LATENCY_BUDGET_DEFAULT = 0;
+	
+	/**
+	 * Key for int property. If non-negative, the variables within this many
+	 * hops of the terms containing the ObservedAtoms among the atoms to
+	 * activate are also activated, as found by
+	 * {@link ADMMReasonerState#findChangedRegion(java.util.Collection, int)}
+	 * before any are selected by score. Negative means none are.
+	 */
+	public static final String CHANGE_HOPS = CONFIG_PREFIX + ".change_hops";
+	/** Default value for CHANGE_HOPS property */
+	public static final int CHANGE_HOPS_DEFAULT = -1;
+	
+	/** Ways of clamping the variables that are not activated */
+	public enum ClampMode {
+		/** Each variable gets a {@link GroundValueConstraint} */
+		CONSTRAINT,
+		/**
+		 * Each variable's bounds in the reasoner are set to its value, so its
+		 * terms still update local copies of it
+		 */
+		BOUNDS,
+		/**
+		 * Each variable is folded into the constants of the reasoner's terms,
+		 * so it costs nothing per iteration
+		 */
+		FOLD
+	}
+	
+	/** Fewest clamped variables worth giving to another thread */
+	private static final int MIN_CLAMP_RANGE = 1000;
 	
 	private Model model;
 	private Database db;
 	private ConfigBundle config;
 	private ADMMStateActivator activator;
 	private Set<QueryAtom> toActivate;
+	private final int numThreads;
+	private final ClampMode clampMode;
+	private final long latencyBudget;
+	/** Time, as given by System.nanoTime(), at which the current epoch's budget ends */
+	private long deadline;
+	
+	/* Stage times of the last epoch, in nanoseconds */
+	private long lastScoreTime = 0;
+	private long lastSelectTime = 0;
+	private long lastGroundTime = 0;
+	private long lastClampTime = 0;
+	private long lastOptimizeTime = 0;
 	
 	public OnlineMPEInference(Model model, Database db, ConfigBundle config, ADMMStateActivator activator, Set<QueryAtom> atomsToActivate) {
 		super(model,db,config);
@@ -115,17 +198,28 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 		this.toActivate = atomsToActivate;
 		this.config = config;
 		this.activator = activator;
+		this.numThreads = config.getInt(NUM_THREADS, NUM_THREADS_DEFAULT);
+		if(numThreads <= 0){
+			throw new IllegalArgumentException("Property " + NUM_THREADS + " must be positive.");
+		}
+		this.clampMode = (ClampMode) config.getEnum(CLAMP_MODE, CLAMP_MODE_DEFAULT);
+		this.latencyBudget = config.getLong(LATENCY_BUDGET, LATENCY_BUDGET_DEFAULT);
+		if(latencyBudget < 0){
+			throw new IllegalArgumentException("Property " + LATENCY_BUDGET + " must be non-negative.");
+		}
 	}
 
 	private Set<GroundAtom> activateModel(Reasoner reasoner, 
 			AtomManager atomManager, AtomEventFramework eventFramework){
 		Set<GroundAtom> activated = new HashSet<GroundAtom>();
+		List<GroundAtom> changed = new ArrayList<GroundAtom>(toActivate.size());
 		
 		/** First activate the changes requested by model */
 		log.info("Activating atoms from model - "+toActivate.size()+" atoms");
 		for(Atom q : toActivate){
 			GroundAtom a = atomManager.getAtom(q.getPredicate(), (GroundTerm[]) q.getArguments());
 			activated.add(a);
+			changed.add(a);
 			if(a instanceof RandomVariableAtom){
 				log.trace("Activated - "+a.toString()+" as a variable");
 				eventFramework.activateAtom((RandomVariableAtom) a, AtomEvent.Type.ActivatedRVAtomOnline);
@@ -135,87 +229,148 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 			}
 		}
 		
-		//Score the variables
-		Map<GroundAtom,Double> varScores = activator.scoreVariables();
+		//Activate the variables affected by the changed atoms
+		int changeHops = config.getInt(CHANGE_HOPS, CHANGE_HOPS_DEFAULT);
+		if(changeHops >= 0){
+			ADMMReasonerState state = activator.getState();
+			ChangedRegion region = state.findChangedRegion(changed, changeHops);
+			int regionCnt = 0;
+			for(int v : region.getVariables()){
+				regionCnt += activateVariable(state.getVariableAtom(v), 0.0, activated, atomManager, eventFramework);
+			}
+			log.info("Activated "+regionCnt+" atoms within "+changeHops+" hops of "+region.getTerms().length+" changed terms");
+		}
+		
+		//Score the variables, by their indices in the Activator's state
+		long start = System.nanoTime();
+		double[] varScores = activator.scoreVariablesByIndex();
+		lastScoreTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		ADMMReasonerState state = activator.getState();
 		int activatedCnt = activated.size();
-		int activateQuota = computeActivationQuota(varScores.size());
+		int activateQuota = computeActivationQuota(varScores.length);
+		if(latencyBudget > 0){
+			activateQuota = computeBudgetedQuota(activateQuota, state);
+		}
 		if(config.getBoolean(RELATIONAL_ACTIVATION, false)){
 			activated = exploreBFSTiebreaking(atomManager, eventFramework, activated, varScores, activateQuota);
 		} else if(config.getBoolean(SAMPLED_ACTIVATION, false)){
-			Set<GroundAtom> sampledActivation =  MapSampler.sampleRepresentativeSet(varScores, activateQuota);
-			for(GroundAtom var : sampledActivation){
+			Long seed = config.getLong(SAMPLING_SEED, (Long) null);
+			Random rnd = (seed == null) ? new Random() : new Random(seed);
+			int[] sampledActivation = WeightedSampler.sample(varScores, activateQuota, rnd);
+			for(int j : sampledActivation){
 				if(activatedCnt >= activateQuota){ break; }
-				activatedCnt += activateVariable(var, varScores.get(var), activated, atomManager, eventFramework);
+				activatedCnt += activateVariable(state.getVariableAtom(j), varScores[j], activated, atomManager, eventFramework);
 			}			
 		} else {
-			Map<GroundAtom, Double> sortVarScores = MapSorter.sortByValueDescending(varScores);
-			for(GroundAtom var : sortVarScores.keySet()){
-				if(activatedCnt >= activateQuota){ break; }
-				activatedCnt += activateVariable(var, varScores.get(var), activated, atomManager, eventFramework);
-			}
+			activateTopScored(varScores, activatedCnt, activateQuota, activated, atomManager, eventFramework);
 		} 
+		lastSelectTime = System.nanoTime() - start;
 		return activated;
 
 	}
+	
+	/**
+	 * Activates variables in descending order of score until the quota is met.
+	 * Ties are broken by the variables' indices in the Activator's state.
+	 * <p>
+	 * Selects only as many of the top-scoring variables as are needed, selecting
+	 * more if some of them activate nothing, instead of sorting all of them.
+	 */
+	private int activateTopScored(double[] scores, int activatedCnt, int quota,
+			Set<GroundAtom> activated, AtomManager atomManager, AtomEventFramework eventFramework){
+		ADMMReasonerState state = activator.getState();
+		int consumed = 0;
+		while(activatedCnt < quota && consumed < scores.length){
+			/* Selection is deterministic, so the first consumed entries are unchanged */
+			int k = Math.max(2 * consumed, consumed + quota - activatedCnt);
+			int[] top = TopKSelector.select(scores, null, k, numThreads);
+			log.trace("Selected top "+top.length+" of "+scores.length+" scored variables");
+			while(consumed < top.length && activatedCnt < quota){
+				int j = top[consumed++];
+				activatedCnt += activateVariable(state.getVariableAtom(j), scores[j], activated, atomManager, eventFramework);
+			}
+		}
+		return activatedCnt;
+	}
 
 	/** Explore atom BFS - score-based tie breaking
 	 * Given this atom, perform BFS and add all atoms to a list until the quota
-	 * is exceeded. Use variable scores to order the atoms in the BFS queue
+	 * is exceeded. Use variable scores to order the atoms in the BFS queue:
+	 * an atom's priority is its score divided by 2^distance, with ties broken
+	 * by its variable index.
+	 * <p>
+	 * Atoms are identified by their variable indices in the Activator's state,
+	 * whose precomputed neighbor lists give the related atoms. The frontier is
+	 * an indexed heap, so an atom found closer is re-prioritized in O(log n).
 	 ***/
 	private Set<GroundAtom> exploreBFSTiebreaking(AtomManager atomManager, AtomEventFramework eventFramework, 
-			Set<GroundAtom> activated, Map<GroundAtom,Double> varScores, int quota){
-		Queue<AtomPriorityQueueElement> frontier = new PriorityQueue<AtomPriorityQueueElement>();
-		Map<GroundAtom,AtomPriorityQueueElement> explored = new HashMap<GroundAtom,AtomPriorityQueueElement>();
+			Set<GroundAtom> activated, double[] varScores, int quota){
+		ADMMReasonerState scoredState = activator.getState();
+		ADMMReasonerState state = (activator.getInitialState() == null) ? scoredState : activator.getInitialState();
+		int numVars = state.getNumVariables();
+		int[] neighborStart = state.getNeighborStart();
+		int[] neighbors = state.getNeighbors();
+		
+		/* Scores by variable index in the explored state; unscored atoms are skipped */
+		double[] scores;
+		boolean[] scored = new boolean[numVars];
+		if(state == scoredState){
+			scores = varScores;
+			Arrays.fill(scored, true);
+		} else {
+			scores = new double[numVars];
+			for(int i = 0; i < numVars; i++){
+				int index = scoredState.getVariableIndex(state.getVariableAtom(i));
+				if(index != -1){
+					scores[i] = varScores[index];
+					scored[i] = true;
+				}
+			}
+		}
+		
+		/* Distance at which each atom was last added to the frontier, or 0 if never */
+		int[] distance = new int[numVars];
+		IndexedMaxHeap frontier = new IndexedMaxHeap(numVars);
 		int selected = activated.size();
 		
-		//First add all the 1-hop neighbors of seeds
-		Set<GroundAtom> seedNeighbors = new HashSet<GroundAtom>();
+		//First add all the seeds and their 1-hop neighbors
 		for(GroundAtom seed : activated){
-			seedNeighbors.addAll(getRelatedAtoms(seed));
-		}
-		for( GroundAtom rel : seedNeighbors){
-			if(varScores.containsKey(rel)){
-				AtomPriorityQueueElement apqe = new AtomPriorityQueueElement(rel, varScores.get(rel), 1);
-				log.trace("Adding atom (from seedNeighbors) to frontier "+rel.toString()+" with score "+formatDouble(apqe.getScore()));
-				explored.put(rel, apqe);		
-				frontier.add(apqe);
-			} else {
-				log.trace("Skipping atom without score "+rel.toString());
+			int index = state.getVariableIndex(seed);
+			if(index == -1){ continue; }
+			explore(index, 1, scores, scored, distance, frontier);
+			for(int k = neighborStart[index]; k < neighborStart[index+1]; k++){
+				explore(neighbors[k], 1, scores, scored, distance, frontier);
 			}
 		}
 		
 		//Now do the BFS for real
-		AtomPriorityQueueElement seed;
-		while(selected < quota && (seed = frontier.poll()) != null) {
-			GroundAtom seedAtom = seed.getAtom();
-			selected += activateVariable(seedAtom, varScores.get(seedAtom), activated, atomManager, eventFramework);
-			log.trace("Activating variable for "+seedAtom.toString()+" with scores "+formatDouble(varScores.get(seedAtom))+"/"+formatDouble(seed.getScore())+" results in "+selected+" total selected");
-			for( GroundAtom rel : getRelatedAtoms(seedAtom)){
-				if(varScores.containsKey(rel)){
-					AtomPriorityQueueElement apqe =  new AtomPriorityQueueElement(rel, varScores.get(rel), seed.getDistance()+1);
-					if(explored.containsKey(rel)){ //seen earlier, possibly closer now?
-						if(apqe.getDistance() < explored.get(rel).getDistance()){
-							log.trace("Replacing previously-seen but closer atom (from frontierBFS) to frontier "+rel.toString()+" with score "+formatDouble(apqe.getScore()));
-							frontier.remove(explored.get(rel));
-							explored.remove(rel);
-							explored.put(rel,apqe);
-							frontier.add(apqe);
-						} //closer
-					} else {
-						log.trace("Adding (unseen) atom (from frontierBFS) to frontier "+rel.toString()+" with score "+formatDouble(apqe.getScore()));
-						frontier.add(apqe);
-						explored.put(rel, apqe);
-					}
-				} else {
-					log.trace("Skipping atom without score (frontier) "+rel.toString());
-				}//scored variable
+		while(selected < quota && !frontier.isEmpty()) {
+			double priority = frontier.getPriority(frontier.peek());
+			int seed = frontier.poll();
+			GroundAtom seedAtom = state.getVariableAtom(seed);
+			selected += activateVariable(seedAtom, scores[seed], activated, atomManager, eventFramework);
+			log.trace("Activating variable for "+seedAtom.toString()+" with scores "+formatDouble(scores[seed])+"/"+formatDouble(priority)+" results in "+selected+" total selected");
+			for(int k = neighborStart[seed]; k < neighborStart[seed+1]; k++){
+				explore(neighbors[k], distance[seed] + 1, scores, scored, distance, frontier);
 			} //related atoms
 		} //frontier exploration
 		
 		return activated;
 	}
-
-
+	
+	/**
+	 * Adds a scored atom to the frontier, or moves it if it is now closer
+	 */
+	private void explore(int index, int dist, double[] scores, boolean[] scored,
+			int[] distance, IndexedMaxHeap frontier){
+		if(!scored[index]){
+			log.trace("Skipping atom without score "+index);
+		} else if(distance[index] == 0 || dist < distance[index]){
+			distance[index] = dist;
+			frontier.put(index, scores[index] / Math.pow(2, dist));
+		}
+	}
 	
 	private String formatDouble(Double d){
 		return String.format("%03.3f",d);
@@ -239,6 +394,29 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 			return activateQuota;
 	}
 	
+	/**
+	 * Reduces the activation quota to the number of variables that the rest of
+	 * the latency budget is expected to pay for, at the cost per active
+	 * variable of the optimization that reached the given state.
+	 */
+	private int computeBudgetedQuota(int quota, ADMMReasonerState state){
+		long optimizeTime = state.getOptimizeTime();
+		int numActive = state.getNumActiveVariables();
+		if(optimizeTime <= 0 || numActive == 0){
+			log.debug("No optimization cost recorded in state - (using activation quota of "+quota+")");
+			return quota;
+		}
+		double costPerVariable = (double) optimizeTime / numActive;
+		long remaining = Math.max(0, deadline - System.nanoTime());
+		double affordable = remaining / costPerVariable;
+		if(affordable < quota){
+			log.info("Reducing activation quota from "+quota+" to "+(int) affordable+" to meet latency budget of "
+					+latencyBudget+" ms ("+formatDouble(costPerVariable / 1000)+" us per variable)");
+			return (int) affordable;
+		}
+		return quota;
+	}
+	
 	private int activateVariable(GroundAtom var, double score, Set<GroundAtom> activated,
 			AtomManager atomManager, AtomEventFramework eventFramework){
 		GroundAtom a = atomManager.getAtom(var.getPredicate(), var.getArguments());
@@ -271,8 +449,8 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 	private void primeAtomManager(AtomManager atomManager){
 		log.info("Priming write partition with values from previous epoch");
 		ADMMReasonerState s = activator.getState();
-		Map<GroundAtom, ADMMVariableEntry> varStates = s.getVariableStates();
-		for(GroundAtom gOld: varStates.keySet()){
+		for(int i = 0; i < s.getNumVariables(); i++){
+			GroundAtom gOld = s.getVariableAtom(i);
 			GroundAtom g = atomManager.getAtom(gOld.getPredicate(), gOld.getArguments());
 			if(g instanceof RandomVariableAtom){
 				((RandomVariableAtom) g).setValue(gOld.getValue());
@@ -281,15 +459,6 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 		}
 	}
 	
-	private Set<GroundAtom> getRelatedAtoms(GroundAtom seed){
-		Set<GroundAtom> atoms = new HashSet<GroundAtom>();
-		ADMMReasonerState state = (activator.getInitialState() == null) ? activator.getState() : activator.getInitialState(); 
-		for (GroundKernel gk : state.getAtomKernels(seed)){
-			atoms.addAll(gk.getAtoms());
-		}
-		return atoms;
-	}
-	
 	
 		
 	
@@ -319,24 +488,91 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 		}
 	}
 
+	/**
+	 * Clamps each variable of the Activator's state that was not activated
+	 * to its consensus estimate and grounds its supported model constraints.
+	 * <p>
+	 * The atoms to clamp are found first, since the AtomManager is not
+	 * thread-safe. In {@link ClampMode#CONSTRAINT} mode, their value
+	 * constraints are then created in parallel and added to the reasoner in a
+	 * batch. Otherwise, they are fixed in the reasoner.
+	 */
 	protected void clampVariablesConstraints(StreamingADMMReasoner reasoner, AtomManager atomManager,
 			Set<GroundAtom> activated){
-		int clamped = 0;
 		Set<Kernel> constraintKernels = findSupportedModelConstraints();
 		ADMMReasonerState s = activator.getState();
-		Map<GroundAtom, ADMMVariableEntry> varStates = s.getVariableStates();
-		for(GroundAtom gOld : varStates.keySet()){
+		final RandomVariableAtom[] atoms = new RandomVariableAtom[s.getNumVariables()];
+		final double[] values = new double[atoms.length];
+		int clamped = 0;
+		for(int i = 0; i < s.getNumVariables(); i++){
+			GroundAtom gOld = s.getVariableAtom(i);
 			GroundAtom g = atomManager.getAtom(gOld.getPredicate(), gOld.getArguments());
 			if(!activated.contains(g) && g instanceof RandomVariableAtom){
-				if(varStates.containsKey(gOld)){
-					ADMMVariableEntry e = varStates.get(gOld);
-					groundAtomConstraints(g,constraintKernels,reasoner,atomManager);
-					reasoner.addGroundKernel(new GroundValueConstraint(new ValueConstraintKernel(),g,e.consensusEstimate));
-					log.trace("Clamped "+g.toString()+" to consensus value "+formatDouble(e.consensusEstimate));
-					clamped++;
-				}//consensus known
+				atoms[clamped] = (RandomVariableAtom) g;
+				values[clamped] = s.getConsensusEstimate(i);
+				clamped++;
 			}//inference target, not in activated-set
-		} //atoms in reasone
+		} //atoms in reasoner
+		
+		boolean trace = log.isTraceEnabled();
+		if(clampMode != ClampMode.CONSTRAINT){
+			boolean fold = (clampMode == ClampMode.FOLD);
+			for(int j = 0; j < clamped; j++){
+				if(!constraintKernels.isEmpty()){
+					groundAtomConstraints(atoms[j],constraintKernels,reasoner,atomManager);
+				}
+				reasoner.fixVariable(atoms[j].getVariable(), values[j], fold);
+				if(trace){
+					log.trace("Fixed "+atoms[j].toString()+" to consensus value "+formatDouble(values[j]));
+				}
+			}
+			log.info("Fixed "+clamped+" variables to consensus estimates ("+clampMode+")");
+			return;
+		}
+		
+		/* All value constraints share a kernel, and each registers with only its own atom */
+		final ValueConstraintKernel kernel = new ValueConstraintKernel();
+		final GroundValueConstraint[] constraints = new GroundValueConstraint[clamped];
+		int numTasks = Math.min(numThreads, clamped / MIN_CLAMP_RANGE);
+		if(numTasks <= 1){
+			for(int j = 0; j < clamped; j++){
+				constraints[j] = new GroundValueConstraint(kernel, atoms[j], values[j]);
+			}
+		} else {
+			List<Future<?>> futures = new ArrayList<Future<?>>(numTasks);
+			int rangeSize = (clamped + numTasks - 1) / numTasks;
+			for(int rangeStart = 0; rangeStart < clamped; rangeStart += rangeSize){
+				final int begin = rangeStart;
+				final int end = Math.min(clamped, rangeStart + rangeSize);
+				futures.add(ThreadPool.getPool().submit(new Runnable() {
+					@Override
+					public void run() {
+						for(int j = begin; j < end; j++){
+							constraints[j] = new GroundValueConstraint(kernel, atoms[j], values[j]);
+						}
+					}
+				}));
+			}
+			try {
+				for(Future<?> future : futures){
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		
+		for(int j = 0; j < clamped; j++){
+			if(!constraintKernels.isEmpty()){
+				groundAtomConstraints(atoms[j],constraintKernels,reasoner,atomManager);
+			}
+			reasoner.addGroundKernel(constraints[j]);
+			if(trace){
+				log.trace("Clamped "+atoms[j].toString()+" to consensus value "+formatDouble(values[j]));
+			}
+		}
 		log.info("Clamped "+clamped+" variables to consensus estimates (constraints)");
 	}
     
@@ -355,6 +591,7 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 	public FullInferenceResult mpeInference() 
 			throws ClassNotFoundException, IllegalAccessException, InstantiationException {
 
+		deadline = System.nanoTime() + latencyBudget * 1000000;
 		Reasoner reasoner = new StreamingADMMReasoner(config);
 		PersistedAtomManager atomManager; 
 		if(activator != null){
@@ -371,38 +608,101 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 			Set<GroundAtom> activatedAtoms = activateModel(reasoner,atomManager, eventFramework);
 			log.info("Activated "+activatedAtoms.size()+" total atoms");
 			
+			long start = System.nanoTime();
 			eventFramework.workOffJobQueue();
 			while (eventFramework.checkToActivate() > 0)
 				eventFramework.workOffJobQueue();
+			lastGroundTime = System.nanoTime() - start;
 			
+			start = System.nanoTime();
 			clampVariablesConstraints((StreamingADMMReasoner) reasoner,atomManager,activatedAtoms);
+			lastClampTime = System.nanoTime() - start;
+			
+			if(config.getBoolean(WARM_START, false)){
+				log.info("Warm starting inference from previous epoch");
+				((StreamingADMMReasoner) reasoner).setWarmStart(activator.getState());
+			}
 
 		} else {
 			atomManager = new PersistedAtomManager(db);
 			log.info("Grounding out model.");
+			lastScoreTime = lastSelectTime = lastClampTime = 0;
+			long start = System.nanoTime();
 			Grounding.groundAll(model, atomManager, reasoner);
+			lastGroundTime = System.nanoTime() - start;
+		}
+		if(latencyBudget > 0){
+			((ADMMReasoner) reasoner).setDeadline(deadline);
 		}
 		log.info("Beginning inference.");
+		long start = System.nanoTime();
 		reasoner.optimize();
+		lastOptimizeTime = System.nanoTime() - start;
 		log.info("Inference complete. Writing results to Database.");
+		log.info("Stopped after "+((ADMMReasoner) reasoner).getIterations()+" iterations"
+				+(((ADMMReasoner) reasoner).isDeadlineReached() ? " at deadline" : "")
+				+" -- Primal residual: "+((ADMMReasoner) reasoner).getPrimalResidual()
+				+" -- Dual residual: "+((ADMMReasoner) reasoner).getDualResidual());
+		log.info("Epoch stage times: scoring "+(lastScoreTime / 1000000)+" ms, selection "+(lastSelectTime / 1000000)
+				+" ms, grounding "+(lastGroundTime / 1000000)+" ms, clamping "+(lastClampTime / 1000000)
+				+" ms, optimization "+(lastOptimizeTime / 1000000)+" ms");
 
 		/* Commits the RandomVariableAtoms back to the Database */
-		int count = 0;
-		for (RandomVariableAtom atom : atomManager.getPersistedRVAtoms()) {
-			log.trace("Commiting to db: "+atom.toString()+" with value "+formatDouble(atom.getValue()));
-			atom.commitToDB();
-			count++;
-		}
+		if (log.isTraceEnabled())
+			for (RandomVariableAtom atom : atomManager.getPersistedRVAtoms())
+				log.trace("Commiting to db: "+atom.toString()+" with value "+formatDouble(atom.getValue()));
+		int count = db.commitAll(atomManager.getPersistedRVAtoms());
 		log.debug("Total committed variables: "+count);
 
 		double incompatibility = GroundKernels.getTotalWeightedIncompatibility(reasoner.getCompatibilityKernels());
 		double infeasibility = GroundKernels.getInfeasibilityNorm(reasoner.getConstraintKernels());
 		int size = reasoner.size();
+		log.info("Objective: "+incompatibility+" -- Infeasibility: "+infeasibility);
 		return new ReasonerFullInferenceResult(incompatibility, infeasibility, 
 				count, size, new ADMMReasonerState((ADMMReasoner) reasoner));
 	}
 
 
+	/**
+	 * @return the time taken to score variables in the last call to
+	 *         {@link #mpeInference()}, in nanoseconds
+	 */
+	public long getScoreTime() {
+		return lastScoreTime;
+	}
+	
+	/**
+	 * @return the time taken to select and activate variables in the last
+	 *         call to {@link #mpeInference()}, in nanoseconds
+	 */
+	public long getSelectTime() {
+		return lastSelectTime;
+	}
+	
+	/**
+	 * @return the time taken to ground the activated model in the last call
+	 *         to {@link #mpeInference()}, in nanoseconds
+	 */
+	public long getGroundTime() {
+		return lastGroundTime;
+	}
+	
+	/**
+	 * @return the time taken to clamp the variables that were not activated
+	 *         in the last call to {@link #mpeInference()}, in nanoseconds
+	 */
+	public long getClampTime() {
+		return lastClampTime;
+	}
+	
+	/**
+	 * @return the time taken to optimize in the last call to
+	 *         {@link #mpeInference()}, in nanoseconds
+	 */
+	public long getOptimizeTime() {
+		return lastOptimizeTime;
+	}
+
 	@Override
 	public void close() {
 		model=null;
@@ -410,46 +710,4 @@ private static final Logger log = LoggerFactory.getLogger(OnlineMPEInference.cla
 		config = null;
 	}
 	
-	public class AtomPriorityQueueElement implements Comparable<AtomPriorityQueueElement>{
-
-		private GroundAtom a;
-		private double score;
-		private int dist;
-		private double scaledScore = 0;
-		
-		public AtomPriorityQueueElement(GroundAtom a, double score, int distance) {
-			this.a = a; 
-			this.score = score;
-			this.dist = distance;
-			this.scaledScore = computeScore();
-		}
-
-		private double computeScore(){
-			return score/(Math.pow(2, dist));
-		}
-		
-		public double getScore() { return scaledScore; }
-		public int getDistance(){ return dist; }
-		public GroundAtom getAtom(){ return a; }
-
-
-		public boolean equals(Object oth){
-			if(oth == null) { return false; }
-			if(((AtomPriorityQueueElement)oth) == this) { return true; }
-			return a.equals(((AtomPriorityQueueElement)oth).getAtom());
-		}
-
-		@Override
-		public int compareTo(AtomPriorityQueueElement o) {
-			//descending sort by value
-			int cmp = Double.compare(o.getScore(), scaledScore);
-			if(cmp == 0){
-				return a.toString().compareTo(o.getAtom().toString());
-			} else {
-				return cmp;
-			}
-		}
-
-	}
-	
 }
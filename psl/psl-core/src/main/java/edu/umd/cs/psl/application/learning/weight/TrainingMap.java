@@ -16,14 +16,18 @@
  */
 package edu.umd.cs.psl.application.learning.weight;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.argument.Variable;
@@ -95,20 +99,29 @@ public class TrainingMap implements AtomManager {
 			
 			// Execute the query and interpret the results
 			ResultList list = rvDB.executeQuery(new DatabaseQuery(queryFormula));
-			for (int i = 0; i < list.size(); i ++) {
-				// Query the database for this specific atom
-				GroundAtom atom = rvDB.getAtom(predicate, list.get(i));
-				
-				if (atom instanceof RandomVariableAtom) {
-					// Now query the other database for this atom's truth value
-					GroundAtom otherAtom = observedDB.getAtom(predicate, list.get(i));
-					
-					if (otherAtom instanceof ObservedAtom)
-						trainingMap.put((RandomVariableAtom)atom, (ObservedAtom)otherAtom);
-					else
-						latentVariables.add((RandomVariableAtom) atom);
+			List<QueryAtom> atoms = new ArrayList<QueryAtom>(list.size());
+			for (int i = 0; i < list.size(); i ++)
+				atoms.add(new QueryAtom(predicate, list.get(i)));
+			
+			// Query the database for all the atoms at once
+			List<RandomVariableAtom> rvAtoms = new ArrayList<RandomVariableAtom>(atoms.size());
+			List<QueryAtom> rvQueryAtoms = new ArrayList<QueryAtom>(atoms.size());
+			List<GroundAtom> results = rvDB.getAtoms(atoms);
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i) instanceof RandomVariableAtom) {
+					rvAtoms.add((RandomVariableAtom) results.get(i));
+					rvQueryAtoms.add(atoms.get(i));
 				}
 			}
+			
+			// Now query the other database for the truth values of the RandomVariableAtoms
+			List<GroundAtom> otherAtoms = observedDB.getAtoms(rvQueryAtoms);
+			for (int i = 0; i < rvAtoms.size(); i++) {
+				if (otherAtoms.get(i) instanceof ObservedAtom)
+					trainingMap.put(rvAtoms.get(i), (ObservedAtom) otherAtoms.get(i));
+				else
+					latentVariables.add(rvAtoms.get(i));
+			}
 		}
 	}
 	
@@ -143,11 +156,26 @@ public class TrainingMap implements AtomManager {
 			return atom;
 	}
 
+	@Override
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms) {
+		List<GroundAtom> results = rvDB.getAtoms(atoms);
+		for (GroundAtom atom : results)
+			if (atom instanceof RandomVariableAtom
+					&& !trainingMap.containsKey(atom) && !latentVariables.contains(atom))
+				throw new IllegalArgumentException("Can only call getAtom() on persisted RandomVariableAtoms using a TrainingMap. Cannot access " + atom);
+		return results;
+	}
+
 	@Override
 	public ResultList executeQuery(DatabaseQuery query) {
 		return rvDB.executeQuery(query);
 	}
 	
+	@Override
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize) {
+		return rvDB.executeQuery(query, fetchSize);
+	}
+	
 	@Override
 	public boolean isClosed(StandardPredicate predicate) {
 		return rvDB.isClosed(predicate);
@@ -20,6 +20,7 @@ import edu.umd.cs.psl.application.groundkernelstore.GroundKernelStore;
 import edu.umd.cs.psl.model.Model;
 import edu.umd.cs.psl.model.atom.AtomManager;
 import edu.umd.cs.psl.model.kernel.Kernel;
+import edu.umd.cs.psl.model.kernel.rule.AbstractRuleKernel;
 
 /**
  * Static utilities for common {@link Model}-grounding tasks.
@@ -60,4 +61,24 @@ public class Grounding {
 		}
 	}
 	
+	/**
+	 * Calls {@link Kernel#groundAll(AtomManager, GroundKernelStore)} on
+	 * each Kernel in a Model, except that rules read the results of their
+	 * grounding queries in blocks via
+	 * {@link AbstractRuleKernel#groundAll(AtomManager, GroundKernelStore, int)}.
+	 * 
+	 * @param m  the Model with the Kernels to ground
+	 * @param atomManager  AtomManager to use for grounding
+	 * @param gks  GroundKernelStore to use for grounding
+	 * @param fetchSize  the maximum number of query results in memory at once
+	 */
+	public static void groundAll(Model m, AtomManager atomManager, GroundKernelStore gks, int fetchSize) {
+		for (Kernel k : m.getKernels()) {
+			if (k instanceof AbstractRuleKernel)
+				((AbstractRuleKernel) k).groundAll(atomManager, gks, fetchSize);
+			else
+				k.groundAll(atomManager, gks);
+		}
+	}
+	
 }
@@ -16,6 +16,9 @@
  */
 package edu.umd.cs.psl.database;
 
+import java.util.Collection;
+import java.util.List;
+
 import edu.umd.cs.psl.database.Partition;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.argument.UniqueID;
@@ -24,6 +27,7 @@ import edu.umd.cs.psl.model.atom.AtomCache;
 import edu.umd.cs.psl.model.atom.AtomManager;
 import edu.umd.cs.psl.model.atom.GroundAtom;
 import edu.umd.cs.psl.model.atom.ObservedAtom;
+import edu.umd.cs.psl.model.atom.QueryAtom;
 import edu.umd.cs.psl.model.atom.RandomVariableAtom;
 import edu.umd.cs.psl.model.predicate.FunctionalPredicate;
 import edu.umd.cs.psl.model.predicate.Predicate;
@@ -116,6 +120,23 @@ public interface Database {
 	 */
 	public GroundAtom getAtom(Predicate p, GroundTerm... arguments);
 	
+	/**
+	 * Returns the GroundAtoms for a collection of {@link QueryAtom QueryAtoms}
+	 * with only GroundTerms as arguments.
+	 * <p>
+	 * Each GroundAtom is the one {@link #getAtom(Predicate, GroundTerm...)}
+	 * would return, but the GroundAtoms not yet in the {@link AtomCache} can be
+	 * retrieved together, so calling this method before retrieving many
+	 * GroundAtoms individually is faster than only calling getAtom().
+	 * 
+	 * @param atoms  the Atoms to retrieve
+	 * @return the GroundAtoms, in the iteration order of atoms
+	 * @throws IllegalArgumentException  if a Predicate is not registered or
+	 *                                       arguments are not valid
+	 * @throws IllegalStateException  if an Atom is persisted in multiple read Partitions
+	 */
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms);
+	
 	/**
 	 * Removes the GroundAtom from the Database, if it exists.
 	 *
@@ -138,6 +159,20 @@ public interface Database {
 	 */
 	public void commit(RandomVariableAtom atom);
 	
+	/**
+	 * Persists RandomVariableAtoms in this Database's write Partition, as
+	 * {@link #commit(RandomVariableAtom)} does for each, and writes them
+	 * before returning.
+	 * <p>
+	 * This method is faster than calling commit() for each RandomVariableAtom
+	 * when committing many of them.
+	 * 
+	 * @param atoms  the Atoms to persist
+	 * @return the number of Atoms persisted
+	 * @throws IllegalArgumentException  if an atom does not belong to this Database
+	 */
+	public int commitAll(Iterable<? extends RandomVariableAtom> atoms);
+	
 	/**
 	 * Returns all groundings of a Formula that match a DatabaseQuery.
 	 * 
@@ -148,6 +183,22 @@ public interface Database {
 	 */
 	public ResultList executeQuery(DatabaseQuery query);
 	
+	/**
+	 * Returns all groundings of a Formula that match a DatabaseQuery through
+	 * a forward-only cursor, which holds at most fetchSize groundings in
+	 * memory at once.
+	 * <p>
+	 * The cursor must be read to the end or closed.
+	 * 
+	 * @param query  the query to match
+	 * @param fetchSize  the maximum number of groundings in each block
+	 * @return a cursor over the substitutions of {@link GroundTerm GroundTerms}
+	 *             for {@link Variable Variables}
+	 * @throws IllegalArgumentException  if the query Formula is invalid or
+	 *                                       fetchSize is not positive
+	 */
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize);
+	
 	/**
 	 * Returns whether a StandardPredicate is closed in this Database.
 	 * 
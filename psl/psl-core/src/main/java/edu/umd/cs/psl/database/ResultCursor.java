@@ -0,0 +1,51 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2013 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.database;
+
+import edu.umd.cs.psl.model.argument.Variable;
+import edu.umd.cs.psl.model.formula.Formula;
+
+/**
+ * Forward-only substitutions for {@link Variable Variables} in a {@link Formula},
+ * read in blocks so that only the current block is held in memory.
+ */
+public interface ResultCursor {
+
+	/**
+	 * @return the number of distinct {@link Variable Variables} replaced in
+	 *             each substitution
+	 */
+	public int getArity();
+	
+	/**
+	 * Returns the next block of substitutions. The previous block is no
+	 * longer referenced by the cursor.
+	 * <p>
+	 * The cursor is closed once no substitutions remain.
+	 * 
+	 * @return a block of at most the fetch size substitutions, or null if
+	 *             none remain
+	 */
+	public ResultList nextBlock();
+	
+	/**
+	 * Releases the resources held by the cursor. Does nothing if the cursor
+	 * is already closed.
+	 */
+	public void close();
+	
+}
@@ -26,6 +26,7 @@ import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import com.healthmarketscience.sqlbuilder.CustomSql;
 import com.healthmarketscience.sqlbuilder.FunctionCall;
 import com.healthmarketscience.sqlbuilder.InCondition;
+import com.healthmarketscience.sqlbuilder.QueryPreparer;
 import com.healthmarketscience.sqlbuilder.SelectQuery;
 
 import edu.umd.cs.psl.database.Partition;
@@ -59,8 +60,29 @@ public class Formula2SQL extends AbstractFormulaTraverser {
 
 	private int tableCounter;
 
+	/*
+	 * If the constants of the query are bind parameters, the placeholder
+	 * for them and their values in order.
+	 */
+	private final QueryPreparer.MultiPlaceHolder placeHolder;
+	private final List<Object> parameters;
+
 	public Formula2SQL(VariableAssignment pg, Set<Variable> proj,
 			RDBMSDatabase db) {
+		this(pg, proj, db, false);
+	}
+
+	/**
+	 * @param parameterize  whether to write constants, including the
+	 *                      substitutions of the partial grounding, as bind
+	 *                      parameters, so that queries of the same formula
+	 *                      with different constants have the same SQL
+	 * @see #getParameters()
+	 */
+	public Formula2SQL(VariableAssignment pg, Set<Variable> proj,
+			RDBMSDatabase db, boolean parameterize) {
+		placeHolder = (parameterize) ? new QueryPreparer().getNewMultiPlaceHolder() : null;
+		parameters = new ArrayList<Object>();
 		partialGrounding = pg;
 		projection = proj;
 		joins = new HashMap<Variable, String>();
@@ -77,6 +99,25 @@ public class Formula2SQL extends AbstractFormulaTraverser {
 		return functionalAtoms;
 	}
 
+	/**
+	 * @return the values of the bind parameters of the SQL, in order, or an
+	 *         empty list if constants are not parameterized
+	 */
+	public List<Object> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Returns the SQL for a constant, which is a bind parameter if
+	 * parameterizing.
+	 */
+	private Object constant(Object value) {
+		if (placeHolder == null)
+			return value;
+		parameters.add(value);
+		return placeHolder;
+	}
+
 	@Override
 	public void afterConjunction(int noFormulas) {
 		// Supported
@@ -145,9 +186,9 @@ public class Formula2SQL extends AbstractFormulaTraverser {
 				}
 			} 
 			if (arg instanceof Attribute) {
-				convert[i] = ((Attribute) arg).getValue();
+				convert[i] = constant(((Attribute) arg).getValue());
 			} else if (arg instanceof UniqueID) {
-				convert[i] = ((UniqueID) arg).getInternalID();
+				convert[i] = constant(((UniqueID) arg).getInternalID());
 			} else {
 				throw new IllegalArgumentException("Unknown argument type: "
 						+ arg.getClass().getName());
@@ -195,16 +236,16 @@ public class Formula2SQL extends AbstractFormulaTraverser {
 
 				if (arg instanceof Attribute) {
 					Object value = ((Attribute) arg).getValue();
-					if (value instanceof String)
+					if (value instanceof String && placeHolder == null)
 						value = escapeSingleQuotes((String) value);
 					query.addCondition(BinaryCondition.equalTo(new CustomSql(
-							tableDot + ph.argumentColumns()[i]), value));
+							tableDot + ph.argumentColumns()[i]), constant(value)));
 				} else if (arg instanceof UniqueID) { // Entity
 					Object value = ((UniqueID) arg).getInternalID();
-					if (value instanceof String)
+					if (value instanceof String && placeHolder == null)
 						value = escapeSingleQuotes((String) value);
 					query.addCondition(BinaryCondition.equalTo(new CustomSql(
-							tableDot + ph.argumentColumns()[i]), value));
+							tableDot + ph.argumentColumns()[i]), constant(value)));
 				} else
 					assert arg instanceof Variable;
 			}
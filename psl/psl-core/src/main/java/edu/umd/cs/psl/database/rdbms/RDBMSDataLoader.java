@@ -43,9 +43,53 @@ public class RDBMSDataLoader implements DataLoader {
 	
 	private final Map<Predicate,RDBMSTableInserter> inserts;
 	
+	/** Rows sent to the database at once, or 1 to send each as it is inserted */
+	private final int batchSize;
+	
+	/* Totals over all inserters */
+	private long rowsInserted = 0;
+	private long insertTime = 0;
+	
 	public RDBMSDataLoader(Connection c) {
+		this(c, 1);
+	}
+	
+	/**
+	 * @param c  the connection to insert rows through
+	 * @param batchSize  the number of rows each inserter sends to the database
+	 *                   at once, in one transaction, or 1 to send each row
+	 *                   as it is inserted
+	 */
+	public RDBMSDataLoader(Connection c, int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive.");
 		database = c;
 		inserts = new HashMap<Predicate,RDBMSTableInserter>();
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Sends the rows batched by all inserters to the database. Must be called
+	 * before the inserted rows are read.
+	 */
+	public void flush() {
+		for (RDBMSTableInserter ins : inserts.values())
+			ins.flush();
+	}
+	
+	/**
+	 * @return the number of rows sent to the database by all inserters
+	 */
+	public long getRowsInserted() {
+		return rowsInserted;
+	}
+	
+	/**
+	 * @return the time spent by all inserters sending rows to the database,
+	 *         in nanoseconds
+	 */
+	public long getInsertTime() {
+		return insertTime;
 	}
 	
 	void registerPredicate(RDBMSPredicateHandle ph) {
@@ -101,6 +145,8 @@ public class RDBMSDataLoader implements DataLoader {
 		private final PreparedStatement insertStmt;
 		private final double defaultEvidenceValue;
 		private final double defaultConfidence;
+		/** Number of rows added to the statement's batch but not yet sent */
+		private int batched;
 		
 		public RDBMSTableInserter(RDBMSPredicateHandle ph) {
 			handle = ph;
@@ -186,12 +232,55 @@ public class RDBMSDataLoader implements DataLoader {
 				noCol++;
 				insertStmt.setDouble(noCol, confidence);
 
-			    insertStmt.executeUpdate();
+				if (batchSize > 1) {
+					insertStmt.addBatch();
+					batched++;
+				} else {
+					long start = System.nanoTime();
+					insertStmt.executeUpdate();
+					insertTime += System.nanoTime() - start;
+					rowsInserted++;
+				}
 
 			} catch (SQLException e) {
 				log.error(e.getMessage() + "\n(data): " + Arrays.toString(data));
 				throw new AssertionError(e);
 			}
+			
+			if (batched >= batchSize)
+				flush();
+		}
+		
+		/**
+		 * Executes the batched rows in one transaction.
+		 */
+		private void flush() {
+			if (batched == 0)
+				return;
+			
+			int numRows = batched;
+			batched = 0;
+			long start = System.nanoTime();
+			try {
+				boolean autoCommit = database.getAutoCommit();
+				database.setAutoCommit(false);
+				try {
+					insertStmt.executeBatch();
+					database.commit();
+				} catch (SQLException e) {
+					insertStmt.clearBatch();
+					database.rollback();
+					throw e;
+				} finally {
+					database.setAutoCommit(autoCommit);
+				}
+			} catch (SQLException e) {
+				log.error(e.getMessage() + "\n(batch of " + numRows + " rows into " + handle.tableName() + ")");
+				throw new AssertionError(e);
+			}
+			insertTime += System.nanoTime() - start;
+			rowsInserted += numRows;
+			log.trace("Inserted batch of {} rows into {}", numRows, handle.tableName());
 		}
 		
 		private String escapeSingleQuotes(String s) {
@@ -16,8 +16,12 @@
  */
 package edu.umd.cs.psl.database.rdbms;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -55,6 +59,7 @@ import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.argument.IntegerAttribute;
 import edu.umd.cs.psl.model.argument.StringAttribute;
 import edu.umd.cs.psl.model.argument.UniqueID;
+import edu.umd.cs.psl.model.atom.GroundAtom;
 import edu.umd.cs.psl.model.function.ExternalFunction;
 import edu.umd.cs.psl.model.predicate.Predicate;
 import edu.umd.cs.psl.model.predicate.PredicateFactory;
@@ -110,6 +115,26 @@ public class RDBMSDataStore implements DataStore {
 	/** Default value for the USE_STRING_ID_KEY property */
 	public static final boolean USE_STRING_ID_DEFAULT = false;
 	
+	/**
+	 * Key for positive int property for the number of rows each Inserter sends
+	 * to the database at once, in one transaction. Batched rows are sent
+	 * before any are read. 1 sends each row as it is inserted.
+	 */
+	public static final String BATCH_SIZE_KEY = CONFIG_PREFIX + ".batchsize";
+	
+	/** Default value for the BATCH_SIZE_KEY property */
+	public static final int BATCH_SIZE_DEFAULT = 1;
+	
+	/**
+	 * Key for boolean property of whether
+	 * {@link #loadDelimitedData(StandardPredicate, Partition, String, String, boolean)}
+	 * has H2 read files with CSVREAD instead of inserting their rows in batches.
+	 */
+	public static final String USE_CSVREAD_KEY = CONFIG_PREFIX + ".usecsvread";
+	
+	/** Default value for the USE_CSVREAD_KEY property */
+	public static final boolean USE_CSVREAD_DEFAULT = true;
+	
 	/*
 	 * The values for the PSL columns.
 	 */
@@ -149,6 +174,8 @@ public class RDBMSDataStore implements DataStore {
 	
 	private final boolean stringUniqueIDs;
 	
+	private final boolean useCSVRead;
+	
 	/**
 	 * Returns an RDBMSDataStore that utilizes the connection created by the {@link DatabaseDriver}.
 	 * @param dbDriver	the DatabaseDriver that contains a connection to the backing database.
@@ -170,7 +197,11 @@ public class RDBMSDataStore implements DataStore {
 		this.connection = dbDriver.getConnection();
 		
 		// Set up the data loader
-		this.dataloader = new RDBMSDataLoader(connection);
+		int batchSize = config.getInt(BATCH_SIZE_KEY, BATCH_SIZE_DEFAULT);
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Property " + BATCH_SIZE_KEY + " must be positive.");
+		this.dataloader = new RDBMSDataLoader(connection, batchSize);
+		this.useCSVRead = config.getBoolean(USE_CSVREAD_KEY, USE_CSVREAD_DEFAULT);
 		
 		//Initialize metadata
 		initializeMetadata(connection, METADATA_TABLENAME);
@@ -309,9 +340,6 @@ public class RDBMSDataStore implements DataStore {
 		
 		CreateTableQuery q = new CreateTableQuery(pi.tableName);
 		
-		List<String> hashIndexes = new ArrayList<String>(pi.argCols.length);
-		StringBuilder keyColumns = new StringBuilder();
-		
 		// Add columns for each predicate argument
 		for (int i=0; i < pi.argCols.length; i++) {
 			String colName = pi.argCols[i];
@@ -328,7 +356,6 @@ public class RDBMSDataStore implements DataStore {
 				typeName = "MEDIUMTEXT";
 				break;
 			case UniqueID:
-				hashIndexes.add(colName);
 				if (stringUniqueIDs)
 					typeName = "VARCHAR(255)";
 				else
@@ -338,13 +365,10 @@ public class RDBMSDataStore implements DataStore {
 				throw new IllegalStateException("Unknown ArgumentType for predicate " + p.getName());
 			}
 			
-			keyColumns.append(colName).append(", ");
 			q.addCustomColumn(colName + " " + typeName, ColumnConstraint.NOT_NULL);
 		}
 		
 		// Add a column for partitioning
-		keyColumns.append(pi.partitionCol);
-		hashIndexes.add(pi.partitionCol);
 		q.addCustomColumn(pi.partitionCol + " INT DEFAULT 0", ColumnConstraint.NOT_NULL);
 		
 		// Add columns for value and confidence
@@ -359,10 +383,7 @@ public class RDBMSDataStore implements DataStore {
 			    stmt.executeUpdate(q.validate().toString());
 
 			    // Create indexes for the table
-				for (String hashcol : hashIndexes) {
-					stmt.executeUpdate("CREATE HASH INDEX " + pi.tableName + hashcol + "hashidx ON " + pi.tableName + " (" + hashcol + " ) ");
-				}
-				stmt.executeUpdate("CREATE PRIMARY KEY HASH ON " + pi.tableName + " (" + keyColumns.toString() + " ) ");
+			    createIndexes(pi, stmt);
 			} finally {
 			    stmt.close();
 			}
@@ -371,6 +392,41 @@ public class RDBMSDataStore implements DataStore {
 		}
 	}
 	
+	/**
+	 * Creates the hash indexes on the UniqueID and partition columns of a
+	 * predicate's table and its primary key.
+	 */
+	private void createIndexes(RDBMSPredicateInfo pi, Statement stmt) throws SQLException {
+		StringBuilder keyColumns = new StringBuilder();
+		for (String colName : pi.argCols)
+			keyColumns.append(colName).append(", ");
+		keyColumns.append(pi.partitionCol);
+		
+		for (String hashcol : getHashIndexColumns(pi)) {
+			stmt.executeUpdate("CREATE HASH INDEX " + pi.tableName + hashcol + "hashidx ON " + pi.tableName + " (" + hashcol + " ) ");
+		}
+		stmt.executeUpdate("CREATE PRIMARY KEY HASH ON " + pi.tableName + " (" + keyColumns.toString() + " ) ");
+	}
+	
+	/**
+	 * Drops the indexes created by {@link #createIndexes(RDBMSPredicateInfo, Statement)}.
+	 */
+	private void dropIndexes(RDBMSPredicateInfo pi, Statement stmt) throws SQLException {
+		for (String hashcol : getHashIndexColumns(pi)) {
+			stmt.executeUpdate("DROP INDEX IF EXISTS " + pi.tableName + hashcol + "hashidx");
+		}
+		stmt.executeUpdate("ALTER TABLE " + pi.tableName + " DROP PRIMARY KEY");
+	}
+	
+	private List<String> getHashIndexColumns(RDBMSPredicateInfo pi) {
+		List<String> hashIndexes = new ArrayList<String>(pi.argCols.length + 1);
+		for (int i = 0; i < pi.argCols.length; i++)
+			if (pi.predicate.getArgumentType(i) == ArgumentType.UniqueID)
+				hashIndexes.add(pi.argCols[i]);
+		hashIndexes.add(pi.partitionCol);
+		return hashIndexes;
+	}
+	
 	@Override
 	public Database getDatabase(Partition write, Partition... read) {
 		return getDatabase(write, null, read);
@@ -393,6 +449,9 @@ public class RDBMSDataStore implements DataStore {
 			if (writePartitionIDs.contains(partID))
 				throw new IllegalArgumentException("Another database is writing to a specified read partition: " + partID);
 		
+		// Sends any batched rows, so that the database can read them
+		dataloader.flush();
+		
 		// Creates the database and registers the current predicates
 		RDBMSDatabase db = new RDBMSDatabase(this,connection, write, read, toClose);
 		for (RDBMSPredicateInfo predinfo : predicates.values())
@@ -443,6 +502,193 @@ public class RDBMSDataStore implements DataStore {
 		return dataloader.getInserter(predicates.get(predicate).predicate,partition);
 	}
 
+	/**
+	 * Loads {@link GroundAtom GroundAtoms} of a StandardPredicate from a
+	 * delimited file into a Partition.
+	 * <p>
+	 * Like {@link edu.umd.cs.psl.ui.loading.InserterUtils}, each line holds the
+	 * arguments of an atom, followed by its truth value if withTruth is true,
+	 * else its truth value is 1.0. Fields are trimmed, and blank lines and
+	 * lines starting with "//" are skipped.
+	 * <p>
+	 * If the database is H2, the delimiter is a single character other than a
+	 * space, and {@link #USE_CSVREAD_KEY} is true, H2 reads the file itself
+	 * with CSVREAD, in which case the delimiter is not a regular expression
+	 * and fields are never quoted. If the predicate's table was empty, its
+	 * indexes are dropped during the load and created again afterwards, and
+	 * if the load fails, including because the file repeats an atom, the
+	 * table is emptied again.
+	 * Otherwise the rows are inserted in batches of {@link #BATCH_SIZE_KEY}.
+	 * 
+	 * @param predicate  the StandardPredicate of the atoms
+	 * @param partition  the Partition into which the atoms will be inserted
+	 * @param file  path to the file
+	 * @param delimiter  the delimiter between fields in a line
+	 * @param withTruth  whether the last field of each line is a truth value
+	 * @return the number of atoms loaded
+	 * @throws IllegalArgumentException  if predicate is not registered
+	 * @throws IllegalStateException  if partition is in use
+	 */
+	public long loadDelimitedData(StandardPredicate predicate, Partition partition,
+			String file, String delimiter, boolean withTruth) {
+		if (!predicates.containsKey(predicate))
+			throw new IllegalArgumentException("Unknown predicate specified: " + predicate);
+		if (writePartitionIDs.contains(partition) || openDatabases.containsKey(partition))
+			throw new IllegalStateException("Partition [" + partition + "] is already in use. Can only be modified via Updater!");
+		
+		RDBMSPredicateInfo pi = predicates.get(predicate);
+		long start = System.nanoTime();
+		long rows;
+		if (useCSVRead && isH2() && delimiter.length() == 1 && delimiter.charAt(0) != ' ')
+			rows = loadWithCSVRead(pi, partition, file, delimiter.charAt(0), withTruth);
+		else
+			rows = loadInBatches(pi, partition, file, delimiter, withTruth);
+		long time = System.nanoTime() - start;
+		log.info("Loaded {} rows into {} in {} ms ({} rows/sec)", new Object[] {rows, pi.tableName,
+				time / 1000000, (time > 0) ? (long) (rows * 1e9 / time) : rows});
+		return rows;
+	}
+	
+	private boolean isH2() {
+		try {
+			return "H2".equals(connection.getMetaData().getDatabaseProductName());
+		} catch (SQLException e) {
+			throw new RuntimeException("Error reading database metadata.", e);
+		}
+	}
+	
+	private long loadWithCSVRead(RDBMSPredicateInfo pi, Partition partition, String file,
+			char delimiter, boolean withTruth) {
+		int numArgs = pi.argCols.length;
+		// Column names are separated like fields
+		StringBuilder columns = new StringBuilder();
+		for (int i = 0; i < numArgs + ((withTruth) ? 1 : 0); i++) {
+			if (i > 0)
+				columns.append(delimiter);
+			columns.append("C").append(i);
+		}
+		
+		StringBuilder sql = new StringBuilder();
+		sql.append("INSERT INTO ").append(pi.tableName).append(" (").append(pi.partitionCol);
+		for (String colName : pi.argCols)
+			sql.append(", ").append(colName);
+		sql.append(", ").append(pi.valueCol).append(", ").append(pi.confidenceCol).append(") SELECT ?");
+		for (int i = 0; i < numArgs; i++) {
+			// Strings are escaped like the rows of Inserters
+			if (pi.predicate.getArgumentType(i) == ArgumentType.String)
+				sql.append(", REPLACE(TRIM(C").append(i).append("), '''', '''''')");
+			else
+				sql.append(", TRIM(C").append(i).append(")");
+		}
+		sql.append((withTruth) ? ", CAST(TRIM(C" + numArgs + ") AS DOUBLE)" : ", 1.0");
+		/*
+		 * H2 1.2 reads the file while preparing the statement, so its arguments
+		 * are literals: the file, columns, charset, field separator, and field
+		 * delimiter, in order
+		 */
+		sql.append(", ? FROM CSVREAD('").append(escapeSingleQuotes(file)).append("', '")
+				.append(escapeSingleQuotes(columns.toString())).append("', 'UTF-8', '")
+				.append(escapeSingleQuotes(String.valueOf(delimiter))).append("', '')");
+		sql.append(" WHERE TRIM(C0) <> '' AND TRIM(C0) NOT LIKE '//%'");
+		
+		try {
+			boolean empty;
+			Statement stmt = connection.createStatement();
+			try {
+				ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + pi.tableName + " LIMIT 1");
+				try {
+					empty = !rs.next();
+				} finally {
+					rs.close();
+				}
+				
+				if (empty)
+					dropIndexes(pi, stmt);
+				try {
+					long rows;
+					PreparedStatement insert = connection.prepareStatement(sql.toString());
+					try {
+						insert.setInt(1, partition.getID());
+						// Default confidence of Inserters
+						insert.setDouble(2, Double.NaN);
+						rows = insert.executeUpdate();
+					} finally {
+						insert.close();
+					}
+					// Fails if the file repeats an atom
+					if (empty)
+						createIndexes(pi, stmt);
+					return rows;
+				} catch (SQLException e) {
+					if (empty)
+						restoreEmptyTable(pi, stmt, e);
+					throw e;
+				}
+			} finally {
+				stmt.close();
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Error loading " + file + " into " + pi.tableName, e);
+		}
+	}
+	
+	private static String escapeSingleQuotes(String s) {
+		return s.replaceAll("'", "''");
+	}
+	
+	/**
+	 * Deletes the rows of a table that was empty before a failed load and
+	 * creates its indexes again.
+	 * 
+	 * @param cause  the error that failed the load
+	 */
+	private void restoreEmptyTable(RDBMSPredicateInfo pi, Statement stmt, SQLException cause) {
+		try {
+			stmt.executeUpdate("DELETE FROM " + pi.tableName);
+			// The primary key is created last, so only the hash indexes can exist
+			for (String hashcol : getHashIndexColumns(pi))
+				stmt.executeUpdate("DROP INDEX IF EXISTS " + pi.tableName + hashcol + "hashidx");
+			createIndexes(pi, stmt);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Could not restore the indexes of " + pi.tableName
+					+ " after failing to load into it: " + cause.getMessage(), e);
+		}
+	}
+	
+	private long loadInBatches(RDBMSPredicateInfo pi, Partition partition, String file,
+			String delimiter, boolean withTruth) {
+		Inserter inserter = dataloader.getInserter(pi.predicate, partition);
+		long rows = 0;
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					line = line.trim();
+					if (line.isEmpty() || line.startsWith("//"))
+						continue;
+					String[] data = line.split(delimiter);
+					for (int i = 0; i < data.length; i++)
+						data[i] = data[i].trim();
+					if (withTruth) {
+						Object[] args = new Object[data.length - 1];
+						System.arraycopy(data, 0, args, 0, args.length);
+						inserter.insertValue(Double.parseDouble(data[data.length - 1]), args);
+					}
+					else
+						inserter.insert((Object[]) data);
+					rows++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading " + file, e);
+		}
+		dataloader.flush();
+		return rows;
+	}
+
 	@Override
 	public Updater getUpdater(StandardPredicate predicate, Partition partition) {
 		throw new UnsupportedOperationException("Not yet implemented");
@@ -458,6 +704,7 @@ public class RDBMSDataStore implements DataStore {
 		int deletedEntries = 0;
 		if (writePartitionIDs.contains(partition) || openDatabases.containsKey(partition))
 			throw new IllegalArgumentException("Cannot delete partition that is in use.");
+		dataloader.flush();
 		try {
 			Statement stmt = connection.createStatement();
 			for (RDBMSPredicateInfo pred : predicates.values()) {
@@ -483,6 +730,7 @@ public class RDBMSDataStore implements DataStore {
 		}
 		throw new IllegalStateException("Cannot close data store when databases are still open!,"+errMsg);
 	    }
+	    dataloader.flush();
 	    try {
 		connection.close();
 	    } catch (SQLException e) {
@@ -490,7 +738,12 @@ public class RDBMSDataStore implements DataStore {
 	    }
 	}
 	
+	/**
+	 * Returns the connection to the database, after sending any rows batched
+	 * by Inserters.
+	 */
 	protected Connection getConnection(){
+		dataloader.flush();
 		return connection;
 	}
 
@@ -22,8 +22,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.healthmarketscience.sqlbuilder.BinaryCondition;
+import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.CustomSql;
 import com.healthmarketscience.sqlbuilder.InCondition;
 import com.healthmarketscience.sqlbuilder.InsertQuery;
@@ -44,6 +47,7 @@ import edu.umd.cs.psl.database.DataStore;
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
 import edu.umd.cs.psl.database.Partition;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ReadOnlyDatabase;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.ArgumentType;
@@ -73,6 +77,22 @@ import edu.umd.cs.psl.model.predicate.StandardPredicate;
  */
 public class RDBMSDatabase implements Database {
 	private static final Logger log = LoggerFactory.getLogger(RDBMSDatabase.class);
+	
+	/**
+	 * The maximum number of atoms looked up by one query in {@link #getAtoms(Collection)}.
+	 */
+	private static final int MAX_LOOKUP_BLOCK = 500;
+	
+	/**
+	 * The maximum number of pending statements sent to the database in one batch.
+	 */
+	private static final int MAX_COMMIT_BATCH = 1000;
+	
+	/**
+	 * The maximum number of query templates whose statements are kept prepared.
+	 */
+	private static final int MAX_QUERY_TEMPLATES = 256;
+	
 	/**
 	 * The backing data store that created this database.
 	 */
@@ -117,13 +137,32 @@ public class RDBMSDatabase implements Database {
 	private final Map<Predicate, PreparedStatement> updateStatement;
 	private final Map<Predicate, PreparedStatement> insertStatement;
 	private final Map<Predicate, PreparedStatement> deleteStatement;
+	private final Map<Predicate, PreparedStatement> upsertStatement;
 	
+	/**
+	 * Maps the SQL of parameterized queries from {@link #executeQuery(DatabaseQuery)}
+	 * to their templates, least recently used first.
+	 */
+	private final LinkedHashMap<String, QueryTemplate> queryTemplates;
+	
+	/**
+	 * The name of the database product, which determines the syntax of
+	 * upsert statements.
+	 */
+	private final String databaseProduct;
 	
 	/**
 	 * The following keeps track of bulk atoms to be committed.
 	 */
 	private final Set<RandomVariableAtom> pendingInserts;
 	private final Set<RandomVariableAtom> pendingUpdates;
+	private final Set<RandomVariableAtom> pendingUpserts;
+	
+	/**
+	 * RandomVariableAtoms known to be persisted in the write partition, which
+	 * are committed with updates without first querying for them.
+	 */
+	private final Set<RandomVariableAtom> persistedAtoms;
 	
 	/*
 	 * Keeps track of the open / closed status of this database.
@@ -169,9 +208,30 @@ public class RDBMSDatabase implements Database {
 		this.updateStatement = new HashMap<Predicate, PreparedStatement>();
 		this.insertStatement = new HashMap<Predicate, PreparedStatement>();
 		this.deleteStatement = new HashMap<Predicate, PreparedStatement>();
+		this.upsertStatement = new HashMap<Predicate, PreparedStatement>();
+		this.queryTemplates = new LinkedHashMap<String, QueryTemplate>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, QueryTemplate> eldest) {
+				if (size() > MAX_QUERY_TEMPLATES) {
+					eldest.getValue().close();
+					return true;
+				}
+				return false;
+			}
+		};
 		this.pendingInserts = new HashSet<RandomVariableAtom>();
 		this.pendingUpdates = new HashSet<RandomVariableAtom>();
+		this.pendingUpserts = new HashSet<RandomVariableAtom>();
+		this.persistedAtoms = new HashSet<RandomVariableAtom>();
 		this.closed = false;
+		
+		try {
+			this.databaseProduct = con.getMetaData().getDatabaseProductName();
+		} catch (SQLException e) {
+			throw new RuntimeException("Error reading database metadata.", e);
+		}
 	}
 	
 	public void registerPredicate(RDBMSPredicateHandle ph) {
@@ -185,6 +245,7 @@ public class RDBMSDatabase implements Database {
 			createUpdateStatement(ph);
 			createInsertStatement(ph);
 			createDeleteStatement(ph);
+			createUpsertStatement(ph);
 		}
 	}
 	
@@ -278,6 +339,40 @@ public class RDBMSDatabase implements Database {
 		}
 	}
 	
+	/**
+	 * Creates a statement that inserts an atom into the write partition or
+	 * updates it if it is already there, if the database supports one.
+	 * The parameters are the same as those of the insert statement.
+	 */
+	private void createUpsertStatement(RDBMSPredicateHandle ph) {
+		StringBuilder columns = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		for (int i = 0; i < ph.argumentColumns().length; i++) {
+			columns.append(ph.argumentColumns()[i]).append(", ");
+			values.append("?, ");
+		}
+		String keyColumns = columns.toString() + ph.partitionColumn();
+		columns.append(ph.partitionColumn()).append(", ").append(ph.valueColumn()).append(", ").append(ph.confidenceColumn());
+		values.append(writeID).append(", ?, ?");
+		
+		String sql;
+		if ("H2".equals(databaseProduct))
+			sql = "MERGE INTO " + ph.tableName() + " (" + columns + ") KEY (" + keyColumns + ") VALUES (" + values + ")";
+		else if ("MySQL".equals(databaseProduct))
+			sql = "INSERT INTO " + ph.tableName() + " (" + columns + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE "
+					+ ph.valueColumn() + " = VALUES(" + ph.valueColumn() + "), "
+					+ ph.confidenceColumn() + " = VALUES(" + ph.confidenceColumn() + ")";
+		else
+			return;
+		
+		try {
+			PreparedStatement ps = dbConnection.prepareStatement(sql);
+			upsertStatement.put(ph.predicate(), ps);
+		} catch (SQLException e) {
+			throw new RuntimeException("Could not create prepared statement.", e);
+		}
+	}
+	
 	/**
 	 * Helper method for getting a predicate handle
 	 * @param p	The predicate to lookup
@@ -298,27 +393,49 @@ public class RDBMSDatabase implements Database {
 		PreparedStatement ps = queryStatement.get(a.getPredicate());
 		Term[] arguments = a.getArguments();
 		try {
-			for (int i = 0; i < arguments.length; i++) {
-				int paramIndex = i + 1;
-				Term argument = arguments[i];
-				
-				if (argument instanceof IntegerAttribute)
-					ps.setInt(paramIndex, ((IntegerAttribute)argument).getValue());
-				else if (argument instanceof DoubleAttribute)
-					ps.setDouble(paramIndex, ((DoubleAttribute)argument).getValue());
-				else if (argument instanceof StringAttribute)
-					ps.setString(paramIndex, ((StringAttribute)argument).getValue());
-				else if (argument instanceof RDBMSUniqueIntID)
-					ps.setInt(paramIndex, ((RDBMSUniqueIntID)argument).getID());
-				else if (argument instanceof RDBMSUniqueStringID)
-					ps.setString(paramIndex, ((RDBMSUniqueStringID)argument).getID());
-			}
+			for (int i = 0; i < arguments.length; i++)
+				setArgument(ps, i + 1, arguments[i]);
 			return ps.executeQuery();
 		} catch (SQLException e) {
 			throw new RuntimeException("Error querying DB for atom.", e);
 		}
 	}
 	
+	private void setArgument(PreparedStatement ps, int paramIndex, Term argument) throws SQLException {
+		if (argument instanceof IntegerAttribute)
+			ps.setInt(paramIndex, ((IntegerAttribute)argument).getValue());
+		else if (argument instanceof DoubleAttribute)
+			ps.setDouble(paramIndex, ((DoubleAttribute)argument).getValue());
+		else if (argument instanceof StringAttribute)
+			ps.setString(paramIndex, ((StringAttribute)argument).getValue());
+		else if (argument instanceof RDBMSUniqueIntID)
+			ps.setInt(paramIndex, ((RDBMSUniqueIntID)argument).getID());
+		else if (argument instanceof RDBMSUniqueStringID)
+			ps.setString(paramIndex, ((RDBMSUniqueStringID)argument).getID());
+	}
+	
+	/**
+	 * Reads an argument column of a row as the same type of Object
+	 * that {@link #getArgumentValue(Term)} returns for the argument.
+	 */
+	private Object readArgument(ResultSet rs, String column, Term argument) throws SQLException {
+		if (argument instanceof IntegerAttribute || argument instanceof RDBMSUniqueIntID)
+			return rs.getInt(column);
+		else if (argument instanceof DoubleAttribute)
+			return rs.getDouble(column);
+		else
+			return rs.getString(column);
+	}
+	
+	private Object getArgumentValue(Term argument) {
+		if (argument instanceof Attribute)
+			return ((Attribute)argument).getValue();
+		else if (argument instanceof UniqueID)
+			return ((UniqueID)argument).getInternalID();
+		else
+			throw new IllegalArgumentException("Unknown argument type: " + argument.getClass());
+	}
+	
 	@Override
 	public GroundAtom getAtom(Predicate p, GroundTerm... arguments) {
 		/*
@@ -353,11 +470,12 @@ public class RDBMSDatabase implements Database {
 	public boolean deleteAtom(GroundAtom a) {
 		boolean deleted = false;
 		QueryAtom qAtom = new QueryAtom(a.getPredicate(),a.getArguments());
-		if (pendingInserts.contains(qAtom) || pendingUpdates.contains(qAtom))
+		if (isPending(qAtom))
 			executePendingStatements();
 		if(cache.getCachedAtom(qAtom)!=null){
 			cache.removeCachedAtom(qAtom);
 		}
+		persistedAtoms.remove(qAtom);
 
 		RDBMSPredicateHandle ph = getHandle(a.getPredicate());
 		PreparedStatement stmt = deleteStatement.get(a.getPredicate());
@@ -389,29 +507,13 @@ public class RDBMSDatabase implements Database {
 		if (result != null)
 			return result;
 		
-		if (pendingInserts.contains(qAtom) || pendingUpdates.contains(qAtom))
+		if (isPending(qAtom))
 			executePendingStatements();
 		
 		ResultSet rs = queryDBForAtom(qAtom);
 		try {
 			if (rs.next()) {
-				double value = rs.getDouble(ph.valueColumn());
-	    		double confidence = rs.getDouble(ph.confidenceColumn());
-	    		int partition = rs.getInt(ph.partitionColumn());
-	    		
-	    		if (partition == writeID) {
-	    			// Found in the write partition
-	    			if (isClosed((StandardPredicate) p)) {
-	    				// Predicate is closed, instantiate as ObservedAtom
-	    				result = cache.instantiateObservedAtom(p, arguments, value, confidence);
-	    			} else {
-	    				// Predicate is open, instantiate as RandomVariableAtom
-	    				result = cache.instantiateRandomVariableAtom((StandardPredicate) p, arguments, value, confidence);
-	    			}
-	    		} else {
-	    			// Must be in a read partition, instantiate as ObservedAtom
-	    			result = cache.instantiateObservedAtom(p, arguments, value, confidence);
-	    		}
+				result = instantiateAtom(p, ph, arguments, rs);
 	    		if (rs.next())
 	    			throw new IllegalStateException("Atom cannot exist in more than one partition."+qAtom);
 			}
@@ -420,16 +522,49 @@ public class RDBMSDatabase implements Database {
 			throw new RuntimeException("Error analyzing results from atom query.", e);
 		}
 		
-		if (result == null) {
-			if (isClosed((StandardPredicate) p))
-				result = cache.instantiateObservedAtom(p, arguments, 0.0, Double.NaN);
-			else
-				result = cache.instantiateRandomVariableAtom((StandardPredicate) p, arguments, 0.0, Double.NaN);
-		}
+		if (result == null)
+			result = instantiateMissingAtom(p, arguments);
 		
 		return result;
 	}
 	
+	/**
+	 * Instantiates the GroundAtom persisted in the current row of a ResultSet.
+	 */
+	private GroundAtom instantiateAtom(StandardPredicate p, RDBMSPredicateHandle ph,
+			GroundTerm[] arguments, ResultSet rs) throws SQLException {
+		double value = rs.getDouble(ph.valueColumn());
+		double confidence = rs.getDouble(ph.confidenceColumn());
+		int partition = rs.getInt(ph.partitionColumn());
+		
+		if (partition == writeID) {
+			// Found in the write partition
+			if (isClosed(p)) {
+				// Predicate is closed, instantiate as ObservedAtom
+				return cache.instantiateObservedAtom(p, arguments, value, confidence);
+			} else {
+				// Predicate is open, instantiate as RandomVariableAtom
+				RandomVariableAtom atom = cache.instantiateRandomVariableAtom(p, arguments, value, confidence);
+				persistedAtoms.add(atom);
+				return atom;
+			}
+		} else {
+			// Must be in a read partition, instantiate as ObservedAtom
+			return cache.instantiateObservedAtom(p, arguments, value, confidence);
+		}
+	}
+	
+	/**
+	 * Instantiates a GroundAtom that is not persisted in any of the Database's
+	 * partitions.
+	 */
+	private GroundAtom instantiateMissingAtom(StandardPredicate p, GroundTerm[] arguments) {
+		if (isClosed(p))
+			return cache.instantiateObservedAtom(p, arguments, 0.0, Double.NaN);
+		else
+			return cache.instantiateRandomVariableAtom(p, arguments, 0.0, Double.NaN);
+	}
+	
 	private GroundAtom getAtom(FunctionalPredicate p, GroundTerm... arguments) {
 		QueryAtom qAtom = new QueryAtom(p, arguments);
 		GroundAtom result = cache.getCachedAtom(qAtom);
@@ -440,11 +575,159 @@ public class RDBMSDatabase implements Database {
 		return cache.instantiateObservedAtom(p, arguments, value, Double.NaN);
 	}
 	
+	@Override
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms) {
+		/* Groups the uncached atoms with StandardPredicates by Predicate */
+		List<GroundTerm[]> argumentLists = new ArrayList<GroundTerm[]>(atoms.size());
+		Map<StandardPredicate, List<GroundTerm[]>> misses = new HashMap<StandardPredicate, List<GroundTerm[]>>();
+		Set<QueryAtom> seen = new HashSet<QueryAtom>();
+		boolean pending = false;
+		for (QueryAtom qAtom : atoms) {
+			GroundTerm[] arguments = getGroundArguments(qAtom);
+			argumentLists.add(arguments);
+			if (qAtom.getPredicate() instanceof StandardPredicate
+					&& cache.getCachedAtom(qAtom) == null && seen.add(qAtom)) {
+				StandardPredicate p = (StandardPredicate) qAtom.getPredicate();
+				List<GroundTerm[]> list = misses.get(p);
+				if (list == null) {
+					getHandle(p);
+					list = new ArrayList<GroundTerm[]>();
+					misses.put(p, list);
+				}
+				list.add(arguments);
+				if (isPending(qAtom))
+					pending = true;
+			}
+		}
+		
+		if (pending)
+			executePendingStatements();
+		
+		/* Looks up the uncached atoms one query per block, which fills the cache */
+		for (Map.Entry<StandardPredicate, List<GroundTerm[]>> entry : misses.entrySet()) {
+			List<GroundTerm[]> list = entry.getValue();
+			for (int start = 0; start < list.size(); start += MAX_LOOKUP_BLOCK)
+				lookupAtoms(entry.getKey(), list.subList(start, Math.min(start + MAX_LOOKUP_BLOCK, list.size())));
+		}
+		
+		List<GroundAtom> results = new ArrayList<GroundAtom>(argumentLists.size());
+		int i = 0;
+		for (QueryAtom qAtom : atoms)
+			results.add(getAtom(qAtom.getPredicate(), argumentLists.get(i++)));
+		return results;
+	}
+	
+	private GroundTerm[] getGroundArguments(QueryAtom qAtom) {
+		Term[] terms = qAtom.getArguments();
+		GroundTerm[] arguments = new GroundTerm[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			if (terms[i] instanceof GroundTerm)
+				arguments[i] = (GroundTerm) terms[i];
+			else
+				throw new IllegalArgumentException("Atom is not ground: " + qAtom);
+		}
+		return arguments;
+	}
+	
+	/**
+	 * Instantiates a block of uncached GroundAtoms of a StandardPredicate with
+	 * one query.
+	 * <p>
+	 * The query selects the rows whose arguments are each in the set of values
+	 * of that argument in the block, and the rows are matched back to the atoms
+	 * by their arguments. Atoms without a row are instantiated as missing.
+	 */
+	private void lookupAtoms(StandardPredicate p, List<GroundTerm[]> argumentLists) {
+		if (closed)
+			throw new IllegalStateException("Cannot query atom from closed database.");
+		
+		RDBMSPredicateHandle ph = getHandle(p);
+		String[] columns = ph.argumentColumns();
+		
+		/* Indexes the distinct atoms by the values of their arguments */
+		Map<List<Object>, GroundTerm[]> remaining = new LinkedHashMap<List<Object>, GroundTerm[]>();
+		for (GroundTerm[] arguments : argumentLists) {
+			List<Object> key = new ArrayList<Object>(arguments.length);
+			for (int i = 0; i < arguments.length; i++)
+				key.add(getArgumentValue(arguments[i]));
+			remaining.put(key, arguments);
+		}
+		
+		/* Matches each atom's arguments together, so rows mixing the arguments of atoms are not read */
+		SelectQuery q = new SelectQuery();
+		QueryPreparer preparer = new QueryPreparer();
+		QueryPreparer.MultiPlaceHolder placeHolder = preparer.getNewMultiPlaceHolder();
+		q.addAllColumns().addCustomFromTable(ph.tableName());
+		q.addCondition(new InCondition(new CustomSql(ph.partitionColumn()), readIDs));
+		ComboCondition atoms = new ComboCondition(ComboCondition.Op.OR);
+		for (int j = 0; j < remaining.size(); j++) {
+			ComboCondition atom = new ComboCondition(ComboCondition.Op.AND);
+			for (int i = 0; i < columns.length; i++)
+				atom.addCondition(BinaryCondition.equalTo(new CustomSql(columns[i]), placeHolder));
+			atoms.addCondition(atom);
+		}
+		q.addCondition(atoms);
+		
+		Set<List<Object>> found = new HashSet<List<Object>>();
+		GroundTerm[] template = argumentLists.get(0);
+		try {
+			PreparedStatement ps = dbConnection.prepareStatement(q.toString());
+			try {
+				int paramIndex = 1;
+				for (GroundTerm[] arguments : remaining.values())
+					for (int i = 0; i < arguments.length; i++)
+						setArgument(ps, paramIndex++, arguments[i]);
+				
+				ResultSet rs = ps.executeQuery();
+				while (rs.next()) {
+					List<Object> key = new ArrayList<Object>(columns.length);
+					for (int i = 0; i < columns.length; i++)
+						key.add(readArgument(rs, columns[i], template[i]));
+					GroundTerm[] arguments = remaining.get(key);
+					if (arguments == null)
+						continue;
+					if (!found.add(key))
+						throw new IllegalStateException("Atom cannot exist in more than one partition."
+								+ new QueryAtom(p, arguments));
+					instantiateAtom(p, ph, arguments, rs);
+				}
+				rs.close();
+			} finally {
+				ps.close();
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Error querying DB for atoms.", e);
+		}
+		
+		for (Map.Entry<List<Object>, GroundTerm[]> entry : remaining.entrySet())
+			if (!found.contains(entry.getKey()))
+				instantiateMissingAtom(p, entry.getValue());
+	}
+	
+	private boolean isPending(QueryAtom qAtom) {
+		return pendingInserts.contains(qAtom) || pendingUpdates.contains(qAtom)
+				|| pendingUpserts.contains(qAtom);
+	}
+	
 	@Override
 	public void commit(RandomVariableAtom atom) {
+		if (closed)
+			throw new IllegalStateException("Cannot commit atom to closed database.");
+		
 		RDBMSPredicateHandle ph = getHandle(atom.getPredicate());
-		QueryAtom qAtom = new QueryAtom(atom.getPredicate(), atom.getArguments());
 		
+		if (persistedAtoms.contains(atom)) {
+			// Loaded from or already written to the write partition, so update it
+			pendingUpdates.add(atom);
+			return;
+		}
+		else if (upsertStatement.containsKey(atom.getPredicate()) && !pendingInserts.contains(atom)) {
+			// Let the database decide whether to insert or update it
+			pendingUpserts.add(atom);
+			return;
+		}
+		
+		QueryAtom qAtom = new QueryAtom(atom.getPredicate(), atom.getArguments());
 		boolean foundAtom = false;
 		ResultSet rs = queryDBForAtom(qAtom);
 		try {
@@ -452,9 +735,11 @@ public class RDBMSDatabase implements Database {
 				// Found atom, only update it if it is in write partition
 				foundAtom = true;
 				int partition = rs.getInt(ph.partitionColumn());
-				if (partition == writeID)
+				if (partition == writeID) {
 					// Store it in the list of atoms to be updated
 					pendingUpdates.add(atom);
+					persistedAtoms.add(atom);
+				}
 			}
 			rs.close();
 		} catch (SQLException e) {
@@ -467,6 +752,18 @@ public class RDBMSDatabase implements Database {
 		}
 	}
 	
+	@Override
+	public int commitAll(Iterable<? extends RandomVariableAtom> atoms) {
+		int count = 0;
+		for (RandomVariableAtom atom : atoms) {
+			commit(atom);
+			if (++count % MAX_COMMIT_BATCH == 0)
+				executePendingStatements();
+		}
+		executePendingStatements();
+		return count;
+	}
+	
 	/**
 	 * Helper method to fill in the fields of a PreparedStatement for an update
 	 * @param atom
@@ -510,9 +807,9 @@ public class RDBMSDatabase implements Database {
 	 * Helper method to fill in the fields of a PreparedStatement for an insert
 	 * @param atom
 	 */
-	private PreparedStatement insertAtom(RandomVariableAtom atom) {
+	private PreparedStatement insertAtom(RandomVariableAtom atom, Map<Predicate, PreparedStatement> statements) {
 		RDBMSPredicateHandle ph = getHandle(atom.getPredicate());
-		PreparedStatement insert = insertStatement.get(atom.getPredicate());
+		PreparedStatement insert = statements.get(atom.getPredicate());
 		int sqlIndex = 1;
 		
 		Term[] arguments = atom.getArguments();
@@ -545,37 +842,87 @@ public class RDBMSDatabase implements Database {
 	}
 
 	private void executePendingStatements() {
-		int pendingOperationCount = pendingInserts.size() + pendingUpdates.size();
+		int pendingOperationCount = pendingInserts.size() + pendingUpdates.size() + pendingUpserts.size();
 		if (pendingOperationCount == 0)
 			return;
 		
-		// Store all of the PendingStatements that need to be executed
-		Set<PreparedStatement> pendingStatements = new HashSet<PreparedStatement>();
-		for (RandomVariableAtom atom : pendingInserts)
-			pendingStatements.add(insertAtom(atom));
-		for (RandomVariableAtom atom : pendingUpdates)
-			pendingStatements.add(updateAtom(atom));
-		
 		log.trace("Executing a batch of {} statements.", pendingOperationCount);
 		int success = 0;
 
 		try {
-			for (PreparedStatement ps : pendingStatements) {
-				int[] changes = ps.executeBatch();
-				for (int change : changes)
-					success += change;
+			boolean autoCommit = dbConnection.getAutoCommit();
+			dbConnection.setAutoCommit(false);
+			try {
+				// Sends the statements in batches of at most MAX_COMMIT_BATCH
+				Set<PreparedStatement> pendingStatements = new HashSet<PreparedStatement>();
+				int batched = 0;
+				for (RandomVariableAtom atom : pendingInserts) {
+					pendingStatements.add(insertAtom(atom, insertStatement));
+					if (++batched % MAX_COMMIT_BATCH == 0)
+						success += executeBatches(pendingStatements, false);
+				}
+				for (RandomVariableAtom atom : pendingUpdates) {
+					pendingStatements.add(updateAtom(atom));
+					if (++batched % MAX_COMMIT_BATCH == 0)
+						success += executeBatches(pendingStatements, false);
+				}
+				success += executeBatches(pendingStatements, false);
+				for (RandomVariableAtom atom : pendingUpserts) {
+					pendingStatements.add(insertAtom(atom, upsertStatement));
+					if (++batched % MAX_COMMIT_BATCH == 0)
+						success += executeBatches(pendingStatements, true);
+				}
+				success += executeBatches(pendingStatements, true);
+				
+				if (success != pendingOperationCount)
+					throw new SQLException("Return code indicates that not all " +
+							"statements were executed successfully. [code: " + 
+							success + ", pending: " + pendingOperationCount + "]");
+				dbConnection.commit();
+			} catch (SQLException e) {
+				for (PreparedStatement ps : insertStatement.values())
+					ps.clearBatch();
+				for (PreparedStatement ps : updateStatement.values())
+					ps.clearBatch();
+				for (PreparedStatement ps : upsertStatement.values())
+					ps.clearBatch();
+				dbConnection.rollback();
+				throw e;
+			} finally {
+				dbConnection.setAutoCommit(autoCommit);
 			}
-			if (success != pendingOperationCount)
-				throw new RuntimeException("Return code indicates that not all " +
-						"statements were executed successfully. [code: " + 
-						success + ", pending: " + pendingOperationCount + "]");
-			
-			// Reset all of the pending commits
-			pendingInserts.clear();
-			pendingUpdates.clear();
 		} catch (SQLException e) {
 			throw new RuntimeException("Error when executing batched statements.", e);
 		}
+		
+		// Reset all of the pending commits
+		persistedAtoms.addAll(pendingInserts);
+		persistedAtoms.addAll(pendingUpserts);
+		pendingInserts.clear();
+		pendingUpdates.clear();
+		pendingUpserts.clear();
+	}
+	
+	/**
+	 * Executes and clears the batches of a set of statements.
+	 * 
+	 * @param upsert  whether the statements are upserts, for which the
+	 *                databases report different numbers of changed rows
+	 * @return the number of statements that succeeded
+	 */
+	private int executeBatches(Set<PreparedStatement> statements, boolean upsert) throws SQLException {
+		int success = 0;
+		for (PreparedStatement ps : statements) {
+			int[] changes = ps.executeBatch();
+			for (int change : changes) {
+				if (!upsert)
+					success += change;
+				else if (change != Statement.EXECUTE_FAILED)
+					success++;
+			}
+		}
+		statements.clear();
+		return success;
 	}
 	
 	@Override
@@ -587,64 +934,41 @@ public class RDBMSDatabase implements Database {
 		
 		Formula f = query.getFormula();
 		VariableAssignment partialGrounding = query.getPartialGrounding();
-		Set<Variable> projectTo = query.getProjectionSubset();
-		
 		VariableTypeMap varTypes = f.collectVariables(new VariableTypeMap());
-		if (projectTo.size() == 0) {
-			projectTo.addAll(varTypes.getVariables());
-			projectTo.removeAll(partialGrounding.getVariables());
-		}
+		Set<Variable> projectTo = getProjection(query, varTypes);
 		
 		// Construct query from formula
-		Formula2SQL sqler = new Formula2SQL(partialGrounding, projectTo, this);
+		Formula2SQL sqler = new Formula2SQL(partialGrounding, projectTo, this, true);
 		String queryString = sqler.getSQL(f);
-		log.trace(queryString);
+		List<Object> parameters = sqler.getParameters();
+		log.trace("{} {}", queryString, parameters);
 		
 		// Create and initialize ResultList
-		int i = 0;
-		RDBMSResultList results = new RDBMSResultList(projectTo.size());
-		for (int varIndex = 0; varIndex < query.getNumVariables(); varIndex++)
-			if (projectTo.contains(query.getVariable(varIndex)))
-				results.setVariable(query.getVariable(varIndex), i++);
+		RDBMSResultList results = newResultList(query, projectTo);
 		
 		try  {
-			Statement stmt = dbConnection.createStatement();
+			QueryTemplate template = queryTemplates.get(queryString);
+			if (template == null) {
+				template = new QueryTemplate(queryString, dbConnection.prepareStatement(queryString));
+				queryTemplates.put(queryString, template);
+			}
+			
+			long start = System.nanoTime();
+			PreparedStatement stmt = template.statement;
+			for (int paramIndex = 0; paramIndex < parameters.size(); paramIndex++)
+				stmt.setObject(paramIndex + 1, parameters.get(paramIndex));
 			try {
-				ResultSet rs = stmt.executeQuery(queryString);
+				ResultSet rs = stmt.executeQuery();
 				try {
-					while (rs.next()) {
-						GroundTerm[] res = new GroundTerm[projectTo.size()];
-						for (Variable var : projectTo) {
-							i = results.getPos(var);
-							if (partialGrounding.hasVariable(var)) {
-								res[i] = partialGrounding.getVariable(var);
-							} else {
-								ArgumentType type = varTypes.getType(var);
-								switch (type) {
-								case Double:
-									res[i] = new DoubleAttribute(rs.getDouble(var.getName()));
-									break;
-								case Integer:
-									res[i] = new IntegerAttribute(rs.getInt(var.getName()));
-									break;
-								case String:
-									res[i] = new StringAttribute(rs.getString(var.getName()));
-									break;
-								case UniqueID:
-									res[i] = getUniqueID(rs.getObject(var.getName()));
-									break;
-								default:
-									throw new IllegalArgumentException("Unknown argument type: " + type);
-								}
-							}
-						}
-						results.addResult(res);
-					}
+					while (rs.next())
+						results.addResult(readResult(rs, results, projectTo, varTypes, partialGrounding));
 				} finally {
 					rs.close();
 				}
 			} finally {
-				stmt.close();
+				stmt.clearParameters();
+				template.executions++;
+				template.time += System.nanoTime() - start;
 			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Error executing database query.", e);
@@ -652,6 +976,106 @@ public class RDBMSDatabase implements Database {
 		log.trace("Number of results: {}",results.size());
 		return results;
 	}
+	
+	@Override
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize) {
+		if (closed)
+			throw new IllegalStateException("Cannot perform query on database that was closed.");
+		if (fetchSize <= 0)
+			throw new IllegalArgumentException("Fetch size must be positive.");
+		
+		executePendingStatements();
+		
+		Formula f = query.getFormula();
+		VariableTypeMap varTypes = f.collectVariables(new VariableTypeMap());
+		Set<Variable> projectTo = getProjection(query, varTypes);
+		
+		// Construct query from formula
+		Formula2SQL sqler = new Formula2SQL(query.getPartialGrounding(), projectTo, this, true);
+		String queryString = sqler.getSQL(f);
+		List<Object> parameters = sqler.getParameters();
+		log.trace("{} {}", queryString, parameters);
+		
+		/*
+		 * The cursor gets its own statement, since it stays open while
+		 * other queries are executed
+		 */
+		try {
+			PreparedStatement stmt = dbConnection.prepareStatement(queryString,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			try {
+				stmt.setFetchSize(fetchSize);
+				for (int paramIndex = 0; paramIndex < parameters.size(); paramIndex++)
+					stmt.setObject(paramIndex + 1, parameters.get(paramIndex));
+				return new RDBMSResultCursor(this, query, projectTo, varTypes, stmt,
+						stmt.executeQuery(), fetchSize);
+			} catch (SQLException e) {
+				stmt.close();
+				throw e;
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Error executing database query.", e);
+		}
+	}
+	
+	/**
+	 * Returns the Variables to which a query projects, which by default are
+	 * all its Variables not in its partial grounding.
+	 */
+	private Set<Variable> getProjection(DatabaseQuery query, VariableTypeMap varTypes) {
+		Set<Variable> projectTo = query.getProjectionSubset();
+		if (projectTo.size() == 0) {
+			projectTo.addAll(varTypes.getVariables());
+			projectTo.removeAll(query.getPartialGrounding().getVariables());
+		}
+		return projectTo;
+	}
+	
+	/**
+	 * Returns an empty RDBMSResultList with the positions of the projected
+	 * Variables of a query.
+	 */
+	RDBMSResultList newResultList(DatabaseQuery query, Set<Variable> projectTo) {
+		int i = 0;
+		RDBMSResultList results = new RDBMSResultList(projectTo.size());
+		for (int varIndex = 0; varIndex < query.getNumVariables(); varIndex++)
+			if (projectTo.contains(query.getVariable(varIndex)))
+				results.setVariable(query.getVariable(varIndex), i++);
+		return results;
+	}
+	
+	/**
+	 * Reads the substitution in the current row of the results of a query.
+	 */
+	GroundTerm[] readResult(ResultSet rs, RDBMSResultList results, Set<Variable> projectTo,
+			VariableTypeMap varTypes, VariableAssignment partialGrounding) throws SQLException {
+		GroundTerm[] res = new GroundTerm[projectTo.size()];
+		for (Variable var : projectTo) {
+			int i = results.getPos(var);
+			if (partialGrounding.hasVariable(var)) {
+				res[i] = partialGrounding.getVariable(var);
+			} else {
+				ArgumentType type = varTypes.getType(var);
+				switch (type) {
+				case Double:
+					res[i] = new DoubleAttribute(rs.getDouble(var.getName()));
+					break;
+				case Integer:
+					res[i] = new IntegerAttribute(rs.getInt(var.getName()));
+					break;
+				case String:
+					res[i] = new StringAttribute(rs.getString(var.getName()));
+					break;
+				case UniqueID:
+					res[i] = getUniqueID(rs.getObject(var.getName()));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown argument type: " + type);
+				}
+			}
+		}
+		return res;
+	}
 
 	@Override
 	public boolean isClosed(StandardPredicate predicate) {
@@ -697,8 +1121,76 @@ public class RDBMSDatabase implements Database {
 				ps.close();
 			for (PreparedStatement ps : insertStatement.values())
 				ps.close();
+			for (PreparedStatement ps : deleteStatement.values())
+				ps.close();
+			for (PreparedStatement ps : upsertStatement.values())
+				ps.close();
 		} catch (SQLException e) {
 			throw new RuntimeException("Error closing prepared statements.", e);
 		}
+		for (QueryTemplate template : queryTemplates.values()) {
+			log.debug("Executed query {} times in {} ms: {}", new Object[] {template.executions,
+					template.time / 1000000, template.sql});
+			template.close();
+		}
+	}
+	
+	/**
+	 * Returns the templates of the queries that {@link #executeQuery(DatabaseQuery)}
+	 * keeps prepared, with the number of times each was executed and the
+	 * time spent executing it.
+	 * 
+	 * @return the query templates, least recently used first
+	 */
+	public List<QueryTemplate> getQueryTemplates() {
+		return new ArrayList<QueryTemplate>(queryTemplates.values());
+	}
+	
+	/**
+	 * The SQL of a query with its constants as bind parameters, prepared once
+	 * and executed for every query with the same formula structure.
+	 */
+	public static class QueryTemplate {
+		private final String sql;
+		private final PreparedStatement statement;
+		private long executions;
+		private long time;
+		
+		private QueryTemplate(String sql, PreparedStatement statement) {
+			this.sql = sql;
+			this.statement = statement;
+			executions = 0;
+			time = 0;
+		}
+		
+		/**
+		 * @return the SQL of the query, with a ? for each constant
+		 */
+		public String getSQL() {
+			return sql;
+		}
+		
+		/**
+		 * @return the number of times the query was executed
+		 */
+		public long getExecutions() {
+			return executions;
+		}
+		
+		/**
+		 * @return the total time spent executing the query and reading its
+		 *         results, in nanoseconds
+		 */
+		public long getExecutionTime() {
+			return time;
+		}
+		
+		private void close() {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				throw new RuntimeException("Error closing prepared statement.", e);
+			}
+		}
 	}
 }
@@ -0,0 +1,96 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2013 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.database.rdbms;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
+import edu.umd.cs.psl.database.ResultList;
+import edu.umd.cs.psl.model.argument.Variable;
+import edu.umd.cs.psl.model.argument.VariableTypeMap;
+
+/**
+ * A {@link ResultCursor} over an open ResultSet, which reads at most the
+ * fetch size rows into each {@link RDBMSResultList}.
+ */
+public class RDBMSResultCursor implements ResultCursor {
+
+	private final RDBMSDatabase db;
+	private final DatabaseQuery query;
+	private final Set<Variable> projectTo;
+	private final VariableTypeMap varTypes;
+	private final int fetchSize;
+	
+	private PreparedStatement stmt;
+	private ResultSet rs;
+	
+	RDBMSResultCursor(RDBMSDatabase db, DatabaseQuery query, Set<Variable> projectTo,
+			VariableTypeMap varTypes, PreparedStatement stmt, ResultSet rs, int fetchSize) {
+		this.db = db;
+		this.query = query;
+		this.projectTo = projectTo;
+		this.varTypes = varTypes;
+		this.stmt = stmt;
+		this.rs = rs;
+		this.fetchSize = fetchSize;
+	}
+	
+	@Override
+	public int getArity() {
+		return projectTo.size();
+	}
+
+	@Override
+	public ResultList nextBlock() {
+		if (rs == null)
+			return null;
+		
+		RDBMSResultList results = db.newResultList(query, projectTo);
+		try {
+			while (results.size() < fetchSize && rs.next())
+				results.addResult(db.readResult(rs, results, projectTo, varTypes, query.getPartialGrounding()));
+		} catch (SQLException e) {
+			close();
+			throw new RuntimeException("Error reading database query results.", e);
+		}
+		
+		if (results.size() < fetchSize)
+			close();
+		return (results.size() > 0) ? results : null;
+	}
+
+	@Override
+	public void close() {
+		if (rs == null)
+			return;
+		
+		try {
+			rs.close();
+			stmt.close();
+		} catch (SQLException e) {
+			throw new RuntimeException("Error closing database query results.", e);
+		} finally {
+			rs = null;
+			stmt = null;
+		}
+	}
+
+}
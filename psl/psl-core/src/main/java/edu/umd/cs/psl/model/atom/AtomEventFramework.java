@@ -16,10 +16,12 @@
  */
 package edu.umd.cs.psl.model.atom;
 
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 
@@ -33,6 +35,7 @@ import edu.umd.cs.psl.config.ConfigBundle;
 import edu.umd.cs.psl.config.ConfigManager;
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.predicate.Predicate;
@@ -126,6 +129,33 @@ public class AtomEventFramework implements AtomManager {
 		return atom;
 	}
 	
+	/**
+	 * Calls {@link Database#getAtoms(Collection)} and adds a
+	 * {@link AtomEvent#ConsideredRVAtom} event to the job queue for each
+	 * GroundAtom that is a RandomVariableAtom and was not already in the
+	 * Database's AtomCache, in the same order as {@link #getAtom(Predicate, GroundTerm...)}
+	 * would for each Atom in turn.
+	 * 
+	 * @see #workOffJobQueue()
+	 */
+	@Override
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms) {
+		Set<Atom> uncached = new HashSet<Atom>();
+		for (QueryAtom atom : atoms)
+			if (db.getAtomCache().getCachedAtom(atom) == null)
+				uncached.add(atom);
+		
+		List<GroundAtom> results = db.getAtoms(atoms);
+		for (GroundAtom atom : results) {
+			if (atom instanceof RandomVariableAtom && uncached.remove(atom)) {
+				AtomEvent event = new AtomEvent(AtomEvent.Type.ConsideredRVAtom,
+						(RandomVariableAtom) atom, this);
+				addAtomJob(event);
+			}
+		}
+		return results;
+	}
+	
 	/**
 	 * Registers a listener for any event types in a set.
 	 * 
@@ -304,6 +334,11 @@ public class AtomEventFramework implements AtomManager {
 		return db.executeQuery(query);
 	}
 	
+	@Override
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize) {
+		return db.executeQuery(query, fetchSize);
+	}
+	
 	@Override
 	public boolean isClosed(StandardPredicate predicate) {
 		return db.isClosed(predicate);
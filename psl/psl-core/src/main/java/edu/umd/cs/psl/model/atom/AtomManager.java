@@ -16,8 +16,12 @@
  */
 package edu.umd.cs.psl.model.atom;
 
+import java.util.Collection;
+import java.util.List;
+
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.predicate.Predicate;
@@ -51,6 +55,18 @@ public interface AtomManager {
 	 */
 	public GroundAtom getAtom(Predicate p, GroundTerm... arguments);
 	
+	/**
+	 * Returns the GroundAtoms for a collection of ground {@link QueryAtom QueryAtoms},
+	 * each as {@link #getAtom(Predicate, GroundTerm...)} would return it.
+	 * <p>
+	 * This method must call {@link Database#getAtoms(Collection)}
+	 * to actually retrieve the GroundAtoms.
+	 * 
+	 * @param atoms  the Atoms to retrieve
+	 * @return the GroundAtoms, in the iteration order of atoms
+	 */
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms);
+	
 	/**
 	 * Calls {@link Database#executeQuery(DatabaseQuery)} on the
 	 * encapsulated Database.
@@ -60,6 +76,16 @@ public interface AtomManager {
 	 */
 	public ResultList executeQuery(DatabaseQuery query);
 	
+	/**
+	 * Calls {@link Database#executeQuery(DatabaseQuery, int)} on the
+	 * encapsulated Database.
+	 * 
+	 * @param query  the query to execute
+	 * @param fetchSize  the maximum number of groundings in each block
+	 * @return the query results exactly as returned by the Database
+	 */
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize);
+	
 	/**
 	 * Calls {@link Database#isClosed(StandardPredicate)} on the
 	 * encapsulated Database.
@@ -46,4 +46,10 @@ public class LazyPersistedAtomManager extends PersistedAtomManager {
 			return atom;
 	}
 
+	@Override
+	protected void checkAtom(GroundAtom atom) {
+		if (atom instanceof RandomVariableAtom)
+			persistedCache.add((RandomVariableAtom) atom);
+	}
+
 }
@@ -16,12 +16,16 @@
  */
 package edu.umd.cs.psl.model.atom;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.argument.Variable;
@@ -80,10 +84,12 @@ public class PersistedAtomManager implements AtomManager {
 			
 			// Execute the query and interpret the results
 			ResultList list = db.executeQuery(new DatabaseQuery(queryFormula));
-			for (int i = 0; i < list.size(); i ++) {
-				// Query the database for this specific atom
-				GroundAtom atom = db.getAtom(predicate, list.get(i));
-				
+			List<QueryAtom> atoms = new ArrayList<QueryAtom>(list.size());
+			for (int i = 0; i < list.size(); i ++)
+				atoms.add(new QueryAtom(predicate, list.get(i)));
+			
+			// Query the database for all the atoms at once
+			for (GroundAtom atom : db.getAtoms(atoms)) {
 				// If this is a RandomVariableAtom, store it in our cache
 				if (atom instanceof RandomVariableAtom)
 					persistedCache.add((RandomVariableAtom)atom);
@@ -104,11 +110,37 @@ public class PersistedAtomManager implements AtomManager {
 			return atom;
 	}
 
+	@Override
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms) {
+		List<GroundAtom> results = db.getAtoms(atoms);
+		for (GroundAtom atom : results)
+			checkAtom(atom);
+		return results;
+	}
+	
+	/**
+	 * Checks that a GroundAtom returned from the Database may be returned
+	 * by this AtomManager.
+	 * 
+	 * @param atom  the GroundAtom to check
+	 * @throws IllegalArgumentException  if atom is a RandomVariableAtom that
+	 *                                       was not persisted
+	 */
+	protected void checkAtom(GroundAtom atom) {
+		if (atom instanceof RandomVariableAtom && !persistedCache.contains(atom))
+			throw new IllegalArgumentException("Can only call getAtom() on persisted RandomVariableAtoms using a PersistedAtomManager. Cannot access " + atom);
+	}
+
 	@Override
 	public ResultList executeQuery(DatabaseQuery query) {
 		return db.executeQuery(query);
 	}
 	
+	@Override
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize) {
+		return db.executeQuery(query, fetchSize);
+	}
+	
 	@Override
 	public boolean isClosed(StandardPredicate predicate) {
 		return db.isClosed(predicate);
@@ -16,8 +16,12 @@
  */
 package edu.umd.cs.psl.model.atom;
 
+import java.util.Collection;
+import java.util.List;
+
 import edu.umd.cs.psl.database.Database;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.argument.GroundTerm;
 import edu.umd.cs.psl.model.predicate.Predicate;
@@ -42,12 +46,25 @@ public class SimpleAtomManager implements AtomManager {
 	public GroundAtom getAtom(Predicate p, GroundTerm... arguments) {
 		return db.getAtom(p, arguments);
 	}
+	
+	/**
+	 * Calls {@link Database#getAtoms(Collection)}.
+	 */
+	@Override
+	public List<GroundAtom> getAtoms(Collection<QueryAtom> atoms) {
+		return db.getAtoms(atoms);
+	}
 
 	@Override
 	public ResultList executeQuery(DatabaseQuery query) {
 		return db.executeQuery(query);
 	}
 	
+	@Override
+	public ResultCursor executeQuery(DatabaseQuery query, int fetchSize) {
+		return db.executeQuery(query, fetchSize);
+	}
+	
 	@Override
 	public boolean isClosed(StandardPredicate predicate) {
 		return db.isClosed(predicate);
@@ -276,9 +276,20 @@ public class FormulaAnalysis {
 		}
 		
 		public List<VariableAssignment> traceAtomEvent(AtomEvent event) {
+			return traceAtom(event.getAtom(), event.getType() == AtomEvent.Type.ActivatedRVAtomOnline);
+		}
+		
+		/**
+		 * Returns the partial groundings of the clause that contain an atom.
+		 * 
+		 * @param atom  the ground atom to trace
+		 * @param allLiterals  whether to trace the atom to all literals with
+		 *                     StandardPredicates, or only to positive ones
+		 * @return the partial groundings, one per literal the atom matches
+		 */
+		public List<VariableAssignment> traceAtom(Atom atom, boolean allLiterals) {
 			Collection<Atom> atoms;
-			Atom atom = event.getAtom();
-			if(event.getType() == AtomEvent.Type.ActivatedRVAtomOnline){
+			if(allLiterals){
 				atoms = dependenceAll.get(atom.getPredicate());
 			} else {
 				atoms = dependence.get(atom.getPredicate());
@@ -0,0 +1,61 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.model.kernel;
+
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.reasoner.function.FunctionTerm;
+
+/**
+ * A GroundCompatibilityKernel whose function definition is a linear function
+ * of its {@link GroundAtom GroundAtoms}, or the hinge of one, possibly squared,
+ * and which can describe that linear function without constructing a
+ * {@link FunctionTerm}.
+ * <p>
+ * Reasoners can use this description instead of
+ * {@link #getFunctionDefinition()} to avoid allocating function objects.
+ */
+public interface LinearGroundCompatibilityKernel extends GroundCompatibilityKernel {
+
+	/**
+	 * @return true if the function definition is squared
+	 */
+	public boolean isSquared();
+
+	/**
+	 * @return true if the function definition is the maximum of the linear
+	 *         function and zero, false if it is the linear function
+	 */
+	public boolean isHinge();
+
+	/**
+	 * @return the number of atoms in the linear function, counting repeats
+	 */
+	public int getNumLinearSummands();
+
+	/**
+	 * Writes the summands of the linear function, which equals the sum of
+	 * coeffs[i] times the value of atoms[i] plus the returned constant.
+	 *
+	 * @param atoms  array to which the atom of each summand is written,
+	 *               with length at least {@link #getNumLinearSummands()}
+	 * @param coeffs  array to which the coefficient of each summand is
+	 *                written, with length at least {@link #getNumLinearSummands()}
+	 * @return the constant of the linear function
+	 */
+	public double getLinearSummands(GroundAtom[] atoms, double[] coeffs);
+
+}
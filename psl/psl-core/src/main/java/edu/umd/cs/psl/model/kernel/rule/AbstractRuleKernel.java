@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import edu.umd.cs.psl.application.groundkernelstore.GroundKernelStore;
 import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.ResultCursor;
 import edu.umd.cs.psl.database.ResultList;
 import edu.umd.cs.psl.model.NumericUtilities;
 import edu.umd.cs.psl.model.argument.GroundTerm;
@@ -36,6 +37,7 @@ import edu.umd.cs.psl.model.atom.AtomEvent;
 import edu.umd.cs.psl.model.atom.AtomEventFramework;
 import edu.umd.cs.psl.model.atom.AtomManager;
 import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.QueryAtom;
 import edu.umd.cs.psl.model.atom.RandomVariableAtom;
 import edu.umd.cs.psl.model.atom.VariableAssignment;
 import edu.umd.cs.psl.model.formula.Formula;
@@ -51,6 +53,11 @@ import edu.umd.cs.psl.reasoner.function.FunctionVariable;
 abstract public class AbstractRuleKernel extends AbstractKernel {
 	private static final Logger log = LoggerFactory.getLogger(AbstractRuleKernel.class);
 	
+	/**
+	 * The number of results whose atoms are retrieved together while grounding.
+	 */
+	private static final int GROUNDING_BLOCK_SIZE = 1000;
+	
 	protected Formula formula;
 	protected final DNFClause clause;
 	
@@ -83,6 +90,26 @@ abstract public class AbstractRuleKernel extends AbstractKernel {
 		log.debug("Grounded {} instances of rule {}", numGrounded, this);
 	}
 	
+	/**
+	 * Like {@link #groundAll(AtomManager, GroundKernelStore)}, but reads the
+	 * results of the grounding query in blocks, so that at most fetchSize
+	 * results are in memory at once.
+	 * 
+	 * @param fetchSize  the maximum number of results in each block
+	 */
+	public void groundAll(AtomManager atomManager, GroundKernelStore gks, int fetchSize) {
+		ResultCursor cursor = atomManager.executeQuery(new DatabaseQuery(clause.getQueryFormula()), fetchSize);
+		int numGrounded = 0;
+		try {
+			ResultList res;
+			while ((res = cursor.nextBlock()) != null)
+				numGrounded += groundFormula(atomManager, gks, res, null);
+		} finally {
+			cursor.close();
+		}
+		log.debug("Grounded {} instances of rule {}", numGrounded, this);
+	}
+	
 	protected int groundFormula(AtomManager atomManager, GroundKernelStore gks, ResultList res,  VariableAssignment var) {
 		int numGroundingsAdded = 0;
 		List<GroundAtom> posLiterals = new ArrayList<GroundAtom>(4);
@@ -94,6 +121,8 @@ abstract public class AbstractRuleKernel extends AbstractKernel {
 
 		GroundAtom atom;
 		for (int i = 0; i < res.size(); i++) {
+			if (i % GROUNDING_BLOCK_SIZE == 0)
+				prefetchAtoms(atomManager, res, i, Math.min(i + GROUNDING_BLOCK_SIZE, res.size()), var);
 			
 			for (int j = 0; j < clause.getPosLiterals().size(); j++) {
 				atom = groundAtom(atomManager, clause.getPosLiterals().get(j), res, i, var);
@@ -131,7 +160,30 @@ abstract public class AbstractRuleKernel extends AbstractKernel {
 		return numGroundingsAdded;
 	}
 	
+	/**
+	 * Retrieves the atoms of a block of results together, so that grounding
+	 * them only finds atoms that are already in memory.
+	 * 
+	 * @param start  the index of the first result in the block
+	 * @param end  the index after the last result in the block
+	 */
+	protected void prefetchAtoms(AtomManager atomManager, ResultList res, int start, int end, VariableAssignment var) {
+		int numLiterals = clause.getPosLiterals().size() + clause.getNegLiterals().size();
+		List<QueryAtom> atoms = new ArrayList<QueryAtom>((end - start) * numLiterals);
+		for (int i = start; i < end; i++) {
+			for (Atom atom : clause.getPosLiterals())
+				atoms.add(new QueryAtom(atom.getPredicate(), groundArguments(atom, res, i, var)));
+			for (Atom atom : clause.getNegLiterals())
+				atoms.add(new QueryAtom(atom.getPredicate(), groundArguments(atom, res, i, var)));
+		}
+		atomManager.getAtoms(atoms);
+	}
+	
 	protected GroundAtom groundAtom(AtomManager atomManager, Atom atom, ResultList res, int resultIndex, VariableAssignment var) {
+		return atomManager.getAtom(atom.getPredicate(), groundArguments(atom, res, resultIndex, var));
+	}
+	
+	protected GroundTerm[] groundArguments(Atom atom, ResultList res, int resultIndex, VariableAssignment var) {
 		Term[] oldArgs = atom.getArguments();
 		GroundTerm[] newArgs = new GroundTerm[atom.getArity()];
 		for (int i = 0; i < oldArgs.length; i++)
@@ -147,7 +199,7 @@ abstract public class AbstractRuleKernel extends AbstractKernel {
 			else
 				throw new IllegalArgumentException("Unrecognized type of Term.");
 		
-		return atomManager.getAtom(atom.getPredicate(), newArgs);
+		return newArgs;
 	}
 	
 	abstract protected AbstractGroundRule groundFormulaInstance(List<GroundAtom> posLiterals, List<GroundAtom> negLiterals);
@@ -165,6 +217,26 @@ abstract public class AbstractRuleKernel extends AbstractKernel {
 		}
 	}
 	
+	/**
+	 * Grounds the groundings of this rule that contain an atom in any literal,
+	 * such as an atom whose truth value changed.
+	 * 
+	 * @param atom  the atom the groundings must contain
+	 * @param atomManager  the AtomManager with which to ground
+	 * @param gks  the GroundKernelStore to which to add the groundings
+	 * @return the number of groundings added
+	 */
+	public int groundContaining(GroundAtom atom, AtomManager atomManager, GroundKernelStore gks) {
+		int numGrounded = 0;
+		for (VariableAssignment var : clause.traceAtom(atom, true)) {
+			DatabaseQuery dbQuery = new DatabaseQuery(clause.getQueryFormula());
+			dbQuery.getPartialGrounding().putAll(var);
+			ResultList res = atomManager.executeQuery(dbQuery);
+			numGrounded += groundFormula(atomManager, gks, res, var);
+		}
+		return numGrounded;
+	}
+	
 	@Override
 	public void registerForAtomEvents(AtomEventFramework manager) {
 		clause.registerClauseForEvents(manager, AtomEvent.ActivatedEventTypeSet, this);
@@ -20,7 +20,7 @@ import java.util.List;
 
 import edu.umd.cs.psl.model.atom.GroundAtom;
 import edu.umd.cs.psl.model.kernel.CompatibilityKernel;
-import edu.umd.cs.psl.model.kernel.GroundCompatibilityKernel;
+import edu.umd.cs.psl.model.kernel.LinearGroundCompatibilityKernel;
 import edu.umd.cs.psl.model.parameters.Weight;
 import edu.umd.cs.psl.reasoner.function.ConstantNumber;
 import edu.umd.cs.psl.reasoner.function.FunctionTerm;
@@ -28,7 +28,7 @@ import edu.umd.cs.psl.reasoner.function.MaxFunction;
 import edu.umd.cs.psl.reasoner.function.PowerOfTwo;
 
 public class GroundCompatibilityRule extends AbstractGroundRule implements
-		GroundCompatibilityKernel {
+		LinearGroundCompatibilityKernel {
 	
 	private Weight weight;
 	private final boolean squared;
@@ -66,6 +66,36 @@ public class GroundCompatibilityRule extends AbstractGroundRule implements
 					: MaxFunction.of(getFunction(), new ConstantNumber(0.0));
 	}
 
+	@Override
+	public boolean isSquared() {
+		return squared;
+	}
+	
+	@Override
+	public boolean isHinge() {
+		return posLiterals.size() + negLiterals.size() != 1;
+	}
+	
+	@Override
+	public int getNumLinearSummands() {
+		return posLiterals.size() + negLiterals.size();
+	}
+	
+	/* Must match getFunction() */
+	@Override
+	public double getLinearSummands(GroundAtom[] atoms, double[] coeffs) {
+		int i = 0;
+		for (int j = 0; j < posLiterals.size(); j++) {
+			atoms[i] = posLiterals.get(j);
+			coeffs[i++] = 1.0;
+		}
+		for (int j = 0; j < negLiterals.size(); j++) {
+			atoms[i] = negLiterals.get(j);
+			coeffs[i++] = -1.0;
+		}
+		return 1.0 - posLiterals.size();
+	}
+
 	@Override
 	public double getIncompatibility() {
 		double inc = 1.0 - getTruthValue();
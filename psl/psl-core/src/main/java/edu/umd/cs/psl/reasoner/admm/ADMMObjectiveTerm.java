@@ -26,18 +26,52 @@ abstract class ADMMObjectiveTerm {
 	protected final double[] x;
 	protected final double[] y;
 	protected final int[] zIndices;
+	/** Position of this term's first local variable in x, y, and zIndices */
+	protected final int start;
+	/** Number of local variables */
+	protected final int size;
+	/** Slab holding this term's data if the reasoner packs terms, else null */
+	private final PackedTermStore.Slab slab;
 	
 	public ADMMObjectiveTerm(ADMMReasoner reasoner, int[] zIndices) {
 		this.reasoner = reasoner;
+		size = zIndices.length;
 		
-		x = new double[zIndices.length];
-		y = new double[zIndices.length];
-		
-		this.zIndices = zIndices;
+		if (reasoner.termStore != null) {
+			slab = reasoner.termStore.slabFor(size);
+			start = slab.allocate(size);
+			x = slab.x;
+			y = slab.y;
+			this.zIndices = slab.zIndices;
+			System.arraycopy(zIndices, 0, this.zIndices, start, size);
+		}
+		else {
+			slab = null;
+			start = 0;
+			x = new double[size];
+			y = new double[size];
+			this.zIndices = zIndices;
+		}
 		
 		/* This loop ensures that the reasoner, when it first computes y, will keep it at 0 */
-		for (int i = 0; i < x.length; i++)
-			x[i] = reasoner.z.get(zIndices[i]);
+		for (int i = start; i < start + size; i++)
+			x[i] = reasoner.z[this.zIndices[i]];
+	}
+	
+	/**
+	 * Stores coefficients alongside this term's local variables.
+	 * <p>
+	 * Coefficient i of this term is at index start + i of the returned array.
+	 * 
+	 * @param coeffs  coefficients indexed from 0
+	 * @return the array holding the coefficients
+	 */
+	protected double[] packCoefficients(double[] coeffs) {
+		if (slab == null)
+			return coeffs;
+		
+		System.arraycopy(coeffs, 0, slab.coeffs, start, size);
+		return slab.coeffs;
 	}
 	
 	/**
@@ -51,8 +85,8 @@ abstract class ADMMObjectiveTerm {
 	 * @return this for convenience
 	 */
 	protected ADMMObjectiveTerm updateLagrange() {
-		for (int i = 0; i < y.length; i++) {
-			y[i] = y[i] + reasoner.stepSize * (x[i] - reasoner.z.get(zIndices[i]));
+		for (int i = start; i < start + size; i++) {
+			y[i] = y[i] + reasoner.stepSize * (x[i] - reasoner.z[zIndices[i]]);
 		}
 		
 		return this;
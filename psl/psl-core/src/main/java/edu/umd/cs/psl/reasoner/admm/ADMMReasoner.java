@@ -17,12 +17,19 @@
 package edu.umd.cs.psl.reasoner.admm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +39,13 @@ import com.google.common.collect.Iterables;
 import de.mathnbits.util.KeyedRetrievalSet;
 import edu.umd.cs.psl.config.ConfigBundle;
 import edu.umd.cs.psl.config.ConfigManager;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.ObservedAtom;
 import edu.umd.cs.psl.model.kernel.GroundCompatibilityKernel;
 import edu.umd.cs.psl.model.kernel.GroundConstraintKernel;
 import edu.umd.cs.psl.model.kernel.GroundKernel;
 import edu.umd.cs.psl.model.kernel.Kernel;
+import edu.umd.cs.psl.model.kernel.LinearGroundCompatibilityKernel;
 import edu.umd.cs.psl.reasoner.Reasoner;
 import edu.umd.cs.psl.reasoner.function.AtomFunctionVariable;
 import edu.umd.cs.psl.reasoner.function.ConstantNumber;
@@ -114,38 +124,257 @@ public class ADMMReasoner implements Reasoner {
 	 * (by default uses the number of processors in the system) */
 	public static final int NUM_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
 	
-	private final int maxIter;
-	/* Sometimes called rho or eta */
-	final double stepSize;
+	/**
+	 * Key for boolean property. If true, the local variables, Lagrange
+	 * multipliers, and coefficients of all terms are packed into a few large
+	 * arrays so that sweeps over the terms access memory sequentially.
+	 */
+	public static final String PACKED_TERMS_KEY = CONFIG_PREFIX + ".packedterms";
+	/** Default value for PACKED_TERMS_KEY property */
+	public static final boolean PACKED_TERMS_DEFAULT = false;
+	
+	/**
+	 * Key for positive integer property. The number of local variables in
+	 * each array used to pack terms when PACKED_TERMS_KEY is true.
+	 */
+	public static final String PACKED_SLAB_SIZE_KEY = CONFIG_PREFIX + ".packedslabsize";
+	/** Default value for PACKED_SLAB_SIZE_KEY property */
+	public static final int PACKED_SLAB_SIZE_DEFAULT = 1 << 20;
+	
+	/**
+	 * Key for {@link SchedulingType} enum property. Determines how the terms
+	 * and consensus variables are divided among the threads.
+	 */
+	public static final String SCHEDULING_KEY = CONFIG_PREFIX + ".scheduling";
+	/** Default value for SCHEDULING_KEY property */
+	public static final SchedulingType SCHEDULING_DEFAULT = SchedulingType.STATIC;
+	
+	/**
+	 * Key for positive integer property. The number of terms or consensus
+	 * variables a thread claims at a time when SCHEDULING_KEY is DYNAMIC.
+	 */
+	public static final String CHUNK_SIZE_KEY = CONFIG_PREFIX + ".chunksize";
+	/** Default value for CHUNK_SIZE_KEY property */
+	public static final int CHUNK_SIZE_DEFAULT = 256;
+	
+	/**
+	 * Key for boolean property. If true, adding, removing, or changing
+	 * ground kernels after the model is built only updates the affected terms
+	 * and variables at the next optimization, instead of rebuilding the model.
+	 * The local variables, Lagrange multipliers, and consensus variables of
+	 * unaffected terms keep their values. The index of the local copies of
+	 * each variable is still rebuilt, which takes time linear in the size of
+	 * the model.
+	 */
+	public static final String INCREMENTAL_KEY = CONFIG_PREFIX + ".incremental";
+	/** Default value for INCREMENTAL_KEY property */
+	public static final boolean INCREMENTAL_DEFAULT = false;
+	
+	/**
+	 * Key for non-negative double property. If INCREMENTAL_KEY is true and the
+	 * number of changed ground kernels exceeds this fraction of the number of
+	 * terms, the model is rebuilt instead of updated.
+	 */
+	public static final String INCREMENTAL_MAX_FRACTION_KEY = CONFIG_PREFIX + ".incrementalmaxfraction";
+	/** Default value for INCREMENTAL_MAX_FRACTION_KEY property */
+	public static final double INCREMENTAL_MAX_FRACTION_DEFAULT = 0.5;
+	
+	/**
+	 * Key for boolean property. If true, the step size is adapted at each
+	 * check of the stopping criteria to keep the primal and dual residuals
+	 * within a factor of RESIDUAL_BALANCE_KEY of each other. The adapted
+	 * step size carries over to later optimizations.
+	 */
+	public static final String ADAPTIVE_STEP_SIZE_KEY = CONFIG_PREFIX + ".adaptivestepsize";
+	/** Default value for ADAPTIVE_STEP_SIZE_KEY property */
+	public static final boolean ADAPTIVE_STEP_SIZE_DEFAULT = false;
+	
+	/**
+	 * Key for double property greater than 1. If ADAPTIVE_STEP_SIZE_KEY is
+	 * true, the step size changes when one residual exceeds the other by more
+	 * than this factor.
+	 */
+	public static final String RESIDUAL_BALANCE_KEY = CONFIG_PREFIX + ".residualbalance";
+	/** Default value for RESIDUAL_BALANCE_KEY property */
+	public static final double RESIDUAL_BALANCE_DEFAULT = 10;
+	
+	/**
+	 * Key for double property greater than 1. If ADAPTIVE_STEP_SIZE_KEY is
+	 * true, the factor by which the step size is multiplied or divided when
+	 * it changes.
+	 */
+	public static final String STEP_SIZE_FACTOR_KEY = CONFIG_PREFIX + ".stepsizefactor";
+	/** Default value for STEP_SIZE_FACTOR_KEY property */
+	public static final double STEP_SIZE_FACTOR_DEFAULT = 2;
 	
-	private final double epsilonRel, epsilonAbs;
-	private final int stopCheck;
-	private int n;
+	/**
+	 * Key for double property in (0, 2). The relaxation parameter of the
+	 * consensus step. Each local variable is replaced by this multiple of
+	 * itself plus one minus this multiple of its previous consensus variable.
+	 * Values in (1, 2) over-relax the updates, which often speeds up
+	 * convergence.
+	 */
+	public static final String RELAXATION_KEY = CONFIG_PREFIX + ".relaxation";
+	/** Default value for RELAXATION_KEY property (no relaxation) */
+	public static final double RELAXATION_DEFAULT = 1.0;
+	
+	/**
+	 * Key for boolean property. If true, the consensus variables and Lagrange
+	 * multipliers are extrapolated with Nesterov momentum after each
+	 * iteration (fast ADMM). The momentum is restarted whenever the combined
+	 * residual fails to decrease by a factor of RESTART_FACTOR_KEY.
+	 */
+	public static final String ACCELERATED_KEY = CONFIG_PREFIX + ".accelerated";
+	/** Default value for ACCELERATED_KEY property */
+	public static final boolean ACCELERATED_DEFAULT = false;
+	
+	/**
+	 * Key for double property in (0, 1). If ACCELERATED_KEY is true, the
+	 * momentum restarts when the combined residual is not smaller than this
+	 * multiple of the previous one.
+	 */
+	public static final String RESTART_FACTOR_KEY = CONFIG_PREFIX + ".restartfactor";
+	/** Default value for RESTART_FACTOR_KEY property */
+	public static final double RESTART_FACTOR_DEFAULT = 0.999;
+	
+	/** Ways of dividing each ADMM iteration among the threads */
+	public enum SchedulingType {
+		/**
+		 * Each thread gets a contiguous range of terms and a contiguous range
+		 * of consensus variables, each with an equal number of elements.
+		 */
+		STATIC,
+		/**
+		 * Each thread gets a contiguous range of terms with about the same
+		 * total number of local variables, and a contiguous range of consensus
+		 * variables with about the same total number of local copies.
+		 */
+		WEIGHTED,
+		/**
+		 * Threads repeatedly claim the next unprocessed chunk of terms (or
+		 * consensus variables) until none remain, so threads that finish early
+		 * take over work that would otherwise wait for slower ones.
+		 */
+		DYNAMIC;
+	}
+	
+	final int maxIter;
+	/* Sometimes called rho or eta. Only changes between iterations. */
+	double stepSize;
+	private final boolean adaptiveStepSize;
+	private final double residualBalance, stepSizeFactor;
+	private final double relaxation;
+	private final boolean accelerated;
+	private final double restartFactor;
+	
+	final double epsilonRel, epsilonAbs;
+	final int stopCheck;
+	private final boolean packTerms;
+	private final int packedSlabSize;
+	private final SchedulingType scheduling;
+	private final int chunkSize;
+	private final boolean incremental;
+	private final double incrementalMaxFraction;
+	/** Total number of local variables */
+	int n;
 	protected boolean rebuildModel;
 	
+	/* Diagnostics of the last optimization */
+	long lastBuildTime = 0;
+	double lastPrimalRes = Double.POSITIVE_INFINITY;
+	double lastDualRes = Double.POSITIVE_INFINITY;
+	int lastIterations = 0;
+	long lastOptimizeTime = 0;
+	boolean lastDeadlineReached = false;
+	
+	/** Time, as given by System.nanoTime(), at which to stop optimizing, or 0 for none */
+	private long deadline = 0;
+	
 	/** Ground kernels defining the objective function */
 	KeyedRetrievalSet<Kernel, GroundKernel> groundKernels;
 	/** Ordered list of GroundKernels for looking up indices in terms */
 	HashList<GroundKernel> orderedGroundKernels;
+	/** Ground kernels changed since the model was built or updated, if incremental */
+	private final Set<GroundKernel> addedKernels, removedKernels;
+	/** State of a previous optimization to start the next one from, or null */
+	private ADMMReasonerState warmStart;
+	/** Structure of the model shared by snapshots since it last changed, or null */
+	private ADMMReasonerState.Structure sharedStructure;
+	/** Values of fixed variables, and the fixed variables folded into constants */
+	private final Map<AtomFunctionVariable, Double> fixedValues;
+	private final Set<AtomFunctionVariable> foldedVariables;
 	/** Ground kernels wrapped to be objective function terms for ADMM */
 	List<ADMMObjectiveTerm> terms;
+	/** Indices of the terms whose ground kernels contain each ObservedAtom */
+	Map<GroundAtom, TermIndices> evidenceTerms;
+	/** Storage for the data of the terms if they are packed, else null */
+	PackedTermStore termStore;
 	/** Ordered list of variables for looking up indices in z */
 	HashList<AtomFunctionVariable> variables;
 	/** Consensus vector */
-	List<Double> z;
+	double[] z;
 	/** Lower bounds on variables */
-	List<Double> lb;
+	double[] lb;
 	/** Upper bounds on variables */
-	List<Double> ub;
-	/** Lists of local variable locations for updating consensus variables */
-	List<List<VariableLocation>> varLocations;
+	double[] ub;
+	/**
+	 * Local variable locations for updating consensus variables, in compressed
+	 * sparse row form. The local copies of z[i] are at positions
+	 * varLocStart[i] (inclusive) through varLocStart[i+1] (exclusive) of
+	 * varLocTerms (index of the term in terms) and varLocIndices (index of
+	 * the copy in that term's x and y, which starts at the term's start).
+	 */
+	int[] varLocStart;
+	int[] varLocTerms;
+	int[] varLocIndices;
 	
 	/* Multithreading variables */
-	private final int numThreads;
+	final int numThreads;
+	/* Ranges of terms and z for each thread, used by STATIC and WEIGHTED scheduling */
+	int[] termBounds, zBounds;
+	/* Next chunks of terms and z to claim, used by DYNAMIC scheduling */
+	private final AtomicInteger termCursor, zCursor;
+	/* Time each thread spent working and waiting in the last optimization, in nanoseconds */
+	private long[] busyTimes, idleTimes;
+	
+	/*
+	 * Scratch space for building hyperplanes, reused for every term. The
+	 * first hpSize elements of hpZIndices and hpCoeffs are the hyperplane
+	 * being built.
+	 */
+	private int[] hpZIndices = new int[8];
+	private double[] hpCoeffs = new double[8];
+	private int hpSize;
+	private GroundAtom[] summandAtoms = new GroundAtom[8];
+	private double[] summandCoeffs = new double[8];
+	private final Hyperplane hyperplane = new Hyperplane();
+	
+	/*
+	 * Fast ADMM variables, used if accelerated. While iterating, z and the
+	 * terms' y hold the extrapolated values the terms are minimized with, and
+	 * zPrev and yPrev (by local variable location) hold the latest iterates.
+	 */
+	private double[] zPrev, yPrev;
+	/* Momentum of the next extrapolation, its sequence, and the last combined residual */
+	private double momentum, acceleration, lastCombinedRes;
 	
 	public ADMMReasoner(ConfigBundle config) {
 		maxIter = config.getInt(MAX_ITER_KEY, MAX_ITER_DEFAULT);
 		stepSize = config.getDouble(STEP_SIZE_KEY, STEP_SIZE_DEFAULT);
+		adaptiveStepSize = config.getBoolean(ADAPTIVE_STEP_SIZE_KEY, ADAPTIVE_STEP_SIZE_DEFAULT);
+		residualBalance = config.getDouble(RESIDUAL_BALANCE_KEY, RESIDUAL_BALANCE_DEFAULT);
+		if (residualBalance <= 1)
+			throw new IllegalArgumentException("Property " + RESIDUAL_BALANCE_KEY + " must be greater than 1.");
+		stepSizeFactor = config.getDouble(STEP_SIZE_FACTOR_KEY, STEP_SIZE_FACTOR_DEFAULT);
+		if (stepSizeFactor <= 1)
+			throw new IllegalArgumentException("Property " + STEP_SIZE_FACTOR_KEY + " must be greater than 1.");
+		relaxation = config.getDouble(RELAXATION_KEY, RELAXATION_DEFAULT);
+		if (relaxation <= 0 || relaxation >= 2)
+			throw new IllegalArgumentException("Property " + RELAXATION_KEY + " must be in (0, 2).");
+		accelerated = config.getBoolean(ACCELERATED_KEY, ACCELERATED_DEFAULT);
+		restartFactor = config.getDouble(RESTART_FACTOR_KEY, RESTART_FACTOR_DEFAULT);
+		if (restartFactor <= 0 || restartFactor >= 1)
+			throw new IllegalArgumentException("Property " + RESTART_FACTOR_KEY + " must be in (0, 1).");
 		epsilonAbs = config.getDouble(EPSILON_ABS_KEY, EPSILON_ABS_DEFAULT);
 		if (epsilonAbs <= 0)
 			throw new IllegalArgumentException("Property " + EPSILON_ABS_KEY + " must be positive.");
@@ -153,6 +382,10 @@ public class ADMMReasoner implements Reasoner {
 		if (epsilonRel <= 0)
 			throw new IllegalArgumentException("Property " + EPSILON_REL_KEY + " must be positive.");
 		stopCheck = config.getInt(STOP_CHECK_KEY, STOP_CHECK_DEFAULT);
+		packTerms = config.getBoolean(PACKED_TERMS_KEY, PACKED_TERMS_DEFAULT);
+		packedSlabSize = config.getInt(PACKED_SLAB_SIZE_KEY, PACKED_SLAB_SIZE_DEFAULT);
+		if (packedSlabSize <= 0)
+			throw new IllegalArgumentException("Property " + PACKED_SLAB_SIZE_KEY + " must be positive.");
 		
 		rebuildModel = true;
 		
@@ -162,17 +395,43 @@ public class ADMMReasoner implements Reasoner {
 		numThreads = config.getInt(NUM_THREADS_KEY, NUM_THREADS_DEFAULT);
 		if (numThreads <= 0)
 			throw new IllegalArgumentException("Property " + NUM_THREADS_KEY + " must be positive.");
+		scheduling = (SchedulingType) config.getEnum(SCHEDULING_KEY, SCHEDULING_DEFAULT);
+		chunkSize = config.getInt(CHUNK_SIZE_KEY, CHUNK_SIZE_DEFAULT);
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Property " + CHUNK_SIZE_KEY + " must be positive.");
+		termCursor = new AtomicInteger();
+		zCursor = new AtomicInteger();
+		
+		incremental = config.getBoolean(INCREMENTAL_KEY, INCREMENTAL_DEFAULT);
+		incrementalMaxFraction = config.getDouble(INCREMENTAL_MAX_FRACTION_KEY, INCREMENTAL_MAX_FRACTION_DEFAULT);
+		if (incrementalMaxFraction < 0)
+			throw new IllegalArgumentException("Property " + INCREMENTAL_MAX_FRACTION_KEY + " must be non-negative.");
+		addedKernels = new LinkedHashSet<GroundKernel>();
+		removedKernels = new LinkedHashSet<GroundKernel>();
+		fixedValues = new LinkedHashMap<AtomFunctionVariable, Double>();
+		foldedVariables = new HashSet<AtomFunctionVariable>();
 	}
 	
 	@Override
 	public void addGroundKernel(GroundKernel gk) {
 		groundKernels.put(gk.getKernel(), gk);
-		rebuildModel = true;
+		if (incremental && !rebuildModel) {
+			if (orderedGroundKernels.contains(gk))
+				removedKernels.add(gk);
+			addedKernels.add(gk);
+		}
+		else
+			rebuildModel = true;
 	}
 
 	@Override
 	public void changedGroundKernel(GroundKernel gk) {
-		rebuildModel = true;
+		if (incremental && !rebuildModel) {
+			removedKernels.add(gk);
+			addedKernels.add(gk);
+		}
+		else
+			rebuildModel = true;
 	}
 
 	@Override
@@ -200,7 +459,12 @@ public class ADMMReasoner implements Reasoner {
 	@Override
 	public void removeGroundKernel(GroundKernel gk) {
 		groundKernels.remove(gk.getKernel(), gk);
-		rebuildModel = true;
+		if (incremental && !rebuildModel) {
+			addedKernels.remove(gk);
+			removedKernels.add(gk);
+		}
+		else
+			rebuildModel = true;
 	}
 
 	@Override
@@ -210,114 +474,259 @@ public class ADMMReasoner implements Reasoner {
 	
 	protected void buildGroundModel() {
 		log.debug("Initializing optimization.");
+		long start = System.nanoTime();
 		
 		/* Initializes data structures */
+		addedKernels.clear();
+		removedKernels.clear();
 		orderedGroundKernels = new HashList<GroundKernel>(groundKernels.size() * 2);
 		terms = new ArrayList<ADMMObjectiveTerm>(groundKernels.size());
+		evidenceTerms = new HashMap<GroundAtom, TermIndices>();
+		termStore = (packTerms) ? new PackedTermStore(packedSlabSize) : null;
 		variables = new HashList<AtomFunctionVariable>(groundKernels.size() * 2);
-		z = new ArrayList<Double>(groundKernels.size() * 2);
-		lb = new ArrayList<Double>(groundKernels.size() * 2);
-		ub = new ArrayList<Double>(groundKernels.size() * 2);
-		varLocations = new ArrayList<List<VariableLocation>>(groundKernels.size() * 2);
-		n = 0;
+		z = new double[groundKernels.size() * 2];
+		lb = new double[groundKernels.size() * 2];
+		ub = new double[groundKernels.size() * 2];
 				
-		GroundKernel groundKernel;
-		boolean squared;
-		FunctionTerm function, innerFunction, zeroTerm, innerFunctionA, innerFunctionB;
-		ADMMObjectiveTerm term;
-		
 		/* Initializes objective terms from ground kernels */
 		log.info("Initializing objective terms for {} ground kernels", groundKernels.size());
 		for (Iterator<GroundKernel> itr = groundKernels.iterator(); itr.hasNext(); ) {
-			groundKernel = itr.next();
-			if (groundKernel instanceof GroundCompatibilityKernel) {
-				function = ((GroundCompatibilityKernel) groundKernel).getFunctionDefinition();
-				
-				/* Checks if the function is wrapped in a PowerOfTwo */
-				if (function instanceof PowerOfTwo) {
-					squared = true;
-					function = ((PowerOfTwo) function).getInnerFunction();
+			GroundKernel groundKernel = itr.next();
+			ADMMObjectiveTerm term = createTerm(groundKernel);
+			if (term.size > 0) {
+				orderedGroundKernels.add(groundKernel);
+				terms.add(term);
+				indexEvidence(groundKernel, terms.size() - 1);
+			}
+		}
+		
+		registerFixedVariables();
+		
+		/* Trims the variable arrays and indexes the local variable copies */
+		z = Arrays.copyOf(z, variables.size());
+		lb = Arrays.copyOf(lb, variables.size());
+		ub = Arrays.copyOf(ub, variables.size());
+		buildVariableLocations();
+		
+		rebuildModel = false;
+		sharedStructure = null;
+		lastBuildTime = System.nanoTime() - start;
+		log.debug("Built model in {} ms.", lastBuildTime / 1000000);
+	}
+	
+	/**
+	 * Updates the terms of ground kernels added, removed, or changed since
+	 * the model was built or last updated, keeping the state of the other
+	 * terms. Rebuilds the model instead if too many ground kernels changed,
+	 * or, when packing terms, once more than half of the packed local
+	 * variables belong to removed terms.
+	 * <p>
+	 * Variables are never removed, so variables no longer in any term keep
+	 * their last values until the model is rebuilt.
+	 * <p>
+	 * Only the changed terms are created, but the variable locations are
+	 * rebuilt over all terms, because snapshots share the previous arrays.
+	 */
+	protected void updateGroundModel() {
+		if (addedKernels.size() + removedKernels.size() > incrementalMaxFraction * terms.size()) {
+			log.debug("Rebuilding optimization for {} changed ground kernels.", addedKernels.size() + removedKernels.size());
+			buildGroundModel();
+			return;
+		}
+		
+		log.debug("Updating optimization with {} removed and {} added ground kernels.",
+				removedKernels.size(), addedKernels.size());
+		long start = System.nanoTime();
+		
+		/* Removes terms by moving the last term into their places */
+		for (GroundKernel groundKernel : removedKernels) {
+			int index = orderedGroundKernels.indexOf(groundKernel);
+			if (index != -1) {
+				int last = terms.size() - 1;
+				moveEvidence(groundKernel, index, -1);
+				if (termStore != null)
+					termStore.release(terms.get(index).size);
+				if (index != last)
+					moveEvidence(orderedGroundKernels.get(last), last, index);
+				terms.set(index, terms.get(last));
+				terms.remove(last);
+				orderedGroundKernels.swapRemove(index);
+			}
+		}
+		removedKernels.clear();
+		
+		/* Rebuilds into a new store once most of the packed terms were removed */
+		if (termStore != null && termStore.getReleasedSize() > termStore.size() / 2) {
+			log.debug("Rebuilding optimization to reclaim packed terms.");
+			buildGroundModel();
+			return;
+		}
+		
+		for (GroundKernel groundKernel : addedKernels) {
+			ADMMObjectiveTerm term = createTerm(groundKernel);
+			if (term.size > 0) {
+				orderedGroundKernels.add(groundKernel);
+				terms.add(term);
+				indexEvidence(groundKernel, terms.size() - 1);
+			}
+		}
+		addedKernels.clear();
+		registerFixedVariables();
+		
+		/* Trims the variable arrays and indexes the local variable copies */
+		if (z.length != variables.size()) {
+			z = Arrays.copyOf(z, variables.size());
+			lb = Arrays.copyOf(lb, variables.size());
+			ub = Arrays.copyOf(ub, variables.size());
+		}
+		buildVariableLocations();
+		
+		sharedStructure = null;
+		lastBuildTime = System.nanoTime() - start;
+		log.debug("Updated model in {} ms.", lastBuildTime / 1000000);
+	}
+
+	/**
+	 * Records that the term with index t belongs to a ground kernel, under
+	 * each of the kernel's ObservedAtoms.
+	 */
+	private void indexEvidence(GroundKernel gk, int t) {
+		for (GroundAtom atom : gk.getAtoms()) {
+			if (atom instanceof ObservedAtom) {
+				TermIndices indices = evidenceTerms.get(atom);
+				if (indices == null) {
+					indices = new TermIndices();
+					evidenceTerms.put(atom, indices);
 				}
+				indices.add(t);
+			}
+		}
+	}
+	
+	/**
+	 * Changes the index of a ground kernel's term under each of the kernel's
+	 * ObservedAtoms from one value to another, or removes it if the new index
+	 * is -1.
+	 */
+	private void moveEvidence(GroundKernel gk, int from, int to) {
+		for (GroundAtom atom : gk.getAtoms()) {
+			if (atom instanceof ObservedAtom) {
+				TermIndices indices = evidenceTerms.get(atom);
+				if (indices != null && indices.replace(from, to) && indices.size == 0)
+					evidenceTerms.remove(atom);
+			}
+		}
+	}
+	
+	/**
+	 * Wraps a ground kernel as an objective term, registering any new
+	 * variables it uses.
+	 */
+	protected ADMMObjectiveTerm createTerm(GroundKernel groundKernel) {
+		boolean squared;
+		FunctionTerm function, innerFunction, zeroTerm, innerFunctionA, innerFunctionB;
+		ADMMObjectiveTerm term;
+		
+		/* Builds the terms of kernels that describe their linear functions directly */
+		if (groundKernel instanceof LinearGroundCompatibilityKernel) {
+			LinearGroundCompatibilityKernel linearKernel = (LinearGroundCompatibilityKernel) groundKernel;
+			Hyperplane hp = processHyperplane(linearKernel);
+			double weight = linearKernel.getWeight().getWeight();
+			if (linearKernel.isHinge()) {
+				if (linearKernel.isSquared())
+					term = new SquaredHingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant, weight);
 				else
-					squared = false;
+					term = new HingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant, weight);
+			}
+			else {
+				/* As for a FunctionSum below */
+				if (linearKernel.isSquared())
+					term = new SquaredLinearLossTerm(this, hp.zIndices, hp.coeffs, 0.0, weight);
+				else
+					term = new LinearLossTerm(this, hp.zIndices, hp.coeffs, weight);
+			}
+		}
+		else if (groundKernel instanceof GroundCompatibilityKernel) {
+			function = ((GroundCompatibilityKernel) groundKernel).getFunctionDefinition();
+			
+			/* Checks if the function is wrapped in a PowerOfTwo */
+			if (function instanceof PowerOfTwo) {
+				squared = true;
+				function = ((PowerOfTwo) function).getInnerFunction();
+			}
+			else
+				squared = false;
+			
+			/*
+			 * If the FunctionTerm is a MaxFunction, ensures that it has two arguments, a linear
+			 * function and zero, and constructs the objective term (a hinge loss)
+			 */
+			if (function instanceof MaxFunction) {
+				if (((MaxFunction) function).size() != 2)
+					throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
+				innerFunction = null;
+				zeroTerm = null;
+				innerFunctionA = ((MaxFunction) function).get(0);
+				innerFunctionB = ((MaxFunction) function).get(1);
 				
-				/*
-				 * If the FunctionTerm is a MaxFunction, ensures that it has two arguments, a linear
-				 * function and zero, and constructs the objective term (a hinge loss)
-				 */
-				if (function instanceof MaxFunction) {
-					if (((MaxFunction) function).size() != 2)
-						throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
-					innerFunction = null;
-					zeroTerm = null;
-					innerFunctionA = ((MaxFunction) function).get(0);
-					innerFunctionB = ((MaxFunction) function).get(1);
-					
-					if (innerFunctionA instanceof ConstantNumber && innerFunctionA.getValue() == 0.0) {
-						zeroTerm = innerFunctionA;
-						innerFunction = innerFunctionB;
-					}
-					else if (innerFunctionB instanceof ConstantNumber && innerFunctionB.getValue() == 0.0) {
-						zeroTerm = innerFunctionB;
-						innerFunction = innerFunctionA;
-					}
-					
-					if (zeroTerm == null)
-						throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
-					
-					if (innerFunction instanceof FunctionSum) {
-						Hyperplane hp = processHyperplane((FunctionSum) innerFunction);
-						if (squared) {
-							term = new SquaredHingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant,
-									((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
-						}
-						else {
-							term = new HingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant,
-									((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
-						}
-					}
-					else
-						throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
+				if (innerFunctionA instanceof ConstantNumber && innerFunctionA.getValue() == 0.0) {
+					zeroTerm = innerFunctionA;
+					innerFunction = innerFunctionB;
+				}
+				else if (innerFunctionB instanceof ConstantNumber && innerFunctionB.getValue() == 0.0) {
+					zeroTerm = innerFunctionB;
+					innerFunction = innerFunctionA;
 				}
-				/* Else, if it's a FunctionSum, constructs the objective term (a linear loss) */
-				else if (function instanceof FunctionSum) {
-					Hyperplane hp = processHyperplane((FunctionSum) function);
+				
+				if (zeroTerm == null)
+					throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
+				
+				if (innerFunction instanceof FunctionSum) {
+					Hyperplane hp = processHyperplane((FunctionSum) innerFunction);
 					if (squared) {
-						term = new SquaredLinearLossTerm(this, hp.zIndices, hp.coeffs, 0.0,
+						term = new SquaredHingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant,
 								((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
 					}
 					else {
-						term = new LinearLossTerm(this, hp.zIndices, hp.coeffs,
+						term = new HingeLossTerm(this, hp.zIndices, hp.coeffs, hp.constant,
 								((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
 					}
 				}
 				else
-					throw new IllegalArgumentException("Unrecognized function: " + ((GroundCompatibilityKernel) groundKernel).getFunctionDefinition());
-			}
-			else if (groundKernel instanceof GroundConstraintKernel) {
-				ConstraintTerm constraint = ((GroundConstraintKernel) groundKernel).getConstraintDefinition();
-				function = constraint.getFunction();
-				if (function instanceof FunctionSum) {
-					Hyperplane hp = processHyperplane((FunctionSum) function);
-					term = new LinearConstraintTerm(this, hp.zIndices, hp.coeffs,
-							constraint.getValue() + hp.constant, constraint.getComparator());
+					throw new IllegalArgumentException("Max function must have one linear function and 0.0 as arguments.");
+			}
+			/* Else, if it's a FunctionSum, constructs the objective term (a linear loss) */
+			else if (function instanceof FunctionSum) {
+				Hyperplane hp = processHyperplane((FunctionSum) function);
+				if (squared) {
+					term = new SquaredLinearLossTerm(this, hp.zIndices, hp.coeffs, 0.0,
+							((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
+				}
+				else {
+					term = new LinearLossTerm(this, hp.zIndices, hp.coeffs,
+							((GroundCompatibilityKernel) groundKernel).getWeight().getWeight());
 				}
-				else
-					throw new IllegalArgumentException("Unrecognized constraint: " + constraint);
 			}
 			else
-				throw new IllegalStateException("Unsupported ground kernel: " + groundKernel);
-			
-			if (term.x.length > 0) {
-				registerLocalVariableCopies(term);
-				orderedGroundKernels.add(groundKernel);
-				terms.add(term);
+				throw new IllegalArgumentException("Unrecognized function: " + ((GroundCompatibilityKernel) groundKernel).getFunctionDefinition());
+		}
+		else if (groundKernel instanceof GroundConstraintKernel) {
+			ConstraintTerm constraint = ((GroundConstraintKernel) groundKernel).getConstraintDefinition();
+			function = constraint.getFunction();
+			if (function instanceof FunctionSum) {
+				Hyperplane hp = processHyperplane((FunctionSum) function);
+				term = new LinearConstraintTerm(this, hp.zIndices, hp.coeffs,
+						constraint.getValue() + hp.constant, constraint.getComparator());
 			}
+			else
+				throw new IllegalArgumentException("Unrecognized constraint: " + constraint);
 		}
+		else
+			throw new IllegalStateException("Unsupported ground kernel: " + groundKernel);
 		
-		rebuildModel = false;
+		return term;
 	}
-
+	
 	protected class ADMMTask implements Runnable {
 		public boolean flag;
 		private final int termStart, termEnd;
@@ -331,16 +740,11 @@ public class ADMMReasoner implements Reasoner {
 			this.notification = notification;
 			this.flag = true;
 			
-			
-			// Determine the section of the terms this thread will look at
-			int tIncrement = (int)(Math.ceil((double)terms.size() / (double)numThreads));
-			this.termStart = tIncrement * index;
-			this.termEnd = Math.min(termStart + tIncrement, terms.size());
-			
-			// Determine the section of the z vector this thread will look at
-			int zIncrement = (int)(Math.ceil((double)z.size() / (double)numThreads));
-			this.zStart = zIncrement * index;
-			this.zEnd = Math.min(zStart + zIncrement, z.size());
+			// Determine the sections of the terms and the z vector this thread will look at
+			this.termStart = termBounds[index];
+			this.termEnd = termBounds[index+1];
+			this.zStart = zBounds[index];
+			this.zEnd = zBounds[index+1];
 		}
 		
 		public double primalResInc = 0.0;
@@ -349,6 +753,13 @@ public class ADMMReasoner implements Reasoner {
 		public double BzNormInc = 0.0;
 		public double AyNormInc = 0.0;
 		
+		/* Time spent working and waiting at barriers, in nanoseconds */
+		public long busyTime = 0;
+		public long idleTime = 0;
+		
+		/* Combined residual of the last consensus step, used if accelerated */
+		public double combinedResInc = 0.0;
+		
 		private void awaitUninterruptibly(CyclicBarrier b) {
 			try {
 				b.await();
@@ -364,16 +775,31 @@ public class ADMMReasoner implements Reasoner {
 			awaitUninterruptibly(checkBarrier);
 			
 			int iter = 1;
+			long time = System.nanoTime();
+			long now;
 			while (flag) {
 				boolean check = (iter-1) % stopCheck == 0;
 				
 				/* Solves each local function */
-				for (int i = termStart; i < termEnd; i ++)
-					terms.get(i).updateLagrange().minimize();
+				if (scheduling == SchedulingType.DYNAMIC) {
+					int size = terms.size();
+					for (int start = termCursor.getAndAdd(chunkSize); start < size; start = termCursor.getAndAdd(chunkSize))
+						minimizeTerms(start, Math.min(start + chunkSize, size));
+				}
+				else
+					minimizeTerms(termStart, termEnd);
+				
+				now = System.nanoTime();
+				busyTime += now - time;
+				time = now;
 				
 				// Ensures all threads are at the same point
 				awaitUninterruptibly(workerBarrier);
 				
+				now = System.nanoTime();
+				idleTime += now - time;
+				time = now;
+				
 				if (check) {
 					primalResInc = 0.0;
 					dualResInc = 0.0;
@@ -382,62 +808,360 @@ public class ADMMReasoner implements Reasoner {
 					AyNormInc = 0.0;
 				}
 				
-				for (int i = zStart; i < zEnd; i++) {
-					double total = 0.0;
-					/* First pass computes newZ and dual residual */
-					for (Iterator<VariableLocation> itr = varLocations.get(i).iterator(); itr.hasNext(); ) {
-						VariableLocation location = itr.next();
-						total += location.term.x[location.localIndex] + location.term.y[location.localIndex] / stepSize;
-						if (check) {
-							AxNormInc += location.term.x[location.localIndex] * location.term.x[location.localIndex];
-							AyNormInc += location.term.y[location.localIndex] * location.term.y[location.localIndex];
-						}
-					}
-					double newZ = total / varLocations.get(i).size();
-					if (newZ < lb.get(i))
-						newZ = lb.get(i);
-					else if (newZ > ub.get(i))
-						newZ = ub.get(i);
-					
-					if (check) {
-						double diff = z.get(i) - newZ;
-						/* Residual is diff^2 * number of local variables mapped to z element */
-						dualResInc += diff * diff * varLocations.get(i).size();
-						BzNormInc += newZ * newZ * varLocations.get(i).size();
-					}
-					z.set(i, newZ);
-					
-					/* Second pass computes primal residuals */
-					if (check) {
-						for (Iterator<VariableLocation> itr = varLocations.get(i).iterator(); itr.hasNext(); ) {
-							VariableLocation location = itr.next();
-							double diff = location.term.x[location.localIndex] - newZ;
-							primalResInc += diff * diff;
-						}
-					}
+				if (scheduling == SchedulingType.DYNAMIC) {
+					for (int start = zCursor.getAndAdd(chunkSize); start < z.length; start = zCursor.getAndAdd(chunkSize))
+						updateConsensus(start, Math.min(start + chunkSize, z.length), check);
 				}
+				else
+					updateConsensus(zStart, zEnd, check);
 				
 				if (check)
 					notification.release();
 				
+				now = System.nanoTime();
+				busyTime += now - time;
+				time = now;
+				
 				// Waits for main thread
 				awaitUninterruptibly(checkBarrier);
+				
+				now = System.nanoTime();
+				idleTime += now - time;
+				time = now;
+				iter++;
 			}
 			awaitUninterruptibly(checkBarrier);
 		}
 		
+		private void minimizeTerms(int start, int end) {
+			/* If accelerated, the Lagrange multipliers are updated in the consensus step */
+			if (accelerated) {
+				for (int i = start; i < end; i ++)
+					terms.get(i).minimize();
+			}
+			else {
+				for (int i = start; i < end; i ++)
+					terms.get(i).updateLagrange().minimize();
+			}
+		}
+		
+		private void updateConsensus(int start, int end, boolean check) {
+			if (accelerated) {
+				updateAcceleratedConsensus(start, end, check);
+				return;
+			}
+			
+			boolean relaxed = relaxation != 1.0;
+			for (int i = start; i < end; i++) {
+				int locStart = varLocStart[i];
+				int locEnd = varLocStart[i+1];
+				/* Skips variables no longer in any term */
+				if (locStart == locEnd)
+					continue;
+				double oldZ = z[i];
+				double total = 0.0;
+				/* First pass computes newZ from the relaxed local variables and dual residual */
+				for (int k = locStart; k < locEnd; k++) {
+					ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+					int localIndex = varLocIndices[k];
+					double x = term.x[localIndex];
+					if (relaxed)
+						x = relaxation * x + (1 - relaxation) * oldZ;
+					total += x + term.y[localIndex] / stepSize;
+					if (check) {
+						AxNormInc += term.x[localIndex] * term.x[localIndex];
+						AyNormInc += term.y[localIndex] * term.y[localIndex];
+					}
+				}
+				double newZ = total / (locEnd - locStart);
+				if (newZ < lb[i])
+					newZ = lb[i];
+				else if (newZ > ub[i])
+					newZ = ub[i];
+				
+				if (check) {
+					double diff = oldZ - newZ;
+					/* Residual is diff^2 * number of local variables mapped to z element */
+					dualResInc += diff * diff * (locEnd - locStart);
+					BzNormInc += newZ * newZ * (locEnd - locStart);
+				}
+				z[i] = newZ;
+				
+				/*
+				 * Second pass computes primal residuals and, if relaxed,
+				 * replaces the local variables with their relaxed values for
+				 * the next Lagrange multiplier update
+				 */
+				if (check || relaxed) {
+					for (int k = locStart; k < locEnd; k++) {
+						ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+						int localIndex = varLocIndices[k];
+						double x = term.x[localIndex];
+						if (check)
+							primalResInc += (x - newZ) * (x - newZ);
+						if (relaxed)
+							term.x[localIndex] = relaxation * x + (1 - relaxation) * oldZ;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Updates the consensus variables and the Lagrange multipliers of
+		 * their local copies, then extrapolates both with the current momentum.
+		 */
+		private void updateAcceleratedConsensus(int start, int end, boolean check) {
+			for (int i = start; i < end; i++) {
+				int locStart = varLocStart[i];
+				int locEnd = varLocStart[i+1];
+				/* Skips variables no longer in any term */
+				if (locStart == locEnd)
+					continue;
+				double zHat = z[i];
+				double total = 0.0;
+				for (int k = locStart; k < locEnd; k++) {
+					ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+					int localIndex = varLocIndices[k];
+					double x = relaxation * term.x[localIndex] + (1 - relaxation) * zHat;
+					total += x + term.y[localIndex] / stepSize;
+				}
+				double newZ = total / (locEnd - locStart);
+				if (newZ < lb[i])
+					newZ = lb[i];
+				else if (newZ > ub[i])
+					newZ = ub[i];
+				
+				combinedResInc += stepSize * (newZ - zHat) * (newZ - zHat) * (locEnd - locStart);
+				if (check) {
+					double diff = zPrev[i] - newZ;
+					dualResInc += diff * diff * (locEnd - locStart);
+					BzNormInc += newZ * newZ * (locEnd - locStart);
+				}
+				z[i] = newZ + momentum * (newZ - zPrev[i]);
+				zPrev[i] = newZ;
+				
+				for (int k = locStart; k < locEnd; k++) {
+					ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+					int localIndex = varLocIndices[k];
+					double x = term.x[localIndex];
+					double relaxedX = relaxation * x + (1 - relaxation) * zHat;
+					double newY = term.y[localIndex] + stepSize * (relaxedX - newZ);
+					combinedResInc += (newY - term.y[localIndex]) * (newY - term.y[localIndex]) / stepSize;
+					if (check) {
+						primalResInc += (x - newZ) * (x - newZ);
+						AxNormInc += x * x;
+						AyNormInc += newY * newY;
+					}
+					term.y[localIndex] = newY + momentum * (newY - yPrev[k]);
+					yPrev[k] = newY;
+				}
+			}
+		}
+		
 	}
 	
 	@Override
 	public void optimize() {
+		long start = System.nanoTime();
 		if (rebuildModel)
 			buildGroundModel();
+		else if (!addedKernels.isEmpty() || !removedKernels.isEmpty())
+			updateGroundModel();
+		
+		if (warmStart != null) {
+			applyWarmStart(warmStart);
+			warmStart = null;
+		}
+		
+		log.info("Performing optimization with {} variables and {} terms.", z.length, terms.size());
+		
+		int iter = iterate();
+		
+		log.debug("Optimization completed in  {} iterations.", iter);
+		CholeskyCache cache = CholeskyCache.getCache();
+		log.debug("Cholesky cache -- Hits: {} -- Misses: {} -- Evictions: {}",
+				new Object[] {cache.getHits(), cache.getMisses(), cache.getEvictions()});
+		
+		/* Updates variables */
+		for (int i = 0; i < variables.size(); i++)
+			variables.get(i).setValue(z[i]);
+		
+		lastOptimizeTime = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Starts the next call to {@link #optimize()} from the state of a previous
+	 * optimization instead of from the current values of the variables.
+	 * <p>
+	 * Consensus variables whose atoms are in the state start at their previous
+	 * consensus estimates. Terms whose ground kernels equal ground kernels in
+	 * the state start with the previous local variables and Lagrange
+	 * multipliers of the copies of the same atoms. After a small change to the
+	 * model, the optimization then only has to account for the change.
+	 *
+	 * @param state  the state of a previous optimization, possibly by another
+	 *               reasoner, or null to start from the variables' values
+	 */
+	public void setWarmStart(ADMMReasonerState state) {
+		warmStart = state;
+	}
+	
+	/**
+	 * Sets a deadline for subsequent optimizations. An optimization that is
+	 * still running at the deadline stops after the next iteration that checks
+	 * the residuals (every iteration unless STOP_CHECK_KEY is greater than
+	 * one). It keeps that iterate, with consistent consensus variables, local
+	 * variables, and Lagrange multipliers, and reports its residuals.
+	 * 
+	 * @param deadline  the time, as given by {@link System#nanoTime()}, at
+	 *                  which to stop, or 0 for no deadline
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * @return the deadline, as given by {@link System#nanoTime()}, or 0 if
+	 *         there is none
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * @return whether the deadline has passed, false if there is none
+	 */
+	protected boolean isPastDeadline() {
+		return deadline != 0 && System.nanoTime() - deadline >= 0;
+	}
+	
+	/**
+	 * Fixes a variable at a value for subsequent optimizations. The variable
+	 * is in the model, and so in its states, even if no term contains it.
+	 * <p>
+	 * If fold is false, the variable's lower and upper bounds are both set to
+	 * the value, so its local copies still take part in the optimization.
+	 * If fold is true, its summands are instead folded into the constants of
+	 * the terms that contain it, so it has no local copies and costs nothing
+	 * per iteration. Terms left without variables are dropped.
+	 *
+	 * @param var  the variable to fix
+	 * @param value  the value at which to fix it
+	 * @param fold  whether to fold it into the constants of its terms
+	 */
+	public void fixVariable(AtomFunctionVariable var, double value, boolean fold) {
+		fixedValues.put(var, value);
+		boolean wasFolded = foldedVariables.contains(var);
+		if (fold)
+			foldedVariables.add(var);
+		else
+			foldedVariables.remove(var);
 		
-		log.info("Performing optimization with {} variables and {} terms.", z.size(), terms.size());
+		int i = (variables == null) ? -1 : variables.indexOf(var);
+		if (i != -1) {
+			/* Terms already built with or without the variable's copies must change */
+			if (fold || wasFolded)
+				rebuildModel = true;
+			z[i] = value;
+			lb[i] = value;
+			ub[i] = value;
+		}
+	}
+	
+	/**
+	 * Unfixes all variables fixed with
+	 * {@link #fixVariable(AtomFunctionVariable, double, boolean)}. They are
+	 * bounded by 0 and 1 again the next time the model is built.
+	 */
+	public void clearFixedVariables() {
+		if (!fixedValues.isEmpty())
+			rebuildModel = true;
+		fixedValues.clear();
+		foldedVariables.clear();
+	}
+	
+	/**
+	 * Copies the consensus estimates, local variables, and Lagrange
+	 * multipliers of the matching variables and terms in a previous state.
+	 */
+	private void applyWarmStart(ADMMReasonerState state) {
+		int matchedVars = 0;
+		for (int i = 0; i < variables.size(); i++) {
+			int previous = state.getVariableIndex(variables.get(i).getAtom());
+			if (previous != -1) {
+				z[i] = Math.min(Math.max(state.getConsensusEstimate(previous), lb[i]), ub[i]);
+				matchedVars++;
+			}
+		}
+		
+		int matchedTerms = 0;
+		for (int t = 0; t < terms.size(); t++) {
+			ADMMObjectiveTerm term = terms.get(t);
+			int previous = state.getTermIndex(orderedGroundKernels.get(t));
+			if (previous != -1)
+				matchedTerms++;
+			for (int i = term.start; i < term.start + term.size; i++) {
+				int k = (previous == -1) ? -1 : findCopy(state, previous, variables.get(term.zIndices[i]).getAtom());
+				if (k >= 0) {
+					term.x[i] = state.getLocalVariable(k);
+					term.y[i] = state.getLagrangeMultiplier(k);
+				}
+				else
+					term.x[i] = z[term.zIndices[i]];
+			}
+		}
+		
+		log.debug("Warm started {} of {} variables and {} of {} terms.",
+				new Object[] {matchedVars, variables.size(), matchedTerms, terms.size()});
+	}
+	
+	/**
+	 * @return the location in the state of the copy of the atom's variable in
+	 *         the term with index t, or -1 if the term has none
+	 */
+	private static int findCopy(ADMMReasonerState state, int t, GroundAtom atom) {
+		int index = state.getVariableIndex(atom);
+		if (index == -1)
+			return -1;
+		ADMMReasonerState.Structure structure = state.structure;
+		for (int k = structure.varLocStart[index]; k < structure.varLocStart[index+1]; k++)
+			if (structure.varLocTerms[k] == t)
+				return k;
+		return -1;
+	}
+	
+	/**
+	 * Runs ADMM iterations on the current terms and consensus vector until
+	 * the stopping criteria are met or the iteration limit is reached.
+	 * 
+	 * @return the number of iterations performed
+	 */
+	protected int iterate() {
+		// Divides the work among the computation threads
+		partitionWork();
+		termCursor.set(0);
+		zCursor.set(0);
+		
+		if (accelerated)
+			initAcceleration();
 		
 		// Starts up the computation threads
-		ADMMTask[] tasks = new ADMMTask[numThreads];
-		CyclicBarrier workerBarrier = new CyclicBarrier(numThreads);
+		final ADMMTask[] tasks = new ADMMTask[numThreads];
+		CyclicBarrier workerBarrier = new CyclicBarrier(numThreads, new Runnable() {
+			private boolean first = true;
+			
+			@Override
+			public void run() {
+				/* All threads have finished their terms and the last z update */
+				termCursor.set(0);
+				zCursor.set(0);
+				if (accelerated) {
+					if (!first)
+						updateMomentum(tasks);
+					first = false;
+				}
+			}
+		});
 		CyclicBarrier checkBarrier = new CyclicBarrier(numThreads + 1);
 		Semaphore notifySem = new Semaphore(0);
 		ThreadPool threadPool = ThreadPool.getPool();
@@ -455,7 +1179,15 @@ public class ADMMReasoner implements Reasoner {
 		double AxNorm = 0.0, BzNorm = 0.0, AyNorm = 0.0;
 		boolean check = false;
 		int iter = 0;
+		
+		lastDeadlineReached = false;
 		while ((primalRes > epsilonPrimal || dualRes > epsilonDual) && iter < maxIter) {
+			/* Stops only after iterations that were checked, so the residuals match */
+			if ((iter == 0 || (iter - 1) % stopCheck == 0) && isPastDeadline()) {
+				lastDeadlineReached = true;
+				break;
+			}
+			
 			check = iter % stopCheck == 0;
 			
 			// Await check barrier
@@ -491,6 +1223,10 @@ public class ADMMReasoner implements Reasoner {
 				
 				epsilonPrimal = epsilonAbsTerm + epsilonRel * Math.max(Math.sqrt(AxNorm), Math.sqrt(BzNorm));
 				epsilonDual = epsilonAbsTerm + epsilonRel * Math.sqrt(AyNorm);
+				
+				/* The threads are waiting at the check barrier, so the step size can change */
+				if (adaptiveStepSize && (primalRes > epsilonPrimal || dualRes > epsilonDual))
+					adaptStepSize(primalRes, dualRes);
 			}
 				
 			if (iter % (50 * stopCheck) == 0) {
@@ -517,11 +1253,223 @@ public class ADMMReasoner implements Reasoner {
 			throw new RuntimeException(e);
 		}
 		
-		log.debug("Optimization completed in  {} iterations.", iter);
+		if (accelerated)
+			finishAcceleration();
 		
-		/* Updates variables */
-		for (int i = 0; i < variables.size(); i++)
-			variables.get(i).setValue(z.get(i));
+		if (lastDeadlineReached)
+			log.debug("Deadline reached after {} iterations.", iter);
+		
+		lastPrimalRes = primalRes;
+		lastDualRes = dualRes;
+		lastIterations = iter;
+		
+		busyTimes = new long[numThreads];
+		idleTimes = new long[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			busyTimes[i] = tasks[i].busyTime;
+			idleTimes[i] = tasks[i].idleTime;
+			log.debug("Thread {} -- Busy: {} ms -- Idle: {} ms",
+					new Object[] {i, busyTimes[i] / 1000000, idleTimes[i] / 1000000});
+		}
+		
+		return iter;
+	}
+	
+	/**
+	 * Starts the latest iterates at the current consensus variables and
+	 * Lagrange multipliers, with no momentum.
+	 */
+	private void initAcceleration() {
+		zPrev = Arrays.copyOf(z, z.length);
+		yPrev = new double[n];
+		for (int k = 0; k < n; k++)
+			yPrev[k] = terms.get(varLocTerms[k]).y[varLocIndices[k]];
+		momentum = 0.0;
+		acceleration = 1.0;
+		lastCombinedRes = Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Chooses the momentum of the next extrapolation from the combined
+	 * residual of the consensus step just finished. If it did not decrease
+	 * enough, the momentum restarts at zero.
+	 * <p>
+	 * Deciding between the term and consensus steps, while the threads wait at
+	 * the existing barrier, means the momentum applies one consensus step
+	 * later than in the original method, but needs no extra barrier.
+	 */
+	private void updateMomentum(ADMMTask[] tasks) {
+		double combinedRes = 0.0;
+		for (ADMMTask task : tasks) {
+			combinedRes += task.combinedResInc;
+			task.combinedResInc = 0.0;
+		}
+		
+		if (combinedRes < restartFactor * lastCombinedRes) {
+			double next = (1 + Math.sqrt(1 + 4 * acceleration * acceleration)) / 2;
+			momentum = (acceleration - 1) / next;
+			acceleration = next;
+			lastCombinedRes = combinedRes;
+		}
+		else {
+			momentum = 0.0;
+			acceleration = 1.0;
+			lastCombinedRes /= restartFactor;
+		}
+	}
+	
+	/**
+	 * Replaces the extrapolated consensus variables and Lagrange multipliers
+	 * with the latest iterates.
+	 */
+	private void finishAcceleration() {
+		System.arraycopy(zPrev, 0, z, 0, z.length);
+		for (int k = 0; k < n; k++)
+			terms.get(varLocTerms[k]).y[varLocIndices[k]] = yPrev[k];
+		zPrev = null;
+		yPrev = null;
+	}
+	
+	/**
+	 * Increases the step size if the primal residual is much larger than the
+	 * dual residual, and decreases it in the opposite case. The terms keep the
+	 * unscaled Lagrange multipliers in y, so they stay valid when the step
+	 * size changes.
+	 */
+	private void adaptStepSize(double primalRes, double dualRes) {
+		if (primalRes > residualBalance * dualRes)
+			stepSize *= stepSizeFactor;
+		else if (dualRes > residualBalance * primalRes)
+			stepSize /= stepSizeFactor;
+		else
+			return;
+		log.trace("Changed step size to {}", stepSize);
+	}
+	
+	/**
+	 * Computes {@link #termBounds} and {@link #zBounds} according to the
+	 * scheduling type.
+	 */
+	void partitionWork() {
+		if (scheduling == SchedulingType.WEIGHTED) {
+			/* A term costs its number of local variables plus a fixed overhead */
+			long[] termCost = new long[terms.size() + 1];
+			for (int i = 0; i < terms.size(); i++)
+				termCost[i+1] = termCost[i] + terms.get(i).size + 1;
+			termBounds = partition(termCost);
+			
+			/* A consensus variable costs its number of local copies plus a fixed overhead */
+			long[] zCost = new long[z.length + 1];
+			for (int i = 0; i <= z.length; i++)
+				zCost[i] = varLocStart[i] + i;
+			zBounds = partition(zCost);
+		}
+		else {
+			termBounds = new int[numThreads + 1];
+			zBounds = new int[numThreads + 1];
+			int tIncrement = (int)(Math.ceil((double)terms.size() / (double)numThreads));
+			int zIncrement = (int)(Math.ceil((double)z.length / (double)numThreads));
+			for (int i = 0; i <= numThreads; i++) {
+				termBounds[i] = (int) Math.min((long) tIncrement * i, terms.size());
+				zBounds[i] = (int) Math.min((long) zIncrement * i, z.length);
+			}
+		}
+	}
+	
+	/**
+	 * Divides elements into contiguous ranges of about equal cost, one per
+	 * thread.
+	 * 
+	 * @param cumulativeCost  cumulativeCost[i] is the total cost of elements
+	 *                        0 through i-1
+	 * @return the first element of each range, followed by the number of
+	 *         elements
+	 */
+	private int[] partition(long[] cumulativeCost) {
+		int numElements = cumulativeCost.length - 1;
+		long total = cumulativeCost[numElements];
+		int[] bounds = new int[numThreads + 1];
+		for (int i = 1; i < numThreads; i++) {
+			int index = Arrays.binarySearch(cumulativeCost, total * i / numThreads);
+			if (index < 0)
+				index = -index - 1;
+			bounds[i] = Math.max(bounds[i-1], Math.min(index, numElements));
+		}
+		bounds[numThreads] = numElements;
+		return bounds;
+	}
+	
+	/**
+	 * @return the current step size, which changes during optimization if
+	 *         ADAPTIVE_STEP_SIZE_KEY is true
+	 */
+	public double getStepSize() {
+		return stepSize;
+	}
+	
+	/**
+	 * @return the time taken to build or update the model for the last
+	 *         optimization, in nanoseconds
+	 */
+	public long getBuildTime() {
+		return lastBuildTime;
+	}
+	
+	/**
+	 * @return the primal residual when the last optimization stopped
+	 */
+	public double getPrimalResidual() {
+		return lastPrimalRes;
+	}
+	
+	/**
+	 * @return the dual residual when the last optimization stopped
+	 */
+	public double getDualResidual() {
+		return lastDualRes;
+	}
+	
+	/**
+	 * @return the number of iterations performed by the last optimization
+	 */
+	public int getIterations() {
+		return lastIterations;
+	}
+	
+	/**
+	 * @return whether the last optimization stopped because it reached the
+	 *         deadline
+	 */
+	public boolean isDeadlineReached() {
+		return lastDeadlineReached;
+	}
+	
+	/**
+	 * @return the total time taken by the last optimization, including
+	 *         building or updating the model, in nanoseconds
+	 */
+	public long getOptimizeTime() {
+		return lastOptimizeTime;
+	}
+	
+	/**
+	 * Returns the time each thread spent solving terms and updating the
+	 * consensus vector during the last optimization.
+	 * 
+	 * @return the busy times in nanoseconds, or null if no optimization has run
+	 */
+	public long[] getThreadBusyTimes() {
+		return (busyTimes == null) ? null : busyTimes.clone();
+	}
+	
+	/**
+	 * Returns the time each thread spent waiting for the other threads during
+	 * the last optimization.
+	 * 
+	 * @return the idle times in nanoseconds, or null if no optimization has run
+	 */
+	public long[] getThreadIdleTimes() {
+		return (idleTimes == null) ? null : idleTimes.clone();
 	}
 
 	@Override
@@ -551,13 +1499,23 @@ public class ADMMReasoner implements Reasoner {
 	@Override
 	public void close() {
 		groundKernels = null;
+		sharedStructure = null;
+		addedKernels.clear();
+		removedKernels.clear();
+		warmStart = null;
+		fixedValues.clear();
+		foldedVariables.clear();
 		orderedGroundKernels = null;
 		terms = null;
+		evidenceTerms = null;
+		termStore = null;
 		variables = null;
 		z = null;
 		lb = null;
 		ub = null;
-		varLocations = null;
+		varLocStart = null;
+		varLocTerms = null;
+		varLocIndices = null;
 		
 //		try {
 //			log.debug("Shutting down thread pool.");
@@ -568,84 +1526,192 @@ public class ADMMReasoner implements Reasoner {
 //		}
 	}
 	
-	protected void registerLocalVariableCopies(ADMMObjectiveTerm term) {
-		for (int i = 0; i < term.x.length; i++) {
-			VariableLocation varLocation = new VariableLocation(term, i);
-			varLocations.get(term.zIndices[i]).add(varLocation);
+	/**
+	 * Indexes the local copies of each consensus variable held by the
+	 * current terms into {@link #varLocStart}, {@link #varLocTerms}, and
+	 * {@link #varLocIndices}.
+	 */
+	protected void buildVariableLocations() {
+		varLocStart = new int[z.length + 1];
+		for (ADMMObjectiveTerm term : terms)
+			for (int i = term.start; i < term.start + term.size; i++)
+				varLocStart[term.zIndices[i] + 1]++;
+		for (int i = 0; i < z.length; i++)
+			varLocStart[i+1] += varLocStart[i];
+		
+		n = varLocStart[z.length];
+		varLocTerms = new int[n];
+		varLocIndices = new int[n];
+		int[] next = Arrays.copyOf(varLocStart, z.length);
+		for (int t = 0; t < terms.size(); t++) {
+			ADMMObjectiveTerm term = terms.get(t);
+			for (int i = term.start; i < term.start + term.size; i++) {
+				int k = next[term.zIndices[i]]++;
+				varLocTerms[k] = t;
+				varLocIndices[k] = i;
+			}
 		}
 	}
 	
+	/**
+	 * Returns the structure of the model for a snapshot, creating it if the
+	 * model changed since the last snapshot.
+	 */
+	ADMMReasonerState.Structure shareStructure() {
+		if (sharedStructure == null)
+			sharedStructure = new ADMMReasonerState.Structure(this);
+		return sharedStructure;
+	}
+	
+	/**
+	 * @return the locations of the local copies of z[i]
+	 */
+	protected List<VariableLocation> getVariableLocations(int i) {
+		List<VariableLocation> locations = new ArrayList<VariableLocation>(varLocStart[i+1] - varLocStart[i]);
+		for (int k = varLocStart[i]; k < varLocStart[i+1]; k++)
+			locations.add(new VariableLocation(terms.get(varLocTerms[k]), varLocIndices[k]));
+		return locations;
+	}
+	
+	/**
+	 * Ensures that z, lb, and ub can hold at least the given number of
+	 * variables.
+	 */
+	private void ensureVariableCapacity(int capacity) {
+		if (capacity > z.length) {
+			int newCapacity = Math.max(capacity, 2 * z.length);
+			z = Arrays.copyOf(z, newCapacity);
+			lb = Arrays.copyOf(lb, newCapacity);
+			ub = Arrays.copyOf(ub, newCapacity);
+		}
+	}
+	
+	/**
+	 * Collects the variables, coefficients, and constant of a linear function
+	 * into a hyperplane coeffs^T * x = constant, merging repeated variables
+	 * and registering new ones.
+	 * 
+	 * @return the hyperplane, which is reused by the next call
+	 */
 	protected Hyperplane processHyperplane(FunctionSum sum) {
-		Hyperplane hp = new Hyperplane();
-		HashMap<AtomFunctionVariable, Integer> localVarLocations = new HashMap<AtomFunctionVariable, Integer>();
-		ArrayList<Integer> tempZIndices = new ArrayList<Integer>(sum.size());
-		ArrayList<Double> tempCoeffs = new ArrayList<Double>(sum.size());
-		
-		for (Iterator<FunctionSummand> sItr = sum.iterator(); sItr.hasNext(); ) {
-			FunctionSummand summand = sItr.next();
+		hpSize = 0;
+		double constant = 0.0;
+		for (int i = 0; i < sum.size(); i++) {
+			FunctionSummand summand = sum.get(i);
 			FunctionSingleton singleton = summand.getTerm();
 			if (singleton instanceof AtomFunctionVariable && !singleton.isConstant()) {
-				int zIndex = variables.indexOf(singleton);
-				/*
-				 * If this variable has been encountered before in any hyperplane...
-				 */
-				if (zIndex != -1) {
-					/*
-					 * Checks if the variable has already been encountered
-					 * in THIS hyperplane
-					 */
-					Integer localIndex = localVarLocations.get(singleton);
-					/* If it has, just adds the coefficient... */
-					if (localIndex != null) {
-						tempCoeffs.set(localIndex, tempCoeffs.get(localIndex) + summand.getCoefficient());
-					}
-					/* Else, creates a new local variable */
-					else {
-						tempZIndices.add(zIndex);
-						tempCoeffs.add(summand.getCoefficient());
-						localVarLocations.put((AtomFunctionVariable) singleton, tempZIndices.size()-1);
-						
-						/* Increments count of local variables */
-						n++;
-					}
-				}
-				/* Else, creates a new global variable and a local variable */
-				else {
-					/* Creates the global variable */
-					variables.add((AtomFunctionVariable) singleton);
-					z.add(singleton.getValue());
-					lb.add(0.0);
-					ub.add(1.0);
-					
-					/* Creates a list of local variable locations for the new variable */
-					varLocations.add(new ArrayList<ADMMReasoner.VariableLocation>());
-					
-					/* Creates the local variable */
-					tempZIndices.add(z.size()-1);
-					tempCoeffs.add(summand.getCoefficient());
-					localVarLocations.put((AtomFunctionVariable) singleton, tempZIndices.size()-1);
-					
-					/* Increments count of local variables */
-					n++;
-				}
+				if (!foldedVariables.isEmpty() && foldedVariables.contains(singleton))
+					constant -= summand.getCoefficient() * fixedValues.get(singleton);
+				else
+					addToHyperplane((AtomFunctionVariable) singleton, summand.getCoefficient());
 			}
 			else if (singleton.isConstant()) {
 				/* Subtracts because hyperplane is stored as coeffs^T * x = constant */
-				hp.constant -= summand.getValue();
+				constant -= summand.getValue();
 			}
 			else
 				throw new IllegalArgumentException("Unexpected summand.");
 		}
-
-		hp.zIndices = new int[tempZIndices.size()];
-		hp.coeffs = new double[tempCoeffs.size()];
+		return finishHyperplane(constant);
+	}
+	
+	/**
+	 * Collects the linear function of a {@link LinearGroundCompatibilityKernel}
+	 * into a hyperplane without constructing its function definition.
+	 * 
+	 * @return the hyperplane, which is reused by the next call
+	 * @see #processHyperplane(FunctionSum)
+	 */
+	protected Hyperplane processHyperplane(LinearGroundCompatibilityKernel gk) {
+		int numSummands = gk.getNumLinearSummands();
+		if (numSummands > summandAtoms.length) {
+			summandAtoms = new GroundAtom[Math.max(numSummands, 2 * summandAtoms.length)];
+			summandCoeffs = new double[summandAtoms.length];
+		}
 		
-		for (int i = 0; i < tempZIndices.size(); i++) {
-			hp.zIndices[i] = tempZIndices.get(i);
-			hp.coeffs[i] = tempCoeffs.get(i);
+		hpSize = 0;
+		double constant = -1 * gk.getLinearSummands(summandAtoms, summandCoeffs);
+		for (int i = 0; i < numSummands; i++) {
+			AtomFunctionVariable var = summandAtoms[i].getVariable();
+			if (var.isConstant())
+				constant -= summandCoeffs[i] * var.getValue();
+			else if (!foldedVariables.isEmpty() && foldedVariables.contains(var))
+				constant -= summandCoeffs[i] * fixedValues.get(var);
+			else
+				addToHyperplane(var, summandCoeffs[i]);
+			summandAtoms[i] = null;
+		}
+		return finishHyperplane(constant);
+	}
+	
+	/**
+	 * Adds a summand to the hyperplane being built, registering its variable
+	 * if it is new.
+	 */
+	private void addToHyperplane(AtomFunctionVariable var, double coeff) {
+		int zIndex = variables.indexOf(var);
+		/* If this variable has been encountered before in any hyperplane... */
+		if (zIndex != -1) {
+			/* ...and in this one, just adds the coefficient */
+			for (int i = 0; i < hpSize; i++) {
+				if (hpZIndices[i] == zIndex) {
+					hpCoeffs[i] += coeff;
+					return;
+				}
+			}
 		}
+		/* Else, creates a new global variable */
+		else
+			zIndex = registerVariable(var);
 		
-		return hp;
+		/* Creates the local variable */
+		if (hpSize == hpZIndices.length) {
+			hpZIndices = Arrays.copyOf(hpZIndices, 2 * hpSize);
+			hpCoeffs = Arrays.copyOf(hpCoeffs, 2 * hpSize);
+		}
+		hpZIndices[hpSize] = zIndex;
+		hpCoeffs[hpSize] = coeff;
+		hpSize++;
+	}
+	
+	/**
+	 * Creates a new global variable, fixed at its value if it is fixed or else
+	 * starting at its current value with bounds 0 and 1.
+	 * 
+	 * @return the index of the variable in z
+	 */
+	private int registerVariable(AtomFunctionVariable var) {
+		int zIndex = variables.size();
+		variables.add(var);
+		ensureVariableCapacity(zIndex + 1);
+		Double fixed = (fixedValues.isEmpty()) ? null : fixedValues.get(var);
+		if (fixed == null) {
+			z[zIndex] = var.getValue();
+			lb[zIndex] = 0.0;
+			ub[zIndex] = 1.0;
+		}
+		else {
+			z[zIndex] = fixed;
+			lb[zIndex] = fixed;
+			ub[zIndex] = fixed;
+		}
+		return zIndex;
+	}
+	
+	/**
+	 * Registers the fixed variables not in any term, such as folded ones.
+	 */
+	private void registerFixedVariables() {
+		for (AtomFunctionVariable var : fixedValues.keySet())
+			if (!variables.contains(var))
+				registerVariable(var);
+	}
+	
+	private Hyperplane finishHyperplane(double constant) {
+		hyperplane.zIndices = Arrays.copyOf(hpZIndices, hpSize);
+		hyperplane.coeffs = Arrays.copyOf(hpCoeffs, hpSize);
+		hyperplane.constant = constant;
+		return hyperplane;
 	}
 	
 	protected class Hyperplane {
@@ -654,8 +1720,43 @@ public class ADMMReasoner implements Reasoner {
 		double constant;
 	}
 	
-	protected class VariableLocation {
+	/** Growable list of the indices of the terms containing an atom */
+	static class TermIndices {
+		int[] indices = new int[2];
+		int size = 0;
+		
+		void add(int t) {
+			if (size == indices.length)
+				indices = Arrays.copyOf(indices, 2 * size);
+			indices[size++] = t;
+		}
+		
+		/**
+		 * Replaces an index with another, or removes it if the other is -1.
+		 * 
+		 * @return whether the index was found
+		 */
+		boolean replace(int from, int to) {
+			for (int i = 0; i < size; i++) {
+				if (indices[i] == from) {
+					if (to == -1)
+						indices[i] = indices[--size];
+					else
+						indices[i] = to;
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(indices, size);
+		}
+	}
+	
+	protected static class VariableLocation {
 		protected final ADMMObjectiveTerm term;
+		/** Index of the local copy in term.x and term.y */
 		protected final int localIndex;
 		
 		protected VariableLocation(ADMMObjectiveTerm term, int localIndex) {
@@ -16,95 +16,633 @@
  */
 package edu.umd.cs.psl.reasoner.admm;
 
+import java.util.AbstractList;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import de.mathnbits.util.KeyedRetrievalSet;
 import edu.umd.cs.psl.model.atom.GroundAtom;
-import edu.umd.cs.psl.model.atom.RandomVariableAtom;
 import edu.umd.cs.psl.model.kernel.GroundConstraintKernel;
 import edu.umd.cs.psl.model.kernel.GroundKernel;
-import edu.umd.cs.psl.model.kernel.Kernel;
-import edu.umd.cs.psl.reasoner.admm.ADMMReasoner.VariableLocation;
-import edu.umd.cs.psl.reasoner.function.AtomFunctionVariable;
-import edu.umd.cs.psl.reasoner.function.MutableAtomFunctionVariable;
-import edu.umd.cs.psl.util.collection.HashList;
 
+/**
+ * Snapshot of the consensus variables and terms of an {@link ADMMReasoner}.
+ * <p>
+ * The snapshot copies the consensus estimates and bounds, and the local
+ * variables and Lagrange multipliers of the copies of each variable, so it
+ * does not change when the reasoner optimizes again. The atoms, terms, and
+ * ground kernels are kept in a {@link Structure} that does not change once
+ * created. The reasoner shares it among its snapshots until its model
+ * changes, when the next snapshot gets a new one. Lookup tables are built on
+ * first use and shared along with the structure.
+ */
 public class ADMMReasonerState {
-
-	Map<GroundAtom,ADMMVariableEntry> varMap;
-	Map<GroundAtom,List<GroundKernel>> atomKernelMap;
-	Map<ADMMObjectiveTerm,GroundKernel> termMap;
-	Map<GroundAtom,Set<GroundAtom>> constrainedPairs;
+	
+	final Structure structure;
+	/** Consensus estimates and bounds, by variable index */
+	private final double[] z, lb, ub;
+	/**
+	 * Local variables and Lagrange multipliers of the copies of the
+	 * variables, by location in {@link Structure#varLocTerms}
+	 */
+	private final double[] x, y;
+	/** Built on first use */
+	private Map<GroundAtom,ADMMVariableEntry> varMap;
+	/* Diagnostics of the optimization that reached this state */
+	private final long optimizeTime;
+	private final double primalRes, dualRes;
+	private final boolean deadlineReached;
 	
 	public ADMMReasonerState(ADMMReasoner reasoner) {
-		varMap = new HashMap<GroundAtom,ADMMVariableEntry>(reasoner.variables.size());
-		termMap = new HashMap<ADMMObjectiveTerm,GroundKernel>(reasoner.terms.size());
-		atomKernelMap = new HashMap<GroundAtom,List<GroundKernel>>(reasoner.variables.size());
-		constrainedPairs = new HashMap<GroundAtom,Set<GroundAtom>>(reasoner.variables.size());
-		for(int i = 0; i < reasoner.variables.size(); i++){
-			ADMMVariableEntry varEntry = new ADMMVariableEntry();
-			varEntry.consensusEstimate = reasoner.z.get(i);
-			varEntry.upperBound = reasoner.ub.get(i);
-			varEntry.lowerBound = reasoner.lb.get(i);
-			varEntry.objectiveTerms = new ArrayList<VariableLocation>(reasoner.varLocations.get(i));
-			varMap.put(reasoner.variables.get(i).getAtom(), varEntry);
-		}
-		for(int i = 0; i < reasoner.terms.size(); i++){
-			ADMMObjectiveTerm term = reasoner.terms.get(i);
-			GroundKernel gk = reasoner.orderedGroundKernels.get(i);
-			termMap.put(term, gk);
-			if(gk instanceof GroundConstraintKernel){
-				for(int zi = 0; zi < term.zIndices.length; zi++){
-					GroundAtom var = reasoner.variables.get(term.zIndices[zi]).getAtom();
-					if(!constrainedPairs.containsKey(var)){
-						constrainedPairs.put(var, new HashSet<GroundAtom>());
+		structure = reasoner.shareStructure();
+		int numVars = structure.variableAtoms.length;
+		z = Arrays.copyOf(reasoner.z, numVars);
+		lb = Arrays.copyOf(reasoner.lb, numVars);
+		ub = Arrays.copyOf(reasoner.ub, numVars);
+		int numLocations = structure.varLocStart[numVars];
+		x = new double[numLocations];
+		y = new double[numLocations];
+		for (int k = 0; k < numLocations; k++) {
+			ADMMObjectiveTerm term = structure.terms[structure.varLocTerms[k]];
+			x[k] = term.x[structure.varLocIndices[k]];
+			y[k] = term.y[structure.varLocIndices[k]];
+		}
+		optimizeTime = reasoner.getOptimizeTime();
+		primalRes = reasoner.getPrimalResidual();
+		dualRes = reasoner.getDualResidual();
+		deadlineReached = reasoner.isDeadlineReached();
+	}
+	
+	/**
+	 * Returns the ground kernels of the terms that contain an atom.
+	 * 
+	 * @return an unmodifiable view of the ground kernels
+	 */
+	public Set<GroundKernel> getAtomKernels(GroundAtom atom){
+		final int index = getVariableIndex(atom);
+		if(index != -1){
+			return new KernelSet(new AbstractList<GroundKernel>() {
+				@Override
+				public GroundKernel get(int k) {
+					return structure.kernels[structure.varLocTerms[structure.varLocStart[index] + k]];
+				}
+				@Override
+				public int size() {
+					return structure.varLocStart[index+1] - structure.varLocStart[index];
+				}
+			});
+		}
+		
+		/* Observed atoms */
+		final int[] atomTerms = structure.evidenceTerms.get(atom);
+		if(atomTerms != null){
+			return new KernelSet(new AbstractList<GroundKernel>() {
+				@Override
+				public GroundKernel get(int k) {
+					return structure.kernels[atomTerms[k]];
+				}
+				@Override
+				public int size() {
+					return atomTerms.length;
+				}
+			});
+		}
+		
+		/* Other atoms without variables */
+		List<GroundKernel> kernels = structure.getOtherAtomKernels().get(atom);
+		if(kernels == null){ return Collections.emptySet(); }
+		return new KernelSet(kernels);
+	}
+	
+	/**
+	 * Returns the state of each variable by its atom. The map is built on the
+	 * first call, so iterating over the variables by index is cheaper.
+	 * 
+	 * @see #getNumVariables()
+	 */
+	public synchronized Map<GroundAtom, ADMMVariableEntry> getVariableStates(){
+		if(varMap == null){
+			varMap = new HashMap<GroundAtom,ADMMVariableEntry>(structure.variableAtoms.length * 2);
+			for(int i = 0; i < structure.variableAtoms.length; i++){
+				ADMMVariableEntry varEntry = new ADMMVariableEntry();
+				varEntry.consensusEstimate = z[i];
+				varEntry.upperBound = ub[i];
+				varEntry.lowerBound = lb[i];
+				varEntry.index = i;
+				varMap.put(structure.variableAtoms[i], varEntry);
+			}
+		}
+		return varMap;
+	}
+	
+	/**
+	 * @return the number of variables, which are indexed from 0
+	 */
+	public int getNumVariables(){
+		return structure.variableAtoms.length;
+	}
+	
+	/**
+	 * @return the atom of the variable with the given index
+	 */
+	public GroundAtom getVariableAtom(int index){
+		return structure.variableAtoms[index];
+	}
+	
+	/**
+	 * @return the index of the variable of atom, or -1 if it has none
+	 */
+	public int getVariableIndex(GroundAtom atom){
+		return structure.getVariableIndex(atom);
+	}
+	
+	/**
+	 * @return the consensus estimate of the variable with the given index
+	 */
+	public double getConsensusEstimate(int index){
+		return z[index];
+	}
+	
+	public double getLowerBound(int index){
+		return lb[index];
+	}
+	
+	public double getUpperBound(int index){
+		return ub[index];
+	}
+	
+	/**
+	 * @return the number of locations of copies of the variable with the given
+	 *         index, which is the number of terms that contain it
+	 */
+	public int getNumVariableLocations(int index){
+		return structure.varLocStart[index+1] - structure.varLocStart[index];
+	}
+	
+	/**
+	 * Returns the local variable of a copy of a variable. The copies of
+	 * variable i are at locations varLocStart[i] through varLocStart[i+1] - 1
+	 * of the {@link Structure}.
+	 */
+	double getLocalVariable(int location){
+		return x[location];
+	}
+	
+	/**
+	 * Returns the Lagrange multiplier of a copy of a variable.
+	 * 
+	 * @see #getLocalVariable(int)
+	 */
+	double getLagrangeMultiplier(int location){
+		return y[location];
+	}
+	
+	/**
+	 * @return the number of variables in at least one term
+	 */
+	public int getNumActiveVariables(){
+		int count = 0;
+		for(int i = 0; i < structure.variableAtoms.length; i++){
+			if(structure.varLocStart[i+1] > structure.varLocStart[i]){ count++; }
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the indices of the terms whose ground kernels contain an
+	 *         ObservedAtom, which must not be modified, or an empty array if
+	 *         there are none
+	 */
+	public int[] getEvidenceTerms(GroundAtom atom){
+		int[] atomTerms = structure.evidenceTerms.get(atom);
+		return (atomTerms == null) ? new int[0] : atomTerms;
+	}
+	
+	/**
+	 * Finds the terms and variables affected by changes to a set of atoms,
+	 * such as evidence updated since this state was reached.
+	 * <p>
+	 * The terms containing changed ObservedAtoms are changed, and their
+	 * variables, along with the variables of any changed atoms that have
+	 * them, are at distance 0. A variable at distance d + 1 shares a term
+	 * with one at distance d. The work is proportional to the size of the
+	 * region found, not of the model.
+	 * 
+	 * @param atoms  the changed atoms
+	 * @param hops  the greatest distance of variables to include
+	 * @return the changed terms and the variables within hops of them
+	 */
+	public ChangedRegion findChangedRegion(Collection<? extends GroundAtom> atoms, int hops){
+		Set<Integer> changedTerms = new LinkedHashSet<Integer>();
+		/* Iterates in order of insertion, so in order of distance */
+		Map<Integer,Integer> distances = new LinkedHashMap<Integer,Integer>();
+		for(GroundAtom atom : atoms){
+			int index = structure.getVariableIndex(atom);
+			if(index != -1 && !distances.containsKey(index)){
+				distances.put(index, 0);
+			}
+			int[] atomTerms = structure.evidenceTerms.get(atom);
+			if(atomTerms == null){ continue; }
+			for(int t : atomTerms){
+				if(changedTerms.add(t)){
+					ADMMObjectiveTerm term = structure.terms[t];
+					for(int i = term.start; i < term.start + term.size; i++){
+						if(!distances.containsKey(term.zIndices[i])){
+							distances.put(term.zIndices[i], 0);
+						}
 					}
-					for(int zj = 0; zj < term.zIndices.length; zj++){
-						if(zj != zi){
-							constrainedPairs.get(var).add( reasoner.variables.get(term.zIndices[zj]).getAtom());
+				}
+			}
+		}
+		
+		List<Integer> frontier = new ArrayList<Integer>(distances.keySet());
+		for(int dist = 1; dist <= hops && !frontier.isEmpty(); dist++){
+			List<Integer> next = new ArrayList<Integer>();
+			for(int v : frontier){
+				for(int k = structure.varLocStart[v]; k < structure.varLocStart[v+1]; k++){
+					ADMMObjectiveTerm term = structure.terms[structure.varLocTerms[k]];
+					for(int i = term.start; i < term.start + term.size; i++){
+						if(!distances.containsKey(term.zIndices[i])){
+							distances.put(term.zIndices[i], dist);
+							next.add(term.zIndices[i]);
 						}
-					}//inner loop - value added to set
-				} //outer loop - key
-			}//add constrained pairs
-			
-			for(GroundAtom g : gk.getAtoms()){
-				//TODO: should we convert g to a QueryAtom?
-				if(!atomKernelMap.containsKey(g)){
-					atomKernelMap.put(g,new ArrayList<GroundKernel>());
+					}
 				}
-				atomKernelMap.get(g).add(gk);
-			}//atoms
-		}//terms
+			}
+			frontier = next;
+		}
+		
+		int[] termArray = new int[changedTerms.size()];
+		int next = 0;
+		for(int t : changedTerms){ termArray[next++] = t; }
+		int[] variables = new int[distances.size()];
+		int[] varDistances = new int[distances.size()];
+		next = 0;
+		for(Map.Entry<Integer,Integer> e : distances.entrySet()){
+			variables[next] = e.getKey();
+			varDistances[next++] = e.getValue();
+		}
+		return new ChangedRegion(termArray, variables, varDistances);
 	}
-
-	public Set<GroundKernel> getAtomKernels(GroundAtom atom){
-		if(!atomKernelMap.containsKey(atom)){ return new HashSet<GroundKernel>(); }
-		HashSet<GroundKernel> retSet = new HashSet<GroundKernel>(atomKernelMap.get(atom));
-		return retSet;
+	
+	/**
+	 * @return the total time taken by the optimization that reached this
+	 *         state, in nanoseconds
+	 * @see ADMMReasoner#getOptimizeTime()
+	 */
+	public long getOptimizeTime(){
+		return optimizeTime;
 	}
 	
-	public Map<GroundAtom, ADMMVariableEntry> getVariableStates(){
-		return varMap;
+	/**
+	 * @return the primal residual of this state
+	 */
+	public double getPrimalResidual(){
+		return primalRes;
+	}
+	
+	/**
+	 * @return the dual residual of this state
+	 */
+	public double getDualResidual(){
+		return dualRes;
+	}
+	
+	/**
+	 * @return whether the optimization that reached this state stopped at
+	 *         its deadline
+	 */
+	public boolean isDeadlineReached(){
+		return deadlineReached;
+	}
+	
+	/**
+	 * Returns offsets into {@link #getNeighbors()}: the neighbors of variable i
+	 * are at positions getNeighborStart()[i] through getNeighborStart()[i+1] - 1.
+	 * 
+	 * @return array of length {@link #getNumVariables()} + 1, which must not be
+	 *         modified
+	 */
+	public int[] getNeighborStart(){
+		return structure.getNeighborStart();
+	}
+	
+	/**
+	 * Returns the indices of the variables that share a term with each
+	 * variable, excluding itself, in ascending order for each variable.
+	 * 
+	 * @return the neighbors of all variables, which must not be modified
+	 * @see #getNeighborStart()
+	 */
+	public int[] getNeighbors(){
+		return structure.getNeighbors();
+	}
+	
+	/**
+	 * @return the index of the term of the ground kernel equal to gk, or -1 if
+	 *         there is none
+	 */
+	int getTermIndex(GroundKernel gk){
+		return structure.getTermIndex(gk);
+	}
+	
+	/**
+	 * Terms and variables affected by changes to a set of atoms.
+	 * 
+	 * @see ADMMReasonerState#findChangedRegion(Collection, int)
+	 */
+	public static class ChangedRegion {
+		private final int[] terms, variables, distances;
+		
+		private ChangedRegion(int[] terms, int[] variables, int[] distances) {
+			this.terms = terms;
+			this.variables = variables;
+			this.distances = distances;
+		}
+		
+		/**
+		 * @return the indices of the terms containing changed ObservedAtoms
+		 */
+		public int[] getTerms() {
+			return terms;
+		}
+		
+		/**
+		 * @return the indices of the affected variables, in order of distance
+		 */
+		public int[] getVariables() {
+			return variables;
+		}
+		
+		/**
+		 * @return the distance of each variable in {@link #getVariables()}
+		 */
+		public int[] getDistances() {
+			return distances;
+		}
 	}
 	
 	public class ADMMVariableEntry {
 		public double consensusEstimate;
 		public double upperBound;
 		public double lowerBound;
-		List<VariableLocation> objectiveTerms;
+		/** Index of the variable in the reasoner, which identifies its atom */
+		public int index;
 	}
 
+	/**
+	 * Returns the atoms of the other variables in the constraints that
+	 * contain the variable of an atom. Computed on each call.
+	 */
 	public Set<GroundAtom> constrainedPairs(GroundAtom var) {
-		if(constrainedPairs.containsKey(var)){
-			return constrainedPairs.get(var);
-		} else {
-			return new HashSet<GroundAtom>();
+		Set<GroundAtom> pairs = new HashSet<GroundAtom>();
+		int index = getVariableIndex(var);
+		if(index == -1){ return pairs; }
+		for(int k = structure.varLocStart[index]; k < structure.varLocStart[index+1]; k++){
+			int t = structure.varLocTerms[k];
+			if(structure.kernels[t] instanceof GroundConstraintKernel){
+				ADMMObjectiveTerm term = structure.terms[t];
+				for(int j = term.start; j < term.start + term.size; j++){
+					if(term.zIndices[j] != index){
+						pairs.add(structure.variableAtoms[term.zIndices[j]]);
+					}
+				}
+			}
+		}
+		return pairs;
+	}
+	
+	/**
+	 * The atoms, terms, and ground kernels of a reasoner, with the locations
+	 * of the copies of each variable. Does not change once created, except for
+	 * the local variables, Lagrange multipliers, and weights held by the
+	 * terms, which the reasoner keeps updating. Snapshots copy the former.
+	 */
+	static class Structure {
+		/** Atoms of the consensus variables, by index in z */
+		final GroundAtom[] variableAtoms;
+		final ADMMObjectiveTerm[] terms;
+		/** Ground kernel of each term */
+		final GroundKernel[] kernels;
+		/** Shared with the reasoner, which replaces rather than modifies them */
+		final int[] varLocStart, varLocTerms, varLocIndices;
+		/** Indices of the terms containing each ObservedAtom */
+		final Map<GroundAtom,int[]> evidenceTerms;
+		
+		/*
+		 * Built on first use under the lock, then only read, so lookups after
+		 * the first do not lock
+		 */
+		/** Open-addressing table of variable indices, hashed by atom */
+		private volatile int[] atomTable;
+		private volatile Map<GroundKernel,Integer> kernelTermMap;
+		private volatile Map<GroundAtom,List<GroundKernel>> otherAtomKernels;
+		/**
+		 * Variables that share a term, in compressed sparse row form: the
+		 * neighbors of variable i are neighbors[neighborStart[i]] through
+		 * neighbors[neighborStart[i+1] - 1].
+		 */
+		private volatile int[] neighborStart, neighbors;
+		
+		Structure(ADMMReasoner reasoner) {
+			variableAtoms = new GroundAtom[reasoner.variables.size()];
+			for(int i = 0; i < variableAtoms.length; i++){
+				variableAtoms[i] = reasoner.variables.get(i).getAtom();
+			}
+			terms = reasoner.terms.toArray(new ADMMObjectiveTerm[reasoner.terms.size()]);
+			kernels = reasoner.orderedGroundKernels.toArray(new GroundKernel[terms.length]);
+			varLocStart = reasoner.varLocStart;
+			varLocTerms = reasoner.varLocTerms;
+			varLocIndices = reasoner.varLocIndices;
+			evidenceTerms = new HashMap<GroundAtom,int[]>();
+			if (reasoner.evidenceTerms != null)
+				for (Map.Entry<GroundAtom, ADMMReasoner.TermIndices> e : reasoner.evidenceTerms.entrySet())
+					evidenceTerms.put(e.getKey(), e.getValue().toArray());
+		}
+		
+		int getVariableIndex(GroundAtom atom) {
+			if (atom == null)
+				return -1;
+			int[] table = getAtomTable();
+			int mask = table.length - 1;
+			for (int pos = hash(atom) & mask; table[pos] != -1; pos = (pos + 1) & mask)
+				if (atom.equals(variableAtoms[table[pos]]))
+					return table[pos];
+			return -1;
+		}
+		
+		private int[] getAtomTable() {
+			int[] table = atomTable;
+			if (table == null) {
+				synchronized (this) {
+					table = atomTable;
+					if (table == null)
+						atomTable = table = buildAtomTable();
+				}
+			}
+			return table;
+		}
+		
+		private int[] buildAtomTable() {
+			int capacity = 2;
+			while (capacity < 2 * variableAtoms.length)
+				capacity <<= 1;
+			int[] table = new int[capacity];
+			Arrays.fill(table, -1);
+			for (int i = 0; i < variableAtoms.length; i++) {
+				if (variableAtoms[i] == null)
+					continue;
+				int pos = hash(variableAtoms[i]) & (capacity - 1);
+				while (table[pos] != -1)
+					pos = (pos + 1) & (capacity - 1);
+				table[pos] = i;
+			}
+			return table;
+		}
+		
+		private static int hash(GroundAtom atom) {
+			int h = atom.hashCode();
+			return h ^ (h >>> 16);
+		}
+		
+		int getTermIndex(GroundKernel gk) {
+			Map<GroundKernel,Integer> map = kernelTermMap;
+			if (map == null) {
+				synchronized (this) {
+					map = kernelTermMap;
+					if (map == null) {
+						map = new HashMap<GroundKernel,Integer>(terms.length * 2);
+						for (int t = 0; t < terms.length; t++)
+							map.put(kernels[t], t);
+						kernelTermMap = map;
+					}
+				}
+			}
+			Integer t = map.get(gk);
+			return (t == null) ? -1 : t;
+		}
+		
+		/**
+		 * @return the ground kernels containing each atom that has no variable,
+		 *         including ObservedAtoms, which are also in evidenceTerms
+		 */
+		Map<GroundAtom,List<GroundKernel>> getOtherAtomKernels() {
+			Map<GroundAtom,List<GroundKernel>> map = otherAtomKernels;
+			if (map == null) {
+				synchronized (this) {
+					map = otherAtomKernels;
+					if (map == null) {
+						map = new HashMap<GroundAtom,List<GroundKernel>>();
+						for (GroundKernel gk : kernels) {
+							for (GroundAtom atom : gk.getAtoms()) {
+								if (getVariableIndex(atom) != -1)
+									continue;
+								List<GroundKernel> atomKernels = map.get(atom);
+								if (atomKernels == null) {
+									atomKernels = new ArrayList<GroundKernel>(2);
+									map.put(atom, atomKernels);
+								}
+								atomKernels.add(gk);
+							}
+						}
+						otherAtomKernels = map;
+					}
+				}
+			}
+			return map;
+		}
+		
+		int[] getNeighborStart() {
+			int[] start = neighborStart;
+			if (start == null) {
+				synchronized (this) {
+					if (neighborStart == null)
+						buildNeighbors();
+					start = neighborStart;
+				}
+			}
+			return start;
+		}
+		
+		int[] getNeighbors() {
+			int[] adjacent = neighbors;
+			if (adjacent == null) {
+				synchronized (this) {
+					if (neighbors == null)
+						buildNeighbors();
+					adjacent = neighbors;
+				}
+			}
+			return adjacent;
+		}
+		
+		/**
+		 * Sets both neighborStart and neighbors, each only once it is filled.
+		 * Called under the lock.
+		 */
+		private void buildNeighbors() {
+			int numVars = variableAtoms.length;
+			int[] degree = new int[numVars];
+			for (ADMMObjectiveTerm term : terms)
+				for (int i = term.start; i < term.start + term.size; i++)
+					degree[term.zIndices[i]] += term.size - 1;
+			
+			/* Fills the rows, which can repeat neighbors */
+			int[] start = new int[numVars + 1];
+			for (int i = 0; i < numVars; i++)
+				start[i+1] = start[i] + degree[i];
+			int[] fill = Arrays.copyOf(start, numVars);
+			int[] adjacent = new int[start[numVars]];
+			for (ADMMObjectiveTerm term : terms)
+				for (int i = term.start; i < term.start + term.size; i++)
+					for (int j = term.start; j < term.start + term.size; j++)
+						if (i != j)
+							adjacent[fill[term.zIndices[i]]++] = term.zIndices[j];
+			
+			/* Sorts each row and removes repeats */
+			int[] rowStart = new int[numVars + 1];
+			int next = 0;
+			for (int i = 0; i < numVars; i++) {
+				Arrays.sort(adjacent, start[i], start[i+1]);
+				rowStart[i] = next;
+				for (int k = start[i]; k < start[i+1]; k++)
+					if (k == start[i] || adjacent[k] != adjacent[k-1])
+						adjacent[next++] = adjacent[k];
+			}
+			rowStart[numVars] = next;
+			neighbors = Arrays.copyOf(adjacent, next);
+			neighborStart = rowStart;
+		}
+	}
+	
+	/**
+	 * Unmodifiable set view of a list of distinct ground kernels
+	 */
+	private static class KernelSet extends AbstractSet<GroundKernel> {
+		private final List<GroundKernel> kernels;
+		
+		private KernelSet(List<GroundKernel> kernels) {
+			this.kernels = kernels;
+		}
+		
+		@Override
+		public Iterator<GroundKernel> iterator() {
+			return Collections.unmodifiableList(kernels).iterator();
+		}
+		
+		@Override
+		public int size() {
+			return kernels.size();
 		}
 	}
-
 }
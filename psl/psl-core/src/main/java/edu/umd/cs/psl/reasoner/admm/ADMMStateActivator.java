@@ -17,13 +17,13 @@
 package edu.umd.cs.psl.reasoner.admm;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,11 +34,13 @@ import edu.umd.cs.psl.model.atom.GroundAtom;
 import edu.umd.cs.psl.model.kernel.GroundCompatibilityKernel;
 import edu.umd.cs.psl.model.kernel.GroundConstraintKernel;
 import edu.umd.cs.psl.model.kernel.GroundKernel;
+import edu.umd.cs.psl.model.kernel.LinearGroundCompatibilityKernel;
 import edu.umd.cs.psl.reasoner.admm.ADMMObjectiveTerm;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasoner;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState;
 import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState.ADMMVariableEntry;
 import edu.umd.cs.psl.reasoner.admm.WeightedObjectiveTerm;
+import edu.umd.cs.psl.util.concurrent.ThreadPool;
 
 public class ADMMStateActivator {
 	private static final Logger log = LoggerFactory.getLogger(ADMMStateActivator.class);
@@ -59,6 +61,14 @@ public class ADMMStateActivator {
 	public static final String PRINT_SCORES = CONFIG_PREFIX + ".print_scores";
 	public static final String CONSTRAINT_WEIGHT = CONFIG_PREFIX + ".constraint_weight";
 	
+	/**
+	 * Key for positive int property for the number of threads among which
+	 * the variables are divided when scoring them
+	 */
+	public static final String NUM_THREADS = CONFIG_PREFIX + ".num_threads";
+	/** Default value for NUM_THREADS property */
+	public static final int NUM_THREADS_DEFAULT = 1;
+	
 	ADMMReasonerState reasonerState;
 	ADMMReasonerState initialState = null;
 	
@@ -68,6 +78,7 @@ public class ADMMStateActivator {
 	private boolean invert = false;
 	private boolean print_scores = false;
 	private double constraint_weight = 1000;
+	private final int numThreads;
 	
 	public ADMMStateActivator(ADMMReasonerState state, ConfigBundle config) {
 		this.reasonerState = state;
@@ -75,6 +86,9 @@ public class ADMMStateActivator {
 		this.invert = config.getBoolean(INVERT_SCORES,false);
 		this.print_scores = config.getBoolean(PRINT_SCORES,false);
 		this.constraint_weight = config.getDouble(CONSTRAINT_WEIGHT,1000);
+		this.numThreads = config.getInt(NUM_THREADS, NUM_THREADS_DEFAULT);
+		if (numThreads < 1)
+			throw new IllegalArgumentException("Property " + NUM_THREADS + " must be positive.");
 	}
 
 	public ADMMStateActivator(ADMMReasonerState state, ConfigBundle config, ADMMReasonerState origState) {
@@ -96,18 +110,10 @@ public class ADMMStateActivator {
 	}
 	
 	
-	private String formatDouble(Double d){
+	private String formatDouble(double d){
 		return String.format("%03.3f",d);
 	}
 	
-	private String doubleListToString(ArrayList<Double> a){
-		String ret = "";
-		Collections.sort(a);
-		for(int i = 0; i < a.size(); i++){
-			ret+= formatDouble(a.get(i))+", ";
-		}
-		return ret;
-	}
 	private String stringListToString(ArrayList<String> a){
 		String ret = "";
 		//Collections.sort(a);
@@ -117,186 +123,11 @@ public class ADMMStateActivator {
 		return ret;
 	}
 		
-	private Map<GroundAtom,Double> scoreVariablesTruthValue(){
-		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){
-			GroundAtom var = varInfo.getKey();
-			String debugStr="";
-			debugStr+="Atom "+var.toString()+" with value "+
-					formatDouble(var.getValue());
-			double score = 1-Math.abs(.5-var.getValue());
-			debugStr+=" with final score "+formatDouble(score);
-			log.trace(debugStr);
-			varScores.put(var, score );
-		}
-		return varScores;
-	}
-	
-	private Map<GroundAtom,Double> scoreVariablesRandom(){
-		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
-		Random rnd = new Random();
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){
-			GroundAtom var = varInfo.getKey();
-			String debugStr="";
-			debugStr+="Atom "+var.toString()+" with value "+
-					formatDouble(var.getValue());
-			double score = rnd.nextDouble();
-			debugStr+=" assigned random score "+formatDouble(score);
-			log.trace(debugStr);
-			varScores.put(var, score );
-		}
-		return varScores;
-	}
-	
-	
-	private Map<GroundAtom,Double> scoreVariablesSimple(){
-		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){
-			GroundAtom var = varInfo.getKey();
-			ADMMVariableEntry entry = varInfo.getValue();
-			String debugStr="";
-			double lagrangeScore = 0;
-			double maxWeight = -1;
-			debugStr+="Atom "+var.toString()+" with value "+
-					formatDouble(var.getValue())+" has "+entry.objectiveTerms.size()+
-					" optimization Lagrange multipliers: ";
-			ArrayList<Double> vals = new ArrayList<Double>();
-			for(ADMMReasoner.VariableLocation loc : entry.objectiveTerms){
-				ADMMObjectiveTerm term = loc.term;
-				int idx = loc.localIndex;
-				lagrangeScore += Math.abs(term.y[idx]); //should be absolute value?
-				vals.add(term.y[idx]);
-				if(term instanceof WeightedObjectiveTerm &&
-						((WeightedObjectiveTerm)term).getWeight() > maxWeight){
-					maxWeight = ((WeightedObjectiveTerm)term).getWeight();
-				}
-			}
-			debugStr+=doubleListToString(vals);
-			if(maxWeight < 0 ){ maxWeight = 0; }
-			debugStr+="and max weight "+formatDouble(maxWeight);
-			double score = lagrangeCoeff * lagrangeScore + weightCoeff * maxWeight;
-			debugStr+=" with final score "+formatDouble(score);
-			log.trace(debugStr);
-			varScores.put(var, score );
-		}
-		return varScores;
-	}
-
-
-	private Map<GroundAtom,Double> scoreVariablesUnsatisfied(String mode, boolean weighted){
-		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){		
-		//for(Entry<GroundAtom, List<GroundKernel>> varKernels : reasonerState.atomKernelMap.entrySet() ){
-			GroundAtom var = varInfo.getKey();
-			List<GroundKernel> kernels =  reasonerState.atomKernelMap.get(var);
-			String debugStr="";
-			double maxScore = -1;
-			double totScore = 0;
-			int termCnt = 0;
-			debugStr+="Atom "+var.toString()+" with value "+
-					formatDouble(var.getValue())+" has "+kernels.size()+
-					" ground kernels: ";
-			ArrayList<Double> vals = new ArrayList<Double>();
-			ArrayList<String> wvals = new ArrayList<String>();
-			for(GroundKernel kernel : kernels){
-				termCnt++;
-				if(kernel instanceof GroundCompatibilityKernel){
-					GroundCompatibilityKernel gck = (GroundCompatibilityKernel)kernel;
-					double incompatibility = gck.getIncompatibility();
-					double score = weighted ? gck.getWeight().getWeight()*incompatibility : incompatibility;  
-					if(maxScore < score){ maxScore = score; }
-					totScore += score;
-					vals.add(incompatibility);
-					wvals.add(formatDouble(incompatibility)+"*"+formatDouble(gck.getWeight().getWeight()));
-				} else if (kernel instanceof GroundConstraintKernel) {
-					GroundConstraintKernel gck = (GroundConstraintKernel)kernel;
-					double infeasibility = gck.getInfeasibility();
-					double score = weighted ? this.constraint_weight*infeasibility : infeasibility;
-					if(maxScore < score){ maxScore = score; }
-					totScore += score;
-					vals.add(infeasibility);
-					wvals.add(formatDouble(infeasibility)+"*"+"C");
-				}				
-			}
-			debugStr+= weighted ? stringListToString(wvals) : doubleListToString(vals);
-			double score = maxScore;
-			if(mode.equals("max")){
-				score = maxScore;
-			} else if(mode.equals("tot")){
-				score = totScore;
-			} else if(mode.equals("avg")){
-				score = totScore/(double)termCnt;
-			} else { log.info("No mode found for unsatisfication scoring, using max"); }
-			debugStr+=" with final score "+formatDouble(score);
-			log.trace(debugStr);
-			varScores.put(var, score );
-		}
-		return varScores;
-	}
-	
-	
-	
-	
-	private Map<GroundAtom,Double> scoreVariablesRuleWeighted(String mode){
-		return scoreVariablesLagrange(mode,true);
-	}
-	
-	private Map<GroundAtom,Double> scoreVariablesLagrange(String mode, boolean weighted){
-		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){
-			GroundAtom var = varInfo.getKey();
-			ADMMVariableEntry entry = varInfo.getValue();
-			double maxScore = -1;
-			double totScore=0;
-			String debugStr="";
-			int termCnt = 0;
-			debugStr+="Atom "+var.toString()+" with value "+
-					formatDouble(var.getValue())+" has "+entry.objectiveTerms.size()+
-					" optimization Lagrange multipliers: ";
-			ArrayList<Double> vals = new ArrayList<Double>();
-			ArrayList<String> wvals = new ArrayList<String>();
-			for(ADMMReasoner.VariableLocation loc : entry.objectiveTerms){
-				termCnt++;
-				ADMMObjectiveTerm term = loc.term;
-				int idx = loc.localIndex;
-				double lm = Math.abs(term.y[idx]);
-				if(term instanceof WeightedObjectiveTerm){
-					double score = weighted ? ((WeightedObjectiveTerm)term).getWeight()*lm : lm; 
-					if(maxScore < score){ maxScore = score; }
-					totScore += score;
-					vals.add(term.y[idx]);
-					wvals.add(formatDouble(term.y[idx])+"*"+formatDouble(((WeightedObjectiveTerm)term).getWeight()));
-				} else {
-					double score = weighted ? this.constraint_weight*lm : lm;
-					if(maxScore < score){ maxScore = score; }
-					totScore += score;
-					vals.add(term.y[idx]);
-					wvals.add(formatDouble(term.y[idx])+"*"+"C");
-				}	
-			}
-			debugStr+= weighted ? stringListToString(wvals) : doubleListToString(vals);
-			double score = maxScore;
-			if(mode.equals("max")){
-				score = maxScore;
-			} else if(mode.equals("tot")){
-				score = totScore;
-			} else if(mode.equals("avg")){
-				score = totScore/(double)termCnt;
-			} else { log.info("No mode found for lagrange scoring, using max"); }
-			debugStr+=" with final score "+formatDouble(score);
-			log.trace(debugStr);
-			varScores.put(var, score );
-		}
-		return varScores;
-	}
-	
-	
-	
 	private Map<GroundAtom,Double> scoreVariablesFeaturePrinter(){
 		HashMap<GroundAtom,Double> varScores= new HashMap<GroundAtom,Double>();
 		int constraintWeight = 1000;
 		System.out.println("==ACTIVATIONS==");
-		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.varMap.entrySet() ){
+		for(Entry<GroundAtom, ADMMVariableEntry> varInfo : reasonerState.getVariableStates().entrySet() ){
 			GroundAtom var = varInfo.getKey();
 			ADMMVariableEntry entry = varInfo.getValue();
 			String debugStr="ACTIVATION_FEATURES: ";
@@ -310,11 +141,12 @@ public class ADMMStateActivator {
 					"tv="+formatDouble(var.getValue())+"\t";
 			ArrayList<Double> vals = new ArrayList<Double>();
 			ArrayList<String> wvals = new ArrayList<String>();
-			for(ADMMReasoner.VariableLocation loc : entry.objectiveTerms){
+			ADMMReasonerState.Structure structure = reasonerState.structure;
+			for(int k = structure.varLocStart[entry.index]; k < structure.varLocStart[entry.index+1]; k++){
 				termCnt++;
-				ADMMObjectiveTerm term = loc.term;
-				int idx = loc.localIndex;
-				double lm = Math.abs(term.y[idx]);
+				ADMMObjectiveTerm term = structure.terms[structure.varLocTerms[k]];
+				double y = reasonerState.getLagrangeMultiplier(k);
+				double lm = Math.abs(y);
 				if(term instanceof WeightedObjectiveTerm){
 					double wt = ((WeightedObjectiveTerm)term).getWeight(); 
 					if(maxWeight < wt){ maxWeight = wt; }
@@ -322,14 +154,14 @@ public class ADMMStateActivator {
 					weightTotal += wt;
 					lagrangeTotal += lm;
 					weightedLMTotal += wt*lm;
-					vals.add(term.y[idx]);
-					wvals.add(formatDouble(term.y[idx])+"*"+formatDouble(((WeightedObjectiveTerm)term).getWeight()));
+					vals.add(y);
+					wvals.add(formatDouble(y)+"*"+formatDouble(((WeightedObjectiveTerm)term).getWeight()));
 				} else {
 					if(maxLM < lm){ maxLM = lm; }
 					lagrangeTotal += lm;
 					weightedLMTotal += constraintWeight*lm;
-					vals.add(term.y[idx]);
-					wvals.add(formatDouble(term.y[idx])+"*"+"C");
+					vals.add(y);
+					wvals.add(formatDouble(y)+"*"+"C");
 				}				
 			}
 			debugStr+="maxwt="+formatDouble(maxWeight)+"\t"+
@@ -349,82 +181,330 @@ public class ADMMStateActivator {
 
 
 	
-	private Map<GroundAtom,Double> invertScores(Map<GroundAtom,Double> inMap){
-		HashMap<GroundAtom,Double> invScores = new HashMap<GroundAtom,Double>();
-		for(Entry<GroundAtom,Double> varScore : inMap.entrySet()){
+	/**
+	 * Scores the variables of the state with the configured scoring method.
+	 * 
+	 * @return map from each variable's atom to its score
+	 * @see #scoreVariablesByIndex()
+	 */
+	public Map<GroundAtom,Double> scoreVariables(){
+		double[] scores = scoreVariablesByIndex();
+		HashMap<GroundAtom,Double> varScores = new HashMap<GroundAtom,Double>(scores.length * 2);
+		for(int i = 0; i < scores.length; i++){
+			varScores.put(reasonerState.getVariableAtom(i), scores[i]);
+		}
+		return varScores;
+	}
+	
+	/**
+	 * Scores the variables of the state with the configured scoring method in
+	 * one pass over the state's terms, split among {@link #NUM_THREADS} threads.
+	 * 
+	 * @return the score of each variable, by its index in the state
+	 */
+	public double[] scoreVariablesByIndex(){
+		log.info("Using "+score_method+" score_method to activate variables");
+		ScoringMethod method = ScoringMethod.parse(score_method);
+		if(method == null){
+			log.warn("No supported scoring method found! Using simple");
+			method = ScoringMethod.parse("simple");
+		}
+		
+		final double[] scores = new double[reasonerState.getNumVariables()];
+		if(method.source == Source.FEATURES){
+			scoreVariablesFeaturePrinter();
+		} else if(method.source == Source.RANDOM){
+			Random rnd = new Random();
+			for(int i = 0; i < scores.length; i++){
+				scores[i] = rnd.nextDouble();
+			}
+		} else {
+			final ScoringMethod m = method;
+			final double[] termScores = (method.source == Source.UNSATISFIED) ? scoreTerms(method.weighted) : null;
+			final boolean trace = log.isTraceEnabled();
+			forEachRange(scores.length, new Range() {
+				@Override
+				void run(int start, int end) {
+					for(int i = start; i < end; i++){
+						scores[i] = scoreVariable(i, m, termScores);
+						if(trace){ log.trace(describeVariable(i, m, termScores, scores[i])); }
+					}
+				}
+			});
+		}
+		
+		if(invert){
+			log.info("Inverting scores");
+			invertScores(scores);
+		}
+		if(print_scores){
+			System.out.println("==SCORES==");
+			for(int i = 0; i < scores.length; i++){
+				System.out.println(reasonerState.getVariableAtom(i).toString()+"\t"+formatDouble(scores[i]));
+			}
+		}
+		return scores;
+	}
+	
+	/**
+	 * @return the score of variable i, aggregated over the locations of its copies
+	 */
+	private double scoreVariable(int i, ScoringMethod method, double[] termScores){
+		ADMMReasonerState.Structure structure = reasonerState.structure;
+		if(method.source == Source.TRUTH_VALUE){
+			return 1-Math.abs(.5-structure.variableAtoms[i].getValue());
+		}
+		
+		double maxScore = -1;
+		double totScore = 0;
+		double maxWeight = -1;
+		int start = structure.varLocStart[i];
+		int end = structure.varLocStart[i+1];
+		for(int k = start; k < end; k++){
+			int t = structure.varLocTerms[k];
+			ADMMObjectiveTerm term = structure.terms[t];
+			double score;
+			if(method.source == Source.UNSATISFIED){
+				score = termScores[t];
+				if(Double.isNaN(score)){ continue; }
+			} else {
+				double lm = Math.abs(reasonerState.getLagrangeMultiplier(k));
+				if(method.source == Source.SIMPLE){
+					if(term instanceof WeightedObjectiveTerm && ((WeightedObjectiveTerm)term).getWeight() > maxWeight){
+						maxWeight = ((WeightedObjectiveTerm)term).getWeight();
+					}
+					score = lm;
+				} else if(!method.weighted){
+					score = lm;
+				} else if(term instanceof WeightedObjectiveTerm){
+					score = ((WeightedObjectiveTerm)term).getWeight()*lm;
+				} else {
+					score = this.constraint_weight*lm;
+				}
+			}
+			if(maxScore < score){ maxScore = score; }
+			totScore += score;
+		}
+		
+		if(method.source == Source.SIMPLE){
+			if(maxWeight < 0){ maxWeight = 0; }
+			return lagrangeCoeff * totScore + weightCoeff * maxWeight;
+		}
+		switch(method.aggregate){
+		case TOT:
+			return totScore;
+		case AVG:
+			return totScore/(double)(end - start);
+		default:
+			return maxScore;
+		}
+	}
+	
+	/**
+	 * Evaluates the incompatibility or infeasibility of each term's ground
+	 * kernel once, for the variables in it to share.
+	 * 
+	 * @return the score of each term, or NaN if its kernel has none
+	 */
+	private double[] scoreTerms(final boolean weighted){
+		final GroundKernel[] kernels = reasonerState.structure.kernels;
+		final double[] termScores = new double[kernels.length];
+		forEachRange(kernels.length, new Range() {
+			@Override
+			void run(int start, int end) {
+				/* Scratch space for the summands of linear kernels */
+				GroundAtom[] atoms = new GroundAtom[8];
+				double[] coeffs = new double[8];
+				for(int t = start; t < end; t++){
+					GroundKernel kernel = kernels[t];
+					if(kernel instanceof LinearGroundCompatibilityKernel){
+						LinearGroundCompatibilityKernel gck = (LinearGroundCompatibilityKernel)kernel;
+						if(gck.getNumLinearSummands() > atoms.length){
+							atoms = new GroundAtom[gck.getNumLinearSummands()];
+							coeffs = new double[atoms.length];
+						}
+						double incompatibility = getIncompatibility(gck, atoms, coeffs);
+						termScores[t] = weighted ? gck.getWeight().getWeight()*incompatibility : incompatibility;
+					} else if(kernel instanceof GroundCompatibilityKernel){
+						GroundCompatibilityKernel gck = (GroundCompatibilityKernel)kernel;
+						double incompatibility = gck.getIncompatibility();
+						termScores[t] = weighted ? gck.getWeight().getWeight()*incompatibility : incompatibility;
+					} else if(kernel instanceof GroundConstraintKernel){
+						double infeasibility = ((GroundConstraintKernel)kernel).getInfeasibility();
+						termScores[t] = weighted ? constraint_weight*infeasibility : infeasibility;
+					} else {
+						termScores[t] = Double.NaN;
+					}
+				}
+			}
+		});
+		return termScores;
+	}
+	
+	/**
+	 * Computes the incompatibility of a kernel from its linear summands
+	 * instead of its function definition
+	 */
+	private static double getIncompatibility(LinearGroundCompatibilityKernel gck, GroundAtom[] atoms, double[] coeffs){
+		double value = gck.getLinearSummands(atoms, coeffs);
+		for(int i = 0; i < gck.getNumLinearSummands(); i++){
+			value += coeffs[i] * atoms[i].getValue();
+			atoms[i] = null;
+		}
+		if(gck.isHinge()){ value = Math.max(value, 0.0); }
+		return gck.isSquared() ? value * value : value;
+	}
+	
+	/**
+	 * Builds the trace message for the score of variable i
+	 */
+	private String describeVariable(int i, ScoringMethod method, double[] termScores, double score){
+		ADMMReasonerState.Structure structure = reasonerState.structure;
+		GroundAtom var = structure.variableAtoms[i];
+		StringBuilder debugStr = new StringBuilder();
+		debugStr.append("Atom ").append(var).append(" with value ").append(formatDouble(var.getValue()));
+		if(method.source != Source.TRUTH_VALUE){
+			int start = structure.varLocStart[i];
+			int end = structure.varLocStart[i+1];
+			debugStr.append(" has ").append(end - start).append(" terms: ");
+			for(int k = start; k < end; k++){
+				int t = structure.varLocTerms[k];
+				ADMMObjectiveTerm term = structure.terms[t];
+				if(method.source == Source.UNSATISFIED){
+					debugStr.append(formatDouble(termScores[t]));
+				} else {
+					debugStr.append(formatDouble(reasonerState.getLagrangeMultiplier(k)));
+					if(method.weighted || method.source == Source.SIMPLE){
+						debugStr.append("*").append((term instanceof WeightedObjectiveTerm)
+								? formatDouble(((WeightedObjectiveTerm)term).getWeight()) : "C");
+					}
+				}
+				debugStr.append(", ");
+			}
+		}
+		debugStr.append("with final score ").append(formatDouble(score));
+		return debugStr.toString();
+	}
+	
+	private void invertScores(double[] scores){
+		int negative = 0;
+		for(int i = 0; i < scores.length; i++){
 			//note, for values below 0, we could simply do -1*val to get a consistent ordering that is positive
-			if(varScore.getValue()<0){
-				invScores.put(varScore.getKey(), -1*varScore.getValue());
-				log.warn("Score less than zero - inverse may produce unexpected results!"); 
+			if(scores[i] < 0){
+				scores[i] = -1*scores[i];
+				negative++;
 			} else {
 				//note - adding 0.01 to smooth scores close to 0
-				invScores.put(varScore.getKey(), 1/(varScore.getValue()+0.01));
+				scores[i] = 1/(scores[i]+0.01);
 			}
 		}
-		return invScores;
+		if(negative > 0){
+			log.warn(negative+" scores less than zero - inverse may produce unexpected results!");
+		}
 	}
 	
-	private Map<GroundAtom,Double> printScores(Map<GroundAtom,Double> varScores){
-		if(print_scores){
-			System.out.println("==SCORES==");
-			for(GroundAtom ga : varScores.keySet()){						
-				System.out.println(ga.toString()+"\t"+formatDouble(varScores.get(ga)));
+	/**
+	 * Runs body over [0, size), split into contiguous ranges among
+	 * {@link #NUM_THREADS} threads of the {@link ThreadPool}.
+	 */
+	private void forEachRange(int size, final Range body){
+		int numTasks = Math.min(numThreads, size / MIN_RANGE_SIZE);
+		if(numTasks <= 1){
+			body.run(0, size);
+			return;
+		}
+		
+		List<Future<?>> futures = new ArrayList<Future<?>>(numTasks);
+		int rangeSize = (size + numTasks - 1) / numTasks;
+		for(int start = 0; start < size; start += rangeSize){
+			final int rangeStart = start;
+			final int rangeEnd = Math.min(size, start + rangeSize);
+			futures.add(ThreadPool.getPool().submit(new Runnable() {
+				@Override
+				public void run() {
+					body.run(rangeStart, rangeEnd);
+				}
+			}));
+		}
+		try {
+			for(Future<?> future : futures){
+				future.get();
 			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
-		return varScores;
 	}
 	
-	public Map<GroundAtom,Double> scoreVariables(){
-		if(invert){
-			log.info("Inverting score map");
-			return printScores(invertScores(scoreVariablesInternal()));
-		} else {
-			return printScores(scoreVariablesInternal());
-		}
+	/** Fewest variables or terms worth giving to another thread */
+	private static final int MIN_RANGE_SIZE = 1000;
+	
+	/** Work on a range of variables or terms, safe to run on several ranges at once */
+	private abstract static class Range {
+		abstract void run(int start, int end);
 	}
-	private Map<GroundAtom,Double> scoreVariablesInternal(){
-		log.info("Using "+score_method+" score_method to activate variables");
-		if(score_method.equals("ruleweighted")){
-			return scoreVariablesRuleWeighted("tot");
-		} else if(score_method.equals("ruleweightedscaled")){
-			return scoreVariablesRuleWeighted("avg");
-		} else if(score_method.equals("ruleweightedmax")){
-			return scoreVariablesRuleWeighted("max");
-		} else if(score_method.equals("truthvalue")){
-			return scoreVariablesTruthValue();
-		} else if(score_method.equals("random")){
-			return scoreVariablesRandom();
-		} else if(score_method.equals("wtlagrangemax")){
-			return scoreVariablesLagrange("max",true);
-		} else if(score_method.equals("wtlagrangeavg")){
-			return scoreVariablesLagrange("avg",true);
-		} else if(score_method.equals("wtlagrangetot")){
-			return scoreVariablesLagrange("tot",true);
-		} else if(score_method.equals("lagrangemax")){
-			return scoreVariablesLagrange("max",false);
-		} else if(score_method.equals("lagrangeavg")){
-			return scoreVariablesLagrange("avg",false);
-		} else if(score_method.equals("lagrangetot")){
-			return scoreVariablesLagrange("tot",false);
-		} else if(score_method.equals("unsatisfiedmax")){
-			return scoreVariablesUnsatisfied("max",false);
-		} else if(score_method.equals("unsatisfiedavg")){
-			return scoreVariablesUnsatisfied("avg",false);
-		} else if(score_method.equals("unsatisfiedtot")){
-			return scoreVariablesUnsatisfied("tot",false);
-		} else if(score_method.equals("wtunsatisfiedmax")){
-			return scoreVariablesUnsatisfied("max", true);
-		} else if(score_method.equals("wtunsatisfiedavg")){
-			return scoreVariablesUnsatisfied("avg", true);
-		} else if(score_method.equals("wtunsatisfiedtot")){
-			return scoreVariablesUnsatisfied("tot", true);
-		} else if(score_method.equals("simple")) {
-			return scoreVariablesSimple();
-		} else if(score_method.equals("printfeatures")) {
-			return scoreVariablesFeaturePrinter();
-		} else {
-			log.warn("No supported scoring method found! Using simple");
-			return scoreVariablesSimple();
+	
+	private enum Source { SIMPLE, TRUTH_VALUE, RANDOM, LAGRANGE, UNSATISFIED, FEATURES }
+	
+	private enum Aggregate { MAX, TOT, AVG }
+	
+	/**
+	 * A value of {@link #SCORING_METHOD}: what is scored, whether it is
+	 * weighted, and how the scores of a variable's terms are combined.
+	 */
+	private static class ScoringMethod {
+		final Source source;
+		final boolean weighted;
+		final Aggregate aggregate;
+		
+		private ScoringMethod(Source source, boolean weighted, Aggregate aggregate) {
+			this.source = source;
+			this.weighted = weighted;
+			this.aggregate = aggregate;
+		}
+		
+		/**
+		 * @return the method, or null if name is not a supported method
+		 */
+		static ScoringMethod parse(String name){
+			if(name.equals("simple")){
+				return new ScoringMethod(Source.SIMPLE, false, Aggregate.TOT);
+			} else if(name.equals("truthvalue")){
+				return new ScoringMethod(Source.TRUTH_VALUE, false, Aggregate.MAX);
+			} else if(name.equals("random")){
+				return new ScoringMethod(Source.RANDOM, false, Aggregate.MAX);
+			} else if(name.equals("printfeatures")){
+				return new ScoringMethod(Source.FEATURES, false, Aggregate.MAX);
+			} else if(name.equals("ruleweighted")){
+				return new ScoringMethod(Source.LAGRANGE, true, Aggregate.TOT);
+			} else if(name.equals("ruleweightedscaled")){
+				return new ScoringMethod(Source.LAGRANGE, true, Aggregate.AVG);
+			} else if(name.equals("ruleweightedmax")){
+				return new ScoringMethod(Source.LAGRANGE, true, Aggregate.MAX);
+			}
+			
+			/* [wt]{lagrange,unsatisfied}{max,avg,tot} */
+			boolean weighted = name.startsWith("wt");
+			String rest = weighted ? name.substring(2) : name;
+			Source source;
+			if(rest.startsWith("lagrange")){
+				source = Source.LAGRANGE;
+				rest = rest.substring("lagrange".length());
+			} else if(rest.startsWith("unsatisfied")){
+				source = Source.UNSATISFIED;
+				rest = rest.substring("unsatisfied".length());
+			} else {
+				return null;
+			}
+			if(rest.equals("max")){
+				return new ScoringMethod(source, weighted, Aggregate.MAX);
+			} else if(rest.equals("avg")){
+				return new ScoringMethod(source, weighted, Aggregate.AVG);
+			} else if(rest.equals("tot")){
+				return new ScoringMethod(source, weighted, Aggregate.TOT);
+			}
+			return null;
 		}
 	}
 }
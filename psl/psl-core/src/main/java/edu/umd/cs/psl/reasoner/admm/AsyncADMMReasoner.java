@@ -0,0 +1,337 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+import edu.umd.cs.psl.util.concurrent.ThreadPool;
+
+/**
+ * Uses an asynchronous ADMM optimization method to optimize its GroundKernels.
+ * <p>
+ * Each thread repeatedly solves its share of the terms and then updates its
+ * share of the consensus vector without waiting for the other threads. Threads
+ * read the local and consensus variables owned by other threads without
+ * synchronization, so they may see values from an earlier sweep.
+ * <p>
+ * Once every thread has completed another {@link ADMMReasoner#STOP_CHECK_KEY}
+ * sweeps, the calling thread estimates the primal and dual residuals from a fixed
+ * sample of the consensus variables and stops the threads once the estimates
+ * meet the same stopping criteria as {@link ADMMReasoner}. Small samples can
+ * stop the threads early, particularly when there are more threads than
+ * processors, since the sampled variables may settle before the ones coupling
+ * the threads' shares of the model do. A deadline set with
+ * {@link #setDeadline(long)} stops the threads with their current state,
+ * since the consensus vector is never consistent enough to keep a copy.
+ * <p>
+ * Terms and consensus variables are divided among threads as by
+ * {@link ADMMReasoner}, except that {@link SchedulingType#DYNAMIC} is treated
+ * as {@link SchedulingType#STATIC}. The step size is not adapted and the
+ * updates are neither relaxed nor accelerated, since the threads never wait
+ * for each other. The constructor logs a warning if any of these options is
+ * set.
+ */
+public class AsyncADMMReasoner extends ADMMReasoner {
+
+	private static final Logger log = LoggerFactory.getLogger(AsyncADMMReasoner.class);
+
+	/**
+	 * Prefix of property keys used by this class.
+	 *
+	 * @see ConfigManager
+	 */
+	public static final String CONFIG_PREFIX = "asyncadmmreasoner";
+
+	/**
+	 * Key for positive integer property. The maximum number of consensus
+	 * variables sampled to estimate the residuals.
+	 */
+	public static final String SAMPLE_SIZE_KEY = CONFIG_PREFIX + ".samplesize";
+	/** Default value for SAMPLE_SIZE_KEY property */
+	public static final int SAMPLE_SIZE_DEFAULT = 10000;
+
+	/**
+	 * Key for int property. Seed for choosing the sampled consensus variables.
+	 */
+	public static final String SEED_KEY = CONFIG_PREFIX + ".seed";
+	/** Default value for SEED_KEY property */
+	public static final int SEED_DEFAULT = 0;
+
+	/* Time the calling thread waits between looking at the progress of the threads */
+	private static final long POLL_MICROSECONDS = 100;
+
+	private final int sampleSize;
+	private final Random rand;
+
+	private volatile boolean stop;
+
+	/* Residuals and stopping criteria estimated at the last check */
+	private double primalRes, dualRes, epsilonPrimal, epsilonDual;
+
+	public AsyncADMMReasoner(ConfigBundle config) {
+		super(config);
+		sampleSize = config.getInt(SAMPLE_SIZE_KEY, SAMPLE_SIZE_DEFAULT);
+		if (sampleSize <= 0)
+			throw new IllegalArgumentException("Property " + SAMPLE_SIZE_KEY + " must be positive.");
+		rand = new Random(config.getInt(SEED_KEY, SEED_DEFAULT));
+		
+		if (config.getBoolean(ADAPTIVE_STEP_SIZE_KEY, ADAPTIVE_STEP_SIZE_DEFAULT))
+			log.warn("Ignoring {}. The step size is not adapted asynchronously.", ADAPTIVE_STEP_SIZE_KEY);
+		if (config.getDouble(RELAXATION_KEY, RELAXATION_DEFAULT) != RELAXATION_DEFAULT)
+			log.warn("Ignoring {}. Updates are not relaxed asynchronously.", RELAXATION_KEY);
+		if (config.getBoolean(ACCELERATED_KEY, ACCELERATED_DEFAULT))
+			log.warn("Ignoring {}. Updates are not accelerated asynchronously.", ACCELERATED_KEY);
+		if (config.getEnum(SCHEDULING_KEY, SCHEDULING_DEFAULT) == SchedulingType.DYNAMIC)
+			log.warn("Treating {} {} as {}.", new Object[] {SCHEDULING_KEY, SchedulingType.DYNAMIC, SchedulingType.STATIC});
+	}
+
+	private class AsyncTask implements Runnable {
+		private final int termStart, termEnd;
+		private final int zStart, zEnd;
+		private final CountDownLatch done;
+
+		/* Number of completed sweeps, read by the calling thread */
+		private volatile int sweeps;
+
+		private AsyncTask(int index, CountDownLatch done) {
+			this.termStart = termBounds[index];
+			this.termEnd = termBounds[index+1];
+			this.zStart = zBounds[index];
+			this.zEnd = zBounds[index+1];
+			this.done = done;
+			this.sweeps = 0;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!stop && sweeps < maxIter) {
+					for (int i = termStart; i < termEnd; i++)
+						terms.get(i).updateLagrange().minimize();
+
+					for (int i = zStart; i < zEnd; i++) {
+						int locStart = varLocStart[i];
+						int locEnd = varLocStart[i+1];
+						if (locStart == locEnd)
+							continue;
+						double total = 0.0;
+						for (int k = locStart; k < locEnd; k++) {
+							ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+							total += term.x[varLocIndices[k]] + term.y[varLocIndices[k]] / stepSize;
+						}
+						double newZ = total / (locEnd - locStart);
+						if (newZ < lb[i])
+							newZ = lb[i];
+						else if (newZ > ub[i])
+							newZ = ub[i];
+						z[i] = newZ;
+					}
+
+					sweeps++;
+				}
+			}
+			finally {
+				done.countDown();
+			}
+		}
+	}
+
+	@Override
+	protected int iterate() {
+		partitionWork();
+
+		/* Chooses the consensus variables used to estimate the residuals */
+		int[] sample = sampleVariables();
+		double[] sampleZ = new double[sample.length];
+		long sampleCopies = 0;
+		for (int s = 0; s < sample.length; s++) {
+			sampleZ[s] = z[sample[s]];
+			sampleCopies += varLocStart[sample[s]+1] - varLocStart[sample[s]];
+		}
+		double scale = (sampleCopies > 0) ? (double) n / sampleCopies : 1.0;
+
+		/* Starts up the computation threads */
+		stop = false;
+		AsyncTask[] tasks = new AsyncTask[numThreads];
+		CountDownLatch done = new CountDownLatch(numThreads);
+		ThreadPool threadPool = ThreadPool.getPool();
+		for (int i = 0; i < numThreads; i++) {
+			tasks[i] = new AsyncTask(i, done);
+			threadPool.submit(tasks[i]);
+		}
+
+		/* Checks the stopping criteria as the threads progress */
+		primalRes = Double.POSITIVE_INFINITY;
+		dualRes = Double.POSITIVE_INFINITY;
+		int[] lastCheck = new int[numThreads];
+		int nextLog = 0;
+		boolean finished = false;
+		lastDeadlineReached = false;
+		while (!finished) {
+			try {
+				finished = done.await(POLL_MICROSECONDS, TimeUnit.MICROSECONDS);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			
+			/* The threads update z concurrently, so the current state is kept */
+			if (!finished && isPastDeadline()) {
+				lastDeadlineReached = true;
+				break;
+			}
+
+			int progress = getProgress(tasks, lastCheck);
+			if (!finished && progress >= stopCheck) {
+				estimateResiduals(sample, sampleZ, progress, scale);
+				for (int i = 0; i < numThreads; i++)
+					lastCheck[i] = tasks[i].sweeps;
+
+				int sweeps = getIterations(tasks);
+				if (sweeps >= nextLog) {
+					log.debug("Residuals at iter {} -- Primal: {} -- Dual: {}", new Object[] {sweeps, primalRes, dualRes});
+					log.trace("--------- Epsilon primal: {} -- Epsilon dual: {}", epsilonPrimal, epsilonDual);
+					nextLog = sweeps + 50 * stopCheck;
+				}
+
+				if (primalRes <= epsilonPrimal && dualRes <= epsilonDual)
+					break;
+			}
+		}
+
+		/* Stops the threads and waits for them to finish their sweeps */
+		stop = true;
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		int progress = getProgress(tasks, lastCheck);
+		if (progress > 0)
+			estimateResiduals(sample, sampleZ, progress, scale);
+		
+		int iter = getIterations(tasks);
+
+		lastPrimalRes = primalRes;
+		lastDualRes = dualRes;
+		lastIterations = iter;
+		return iter;
+	}
+
+	/**
+	 * @return the fewest sweeps completed by any thread
+	 */
+	private int getIterations(AsyncTask[] tasks) {
+		int sweeps = Integer.MAX_VALUE;
+		for (AsyncTask task : tasks)
+			sweeps = Math.min(sweeps, task.sweeps);
+		return sweeps;
+	}
+
+	/**
+	 * Returns the number of sweeps every thread has completed since the last
+	 * check. Checking convergence only after all threads have progressed keeps
+	 * the variables of a thread that is not running from looking converged
+	 * because they stopped changing.
+	 * 
+	 * @param lastCheck  the sweeps completed by each thread at the last check
+	 * @return the fewest sweeps completed by any thread since the last check
+	 */
+	private int getProgress(AsyncTask[] tasks, int[] lastCheck) {
+		int progress = Integer.MAX_VALUE;
+		for (int i = 0; i < tasks.length; i++)
+			progress = Math.min(progress, tasks[i].sweeps - lastCheck[i]);
+		return progress;
+	}
+
+	/**
+	 * Chooses up to sampleSize distinct consensus variables uniformly at
+	 * random.
+	 */
+	private int[] sampleVariables() {
+		int[] indices = new int[z.length];
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = i;
+		int size = Math.min(sampleSize, z.length);
+
+		/* Partial Fisher-Yates shuffle */
+		if (size < z.length) {
+			for (int i = 0; i < size; i++) {
+				int j = i + rand.nextInt(indices.length - i);
+				int temp = indices[i];
+				indices[i] = indices[j];
+				indices[j] = temp;
+			}
+		}
+
+		int[] sample = new int[size];
+		System.arraycopy(indices, 0, sample, 0, size);
+		return sample;
+	}
+
+	/**
+	 * Estimates the residuals and stopping criteria from the sampled
+	 * consensus variables and their local copies, scaling the sampled sums up
+	 * to all local variables.
+	 * <p>
+	 * Since the threads are not synchronized, the change in each sampled
+	 * consensus variable is averaged over the sweeps since the last check to
+	 * estimate the dual residual of one sweep.
+	 *
+	 * @param sampleZ  the values of the sampled variables at the last check,
+	 *                 updated to their current values
+	 */
+	private void estimateResiduals(int[] sample, double[] sampleZ, int sweeps, double scale) {
+		double primal = 0.0, dual = 0.0;
+		double AxNorm = 0.0, BzNorm = 0.0, AyNorm = 0.0;
+
+		for (int s = 0; s < sample.length; s++) {
+			int i = sample[s];
+			double zi = z[i];
+			int locStart = varLocStart[i];
+			int locEnd = varLocStart[i+1];
+			for (int k = locStart; k < locEnd; k++) {
+				ADMMObjectiveTerm term = terms.get(varLocTerms[k]);
+				double x = term.x[varLocIndices[k]];
+				double y = term.y[varLocIndices[k]];
+				primal += (x - zi) * (x - zi);
+				AxNorm += x * x;
+				AyNorm += y * y;
+			}
+
+			double diff = (zi - sampleZ[s]) / sweeps;
+			dual += diff * diff * (locEnd - locStart);
+			BzNorm += zi * zi * (locEnd - locStart);
+			sampleZ[s] = zi;
+		}
+
+		primalRes = Math.sqrt(primal * scale);
+		dualRes = stepSize * Math.sqrt(dual * scale);
+
+		double epsilonAbsTerm = Math.sqrt(n) * epsilonAbs;
+		epsilonPrimal = epsilonAbsTerm + epsilonRel * Math.max(Math.sqrt(AxNorm * scale), Math.sqrt(BzNorm * scale));
+		epsilonDual = epsilonAbsTerm + epsilonRel * Math.sqrt(AyNorm * scale);
+	}
+
+}
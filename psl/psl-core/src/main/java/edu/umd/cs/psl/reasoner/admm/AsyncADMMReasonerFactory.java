@@ -0,0 +1,34 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.reasoner.Reasoner;
+import edu.umd.cs.psl.reasoner.ReasonerFactory;
+
+/**
+ * Factory for an {@link AsyncADMMReasoner}.
+ */
+public class AsyncADMMReasonerFactory implements ReasonerFactory {
+
+	@Override
+	public Reasoner getReasoner(ConfigBundle config)
+			throws ClassNotFoundException, IllegalAccessException, InstantiationException {
+		return new AsyncADMMReasoner(config);
+	}
+
+}
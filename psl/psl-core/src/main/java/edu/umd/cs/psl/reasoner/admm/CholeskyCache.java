@@ -0,0 +1,264 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecomposition;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+
+/**
+ * Bounded, thread-safe cache of the Cholesky factors of the systems solved by
+ * {@link SquaredHyperplaneTerm SquaredHyperplaneTerms}, shared by all
+ * {@link ADMMReasoner ADMMReasoners}.
+ * <p>
+ * The system of a term is 2 * weight * coeffs * coeffs^T + stepSize * I, so
+ * the factors are keyed on the coefficients, weight, and step size. The
+ * coefficients are scaled so that the first is positive and the largest has
+ * magnitude one, with the weight scaled to compensate, so terms with the same
+ * system up to that scaling share a factor.
+ * <p>
+ * Entries are divided among stripes by key, each of which evicts its least
+ * recently used entries when full, so threads rarely wait on each other.
+ */
+public class CholeskyCache {
+
+	/**
+	 * Prefix of property keys used by this class.
+	 * 
+	 * @see ConfigManager
+	 */
+	public static final String CONFIG_PREFIX = "choleskycache";
+	
+	/**
+	 * Key for positive integer property. The maximum number of cached
+	 * factors. Read only by {@link #configure(ConfigBundle)}.
+	 */
+	public static final String CAPACITY_KEY = CONFIG_PREFIX + ".capacity";
+	/** Default value for CAPACITY_KEY property */
+	public static final int CAPACITY_DEFAULT = 10000;
+
+	private static final int NUM_STRIPES = 16;
+
+	private static final CholeskyCache cache = new CholeskyCache(CAPACITY_DEFAULT);
+
+	/**
+	 * @return the cache shared by all terms
+	 */
+	public static CholeskyCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the capacity of the shared cache from a ConfigBundle. Since the
+	 * cache is shared by all reasoners in the JVM, applications should call
+	 * this once, before inference, rather than per reasoner.
+	 *
+	 * @throws IllegalArgumentException  if CAPACITY_KEY is not positive
+	 */
+	public static void configure(ConfigBundle config) {
+		int capacity = config.getInt(CAPACITY_KEY, CAPACITY_DEFAULT);
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Property " + CAPACITY_KEY + " must be positive.");
+		cache.setCapacity(capacity);
+	}
+
+	private final Stripe[] stripes;
+	private volatile int stripeCapacity;
+	private final AtomicLong hits, misses, evictions;
+
+	CholeskyCache(int capacity) {
+		stripes = new Stripe[NUM_STRIPES];
+		for (int i = 0; i < stripes.length; i++)
+			stripes[i] = new Stripe();
+		setCapacity(capacity);
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+	}
+
+	/**
+	 * Sets the maximum number of cached factors. If the cache holds more,
+	 * the extra entries are evicted as new ones are added.
+	 *
+	 * @param capacity  the maximum number of factors, rounded up to a multiple
+	 *                  of the number of stripes
+	 * @throws IllegalArgumentException  if capacity is not positive
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		stripeCapacity = (capacity + NUM_STRIPES - 1) / NUM_STRIPES;
+	}
+
+	/**
+	 * Returns the lower triangular Cholesky factor of
+	 * 2 * weight * coeffs * coeffs^T + stepSize * I, computing it if it is not
+	 * cached. The returned matrix is shared and must not be modified.
+	 *
+	 * @param coeffs  array containing the coefficients
+	 * @param start  index of the first coefficient in coeffs
+	 * @param size  number of coefficients
+	 */
+	DoubleMatrix2D getL(double[] coeffs, int start, int size, double weight, double stepSize) {
+		Key key = new Key(coeffs, start, size, weight, stepSize);
+		int hash = key.hashCode();
+		Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (NUM_STRIPES - 1)];
+
+		DoubleMatrix2D L;
+		synchronized (stripe) {
+			L = stripe.map.get(key);
+		}
+		if (L != null) {
+			hits.incrementAndGet();
+			return L;
+		}
+
+		/* Factors outside the lock, possibly at the same time as another thread */
+		misses.incrementAndGet();
+		L = key.factor();
+		synchronized (stripe) {
+			stripe.map.put(key, L);
+			Iterator<Key> itr = stripe.map.keySet().iterator();
+			while (stripe.map.size() > stripeCapacity) {
+				itr.next();
+				itr.remove();
+				evictions.incrementAndGet();
+			}
+		}
+		return L;
+	}
+
+	/**
+	 * @return the number of requested factors that were cached
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requested factors that had to be computed
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of factors removed to stay within capacity
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of cached factors
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				size += stripe.map.size();
+			}
+		return size;
+	}
+
+	/**
+	 * Removes all factors and resets the counters.
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes)
+			synchronized (stripe) {
+				stripe.map.clear();
+			}
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+
+	private static class Stripe {
+		/* Iterates from least to most recently used */
+		private final LinkedHashMap<Key, DoubleMatrix2D> map =
+				new LinkedHashMap<Key, DoubleMatrix2D>(16, 0.75f, true);
+	}
+
+	private static class Key {
+		private final double[] coeffs;
+		private final double weight;
+		private final double stepSize;
+		private final int hashcode;
+
+		private Key(double[] coeffs, int start, int size, double weight, double stepSize) {
+			double scale = 0.0;
+			for (int i = start; i < start + size; i++)
+				scale = Math.max(scale, Math.abs(coeffs[i]));
+			if (scale == 0.0)
+				scale = 1.0;
+			else if (coeffs[start] < 0)
+				scale = -scale;
+
+			this.coeffs = new double[size];
+			for (int i = 0; i < size; i++)
+				this.coeffs[i] = coeffs[start + i] / scale;
+			this.weight = weight * scale * scale;
+			this.stepSize = stepSize;
+
+			int hash = Arrays.hashCode(this.coeffs);
+			long bits = Double.doubleToLongBits(this.weight);
+			hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+			bits = Double.doubleToLongBits(stepSize);
+			hashcode = 31 * hash + (int) (bits ^ (bits >>> 32));
+		}
+
+		private DoubleMatrix2D factor() {
+			int size = coeffs.length;
+			DenseDoubleMatrix2D matrix = new DenseDoubleMatrix2D(size, size);
+			for (int i = 0; i < size; i++) {
+				matrix.setQuick(i, i, 2 * weight * coeffs[i] * coeffs[i] + stepSize);
+				for (int j = 0; j < i; j++) {
+					double coeff = 2 * weight * coeffs[i] * coeffs[j];
+					matrix.setQuick(i, j, coeff);
+					matrix.setQuick(j, i, coeff);
+				}
+			}
+			return new DenseDoubleCholeskyDecomposition(matrix).getL();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashcode;
+		}
+
+		@Override
+		public boolean equals(Object oth) {
+			if (oth == this)
+				return true;
+			if (!(oth instanceof Key))
+				return false;
+			Key other = (Key) oth;
+			return hashcode == other.hashcode
+					&& Double.doubleToLongBits(weight) == Double.doubleToLongBits(other.weight)
+					&& Double.doubleToLongBits(stepSize) == Double.doubleToLongBits(other.stepSize)
+					&& Arrays.equals(coeffs, other.coeffs);
+		}
+	}
+}
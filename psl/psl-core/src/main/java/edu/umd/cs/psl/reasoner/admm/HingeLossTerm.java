@@ -51,8 +51,8 @@ class HingeLossTerm extends HyperplaneTerm implements WeightedObjectiveTerm {
 		 * Minimizes without the linear loss, i.e., solves
 		 * argmin stepSize/2 * \|x - z + y / stepSize \|_2^2
 		 */
-		for (int i = 0; i < x.length; i++) {
-			x[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+		for (int i = start; i < start + size; i++) {
+			x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 			total += coeffs[i] * x[i];
 		}
 		
@@ -66,8 +66,8 @@ class HingeLossTerm extends HyperplaneTerm implements WeightedObjectiveTerm {
 		 * argmin weight * coeffs^T * x + stepSize/2 * \|x - z + y / stepSize \|_2^2
 		 */
 		total = 0.0;
-		for (int i = 0; i < x.length; i++) {
-			x[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+		for (int i = start; i < start + size; i++) {
+			x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 			x[i] -= weight * coeffs[i] / reasoner.stepSize;
 			total += coeffs[i] * x[i];
 		}
@@ -35,10 +35,10 @@ abstract class HyperplaneTerm extends ADMMObjectiveTerm {
 	HyperplaneTerm(ADMMReasoner reasoner, int[] zIndices, double[] coeffs, double constant) {
 		super(reasoner, zIndices);
 		
-		this.coeffs = coeffs;
+		this.coeffs = packCoefficients(coeffs);
 		this.constant = constant;
 		
-		if (x.length >= 3) {
+		if (size >= 3) {
 			/* 
 			 * Finds a unit vector normal to the hyperplane and a point in the
 			 * hyperplane for future projections
@@ -64,29 +64,31 @@ abstract class HyperplaneTerm extends ADMMObjectiveTerm {
 	 * Stores the result in x.
 	 */
 	protected void project() {
-		if (x.length == 1) {
-			x[0] = constant / coeffs[0];
+		if (size == 1) {
+			x[start] = constant / coeffs[start];
 		}
-		else if (x.length == 2) {
-			x[0] = reasoner.stepSize * reasoner.z.get(zIndices[0]) - y[0];
-			x[0] -= reasoner.stepSize * coeffs[0] / coeffs[1] * (-1 * constant / coeffs[1] + reasoner.z.get(zIndices[1]) - y[1]/reasoner.stepSize);
-			x[0] /= reasoner.stepSize * (1 + coeffs[0] * coeffs[0] / coeffs[1] / coeffs[1]);
+		else if (size == 2) {
+			int i0 = start;
+			int i1 = start + 1;
+			x[i0] = reasoner.stepSize * reasoner.z[zIndices[i0]] - y[i0];
+			x[i0] -= reasoner.stepSize * coeffs[i0] / coeffs[i1] * (-1 * constant / coeffs[i1] + reasoner.z[zIndices[i1]] - y[i1]/reasoner.stepSize);
+			x[i0] /= reasoner.stepSize * (1 + coeffs[i0] * coeffs[i0] / coeffs[i1] / coeffs[i1]);
 			
-			x[1] = (constant - coeffs[0] * x[0]) / coeffs[1];
+			x[i1] = (constant - coeffs[i0] * x[i0]) / coeffs[i1];
 		}
 		else {
-			double[] point = new double[x.length];
-			for (int i = 0; i < x.length; i++)
-				point[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+			/* Stores the unconstrained minimizer in x before projecting it */
+			for (int i = start; i < start + size; i++)
+				x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 			
 			/* For point (constant / coeffs[0], 0,...) in hyperplane dotted with unitNormal */
-			double multiplier = -1 * constant / coeffs[0] * unitNormal[0];
+			double multiplier = -1 * constant / coeffs[start] * unitNormal[0];
 			
-			for (int i = 0; i < x.length; i++)
-				multiplier += point[i] * unitNormal[i];
+			for (int i = 0; i < size; i++)
+				multiplier += x[start + i] * unitNormal[i];
 			
-			for (int i = 0; i < x.length; i++)
-				x[i] = point[i] - multiplier * unitNormal[i];
+			for (int i = 0; i < size; i++)
+				x[start + i] -= multiplier * unitNormal[i];
 		}
 	}
 }
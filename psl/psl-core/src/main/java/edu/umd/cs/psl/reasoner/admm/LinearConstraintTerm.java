@@ -50,8 +50,8 @@ class LinearConstraintTerm extends HyperplaneTerm {
 			 * Minimizes without regard for the constraint, i.e., solves
 			 * argmin stepSize/2 * \|x - z + y / stepSize \|_2^2
 			 */
-			for (int i = 0; i < x.length; i++) {
-				x[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+			for (int i = start; i < start + size; i++) {
+				x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 				
 				total += coeffs[i] * x[i];
 			}
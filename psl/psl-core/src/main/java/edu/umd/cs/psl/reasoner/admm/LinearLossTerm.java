@@ -29,7 +29,7 @@ class LinearLossTerm extends ADMMObjectiveTerm implements WeightedObjectiveTerm
 	
 	LinearLossTerm(ADMMReasoner reasoner, int[] zIndices, double[] coeffs, double weight) {
 		super(reasoner, zIndices);
-		this.coeffs = coeffs;
+		this.coeffs = packCoefficients(coeffs);
 		setWeight(weight);
 	}
 
@@ -43,8 +43,8 @@ class LinearLossTerm extends ADMMObjectiveTerm implements WeightedObjectiveTerm
 	
 	@Override
 	protected void minimize() {
-		for (int i = 0; i < x.length; i++) {
-			x[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+		for (int i = start; i < start + size; i++) {
+			x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 			x[i] -= weight * coeffs[i] / reasoner.stepSize;
 		}
 	}
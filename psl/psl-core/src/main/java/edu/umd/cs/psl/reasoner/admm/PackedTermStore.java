@@ -0,0 +1,118 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage for the local variables, Lagrange multipliers, coefficients, and
+ * consensus indices of many {@link ADMMObjectiveTerm ADMMObjectiveTerms}
+ * in a few large arrays.
+ * <p>
+ * Terms are laid out contiguously, in the order they are created, in
+ * {@link Slab Slabs} of a fixed capacity. A term never spans two Slabs, so
+ * each term sees its data as one range of a Slab's arrays. The ranges of
+ * removed terms are not reused, only counted with {@link #release(int)}, so
+ * the owner should replace the store once too much of it is released.
+ */
+class PackedTermStore {
+
+	private final int slabSize;
+	private final List<Slab> slabs;
+	private long released;
+
+	/**
+	 * @param slabSize  the number of local variables each Slab holds
+	 */
+	PackedTermStore(int slabSize) {
+		if (slabSize <= 0)
+			throw new IllegalArgumentException("Slab size must be positive.");
+		this.slabSize = slabSize;
+		slabs = new ArrayList<Slab>();
+		released = 0;
+	}
+
+	/**
+	 * Returns a Slab with room for a term with the given number of local
+	 * variables, creating one if necessary.
+	 */
+	Slab slabFor(int size) {
+		Slab slab = (slabs.isEmpty()) ? null : slabs.get(slabs.size() - 1);
+		if (slab == null || slab.used + size > slab.x.length) {
+			slab = new Slab(Math.max(slabSize, size));
+			slabs.add(slab);
+		}
+		return slab;
+	}
+
+	/**
+	 * @return the total number of local variables stored
+	 */
+	long size() {
+		long size = 0;
+		for (Slab slab : slabs)
+			size += slab.used;
+		return size;
+	}
+
+	/**
+	 * Records that a term with the given number of local variables was
+	 * removed, so its range is no longer used.
+	 */
+	void release(int size) {
+		released += size;
+	}
+
+	/**
+	 * @return the number of stored local variables that belong to removed terms
+	 */
+	long getReleasedSize() {
+		return released;
+	}
+
+	int getNumSlabs() {
+		return slabs.size();
+	}
+
+	static class Slab {
+		final double[] x;
+		final double[] y;
+		final double[] coeffs;
+		final int[] zIndices;
+		private int used;
+
+		private Slab(int capacity) {
+			x = new double[capacity];
+			y = new double[capacity];
+			coeffs = new double[capacity];
+			zIndices = new int[capacity];
+			used = 0;
+		}
+
+		/**
+		 * Reserves a range for a term.
+		 *
+		 * @return the start of the range
+		 */
+		int allocate(int size) {
+			int start = used;
+			used += size;
+			return start;
+		}
+	}
+}
@@ -38,8 +38,8 @@ class SquaredHingeLossTerm extends SquaredHyperplaneTerm {
 		 * Minimizes without the quadratic loss, i.e., solves
 		 * argmin stepSize/2 * \|x - z + y / stepSize \|_2^2
 		 */
-		for (int i = 0; i < x.length; i++) {
-			x[i] = reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize;
+		for (int i = start; i < start + size; i++) {
+			x[i] = reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize;
 			total += coeffs[i] * x[i];
 		}
 		
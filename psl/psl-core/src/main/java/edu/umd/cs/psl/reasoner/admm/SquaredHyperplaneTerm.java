@@ -16,14 +16,7 @@
  */
 package edu.umd.cs.psl.reasoner.admm;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.commons.lang.builder.HashCodeBuilder;
-
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
-import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecomposition;
-import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
 
 /**
  * Objective term for an {@link ADMMReasoner} that is based on a squared
@@ -40,18 +33,18 @@ abstract class SquaredHyperplaneTerm extends ADMMObjectiveTerm implements Weight
 	protected final double constant;
 	protected double weight;
 	private DoubleMatrix2D L;
-	
-	static Map<DenseDoubleMatrix2DWithHashcode, DoubleMatrix2D> lCache = new HashMap<DenseDoubleMatrix2DWithHashcode, DoubleMatrix2D>();
+	/* Step size L was computed for */
+	private double lStepSize;
 	
 	SquaredHyperplaneTerm(ADMMReasoner reasoner, int[] zIndices, double[] coeffs,
 			double constant, double weight) {
 		super(reasoner, zIndices);
 		
-		this.coeffs = coeffs;
+		this.coeffs = packCoefficients(coeffs);
 		this.constant = constant;
 		setWeight(weight);
 		
-		if (x.length >= 3) {
+		if (size >= 3) {
 			computeL();
 		}
 		else
@@ -59,33 +52,14 @@ abstract class SquaredHyperplaneTerm extends ADMMObjectiveTerm implements Weight
 	}
 	
 	private void computeL() {
-		double coeff;
-		DenseDoubleMatrix2DWithHashcode matrix = new DenseDoubleMatrix2DWithHashcode(x.length, x.length);
-		for (int i = 0; i < x.length; i++) {
-			for (int j = 0; j < x.length; j++) {
-				if (i == j) {
-					coeff = 2 * weight * coeffs[i] * coeffs[i] + reasoner.stepSize;
-					matrix.setQuick(i, i, coeff);
-				}
-				else {
-					coeff = 2 * weight * coeffs[i] * coeffs[j];
-					matrix.setQuick(i, j, coeff);
-					matrix.setQuick(j, i, coeff);
-				}
-			}
-		}
-		
-		L = lCache.get(matrix);
-		if (L == null) {
-			L = new DenseDoubleCholeskyDecomposition(matrix).getL();
-			lCache.put(matrix, L);
-		}
+		L = CholeskyCache.getCache().getL(coeffs, start, size, weight, reasoner.stepSize);
+		lStepSize = reasoner.stepSize;
 	}
 	
 	@Override
 	public void setWeight(double weight) {
 		this.weight = weight;
-		if (x.length >= 3)
+		if (size >= 3)
 			computeL();
 	}
 	
@@ -102,72 +76,45 @@ abstract class SquaredHyperplaneTerm extends ADMMObjectiveTerm implements Weight
 	 */
 	protected void minWeightedSquaredHyperplane() {
 		/* Constructs constant term in the gradient (moved to right-hand side) */
-		for (int i = 0; i < x.length; i++) {
-			x[i] = reasoner.stepSize * (reasoner.z.get(zIndices[i]) - y[i] / reasoner.stepSize);
+		for (int i = start; i < start + size; i++) {
+			x[i] = reasoner.stepSize * (reasoner.z[zIndices[i]] - y[i] / reasoner.stepSize);
 			x[i] += 2 * weight * coeffs[i] * constant;
 		}
 		
 		/* Solves for x */
-		if (x.length == 1) {
-			x[0] /= 2 * weight * coeffs[0] * coeffs[0] + reasoner.stepSize;
+		if (size == 1) {
+			x[start] /= 2 * weight * coeffs[start] * coeffs[start] + reasoner.stepSize;
 		}
-		else if (x.length == 2) {
-			double a0 = 2 * weight * coeffs[0] * coeffs[0] + reasoner.stepSize;
-			double b1 = 2 * weight * coeffs[1] * coeffs[1] + reasoner.stepSize;
-			double a1b0 = 2 * weight * coeffs[0] * coeffs[1];
+		else if (size == 2) {
+			int i0 = start;
+			int i1 = start + 1;
+			double a0 = 2 * weight * coeffs[i0] * coeffs[i0] + reasoner.stepSize;
+			double b1 = 2 * weight * coeffs[i1] * coeffs[i1] + reasoner.stepSize;
+			double a1b0 = 2 * weight * coeffs[i0] * coeffs[i1];
 			
-			x[1] -= a1b0 * x[0] / a0;
-			x[1] /= b1 - a1b0 * a1b0 / a0;
+			x[i1] -= a1b0 * x[i0] / a0;
+			x[i1] /= b1 - a1b0 * a1b0 / a0;
 			
-			x[0] -= a1b0 * x[1];
-			x[0] /= a0;
+			x[i0] -= a1b0 * x[i1];
+			x[i0] /= a0;
 		}
 		else {
+			if (lStepSize != reasoner.stepSize)
+				computeL();
+			
 			/* Fast system solve */
-			for (int i = 0; i < x.length; i++) {
+			for (int i = 0; i < size; i++) {
 				for (int j = 0; j < i; j++) {
-					x[i] -= L.getQuick(i, j) * x[j];
+					x[start + i] -= L.getQuick(i, j) * x[start + j];
 				}
-				x[i] /= L.getQuick(i, i);
+				x[start + i] /= L.getQuick(i, i);
 			}
-			for (int i = x.length-1; i >= 0; i--) {
-				for (int j = x.length-1; j > i; j--) {
-					x[i] -= L.getQuick(j, i) * x[j];
+			for (int i = size-1; i >= 0; i--) {
+				for (int j = size-1; j > i; j--) {
+					x[start + i] -= L.getQuick(j, i) * x[start + j];
 				}
-				x[i] /= L.getQuick(i, i);
-			}
-		}
-	}
-	
-	private class DenseDoubleMatrix2DWithHashcode extends DenseDoubleMatrix2D {
-		
-		private static final long serialVersionUID = -8102931034927566306L;
-		private boolean needsNewHashcode;
-		private int hashcode = 0;
-
-		public DenseDoubleMatrix2DWithHashcode(int rows, int columns) {
-			super(rows, columns);
-			needsNewHashcode = true;
-		}
-		
-		@Override
-		public void setQuick(int row, int column, double value) {
-			needsNewHashcode = true;
-			super.setQuick(row, column, value);
-		}
-		
-		@Override
-		public int hashCode() {
-			if (needsNewHashcode) {
-				HashCodeBuilder builder = new HashCodeBuilder();
-				for (int i = 0; i < rows(); i++)
-					for (int j = 0; j < columns(); j++)
-						builder.append(getQuick(i, j));
-				
-				hashcode = builder.toHashCode();
-				needsNewHashcode = false;
+				x[start + i] /= L.getQuick(i, i);
 			}
-			return hashcode;
 		}
 	}
 }
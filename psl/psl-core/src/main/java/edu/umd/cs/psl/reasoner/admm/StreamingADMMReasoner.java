@@ -93,8 +93,8 @@ public class StreamingADMMReasoner extends ADMMReasoner {
 	public void setVariableBounds(AtomFunctionVariable a, double lb, double ub){
 		if(variables.contains(a)){
 			int i = variables.indexOf(a);
-			super.lb.set(i, lb);
-			super.ub.set(i, ub);
+			super.lb[i] = lb;
+			super.ub[i] = ub;
 		}
 	}
 	
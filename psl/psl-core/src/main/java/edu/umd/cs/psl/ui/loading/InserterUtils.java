@@ -41,21 +41,20 @@ public class InserterUtils {
 	
 
 	public static void loadDelimitedData(final Inserter insert, String file, String delimiter) {
-		LoadDelimitedData.loadTabData(file, new DelimitedObjectConstructor<String>(){
+		long start = System.nanoTime();
+		RowCounter counter = new RowCounter(){
 
 			@Override
 			public String create(String[] data) {
 				//assert data.length==length;
 				insert.insert((Object[])data);
+				rows++;
 				return null;
 			}
-
-			@Override
-			public int length() {
-				return 0;
-			}
 			
-		}, delimiter);
+		};
+		LoadDelimitedData.loadTabData(file, counter, delimiter);
+		logLoadRate(file, counter.rows, start);
 	}
 	
 	public static void loadDelimitedData(final Inserter insert, String file) {
@@ -63,7 +62,8 @@ public class InserterUtils {
 	}
 	
 	public static void loadDelimitedDataTruth(final Inserter insert, String file, String delimiter) {
-		LoadDelimitedData.loadTabData(file, new DelimitedObjectConstructor<String>(){
+		long start = System.nanoTime();
+		RowCounter counter = new RowCounter(){
 
 			@Override
 			public String create(String[] data) {
@@ -78,15 +78,31 @@ public class InserterUtils {
 				Object[] newdata = new Object[data.length-1];
 				System.arraycopy(data, 0, newdata, 0, newdata.length);
 				insert.insertValue(truth,newdata);
+				rows++;
 				return null;
 			}
-
-			@Override
-			public int length() {
-				return 0;
-			}
 			
-		}, delimiter);
+		};
+		LoadDelimitedData.loadTabData(file, counter, delimiter);
+		logLoadRate(file, counter.rows, start);
+	}
+	
+	/**
+	 * Reads lines of any length and counts the rows inserted.
+	 */
+	private static abstract class RowCounter implements DelimitedObjectConstructor<String> {
+		long rows = 0;
+		
+		@Override
+		public int length() {
+			return 0;
+		}
+	}
+	
+	private static void logLoadRate(String file, long rows, long start) {
+		long time = System.nanoTime() - start;
+		log.info("Loaded {} rows from {} in {} ms ({} rows/sec)", new Object[] {rows, file,
+				time / 1000000, (time > 0) ? (long) (rows * 1e9 / time) : rows});
 	}
 	
 	public static void loadDelimitedDataTruth(final Inserter insert, String file) {
@@ -124,9 +124,48 @@ public class HashList<E> implements List<E> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Removes the element at the given position, shifting subsequent elements
+	 * down. Takes time linear in the number of subsequent elements, so
+	 * removing the last element is cheapest.
+	 */
 	@Override
 	public E remove(int index) {
-		throw new UnsupportedOperationException();
+		E removed = list.remove(index);
+		boolean first = map.get(removed) == index;
+		if (first)
+			map.remove(removed);
+		
+		for (int i = index; i < list.size(); i++) {
+			E e = list.get(i);
+			Integer mapped = map.get(e);
+			if (mapped != null && mapped == i + 1)
+				map.put(e, i);
+			else if (first && mapped == null && e.equals(removed))
+				map.put(e, i);
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * Removes the element at the given position by moving the last element
+	 * into its place. Takes constant time, but changes the position of the
+	 * last element.
+	 * <p>
+	 * Requires that the list contains no duplicates.
+	 * 
+	 * @return the removed element
+	 */
+	public E swapRemove(int index) {
+		E removed = list.get(index);
+		E last = list.remove(list.size() - 1);
+		map.remove(removed);
+		if (index != list.size()) {
+			list.set(index, last);
+			map.put(last, index);
+		}
+		return removed;
 	}
 
 	@Override
@@ -0,0 +1,163 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * Binary max-heap of the ints 0 through capacity - 1, each with a double
+ * priority, that tracks the position of each int so that its priority can
+ * be changed in O(log n) time.
+ * <p>
+ * Ties between equal priorities are broken by preferring the smaller int.
+ */
+public class IndexedMaxHeap {
+	
+	private final int[] heap;
+	/* Position of each key in heap, or -1 if it is not in the heap */
+	private final int[] positions;
+	private final double[] priorities;
+	private int size;
+	
+	/**
+	 * @param capacity  one more than the largest key
+	 */
+	public IndexedMaxHeap(int capacity) {
+		heap = new int[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		priorities = new double[capacity];
+		size = 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean contains(int key) {
+		return positions[key] != -1;
+	}
+	
+	/**
+	 * @return the priority of key, which must be in the heap
+	 */
+	public double getPriority(int key) {
+		return priorities[key];
+	}
+	
+	/**
+	 * Adds key to the heap with the given priority, or changes its priority
+	 * if it is already in the heap.
+	 */
+	public void put(int key, double priority) {
+		int pos = positions[key];
+		priorities[key] = priority;
+		if (pos == -1) {
+			pos = size++;
+			heap[pos] = key;
+			positions[key] = pos;
+			siftUp(pos);
+		}
+		else {
+			siftUp(pos);
+			siftDown(positions[key]);
+		}
+	}
+	
+	/**
+	 * @return the key with the highest priority, without removing it
+	 * @throws IllegalStateException  if the heap is empty
+	 */
+	public int peek() {
+		if (size == 0)
+			throw new IllegalStateException("Heap is empty.");
+		return heap[0];
+	}
+	
+	/**
+	 * Removes and returns the key with the highest priority.
+	 * 
+	 * @throws IllegalStateException  if the heap is empty
+	 */
+	public int poll() {
+		int key = peek();
+		remove(key);
+		return key;
+	}
+	
+	/**
+	 * Removes key from the heap if it is in it.
+	 */
+	public void remove(int key) {
+		int pos = positions[key];
+		if (pos == -1)
+			return;
+		positions[key] = -1;
+		size--;
+		if (pos < size) {
+			/* Fills the hole with the last key and restores the heap order */
+			int last = heap[size];
+			heap[pos] = last;
+			positions[last] = pos;
+			siftUp(pos);
+			siftDown(positions[last]);
+		}
+	}
+	
+	/**
+	 * @return true if key i should be polled before key j
+	 */
+	private boolean before(int i, int j) {
+		if (priorities[i] != priorities[j])
+			return priorities[i] > priorities[j];
+		return i < j;
+	}
+	
+	private void siftUp(int pos) {
+		int key = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!before(key, heap[parent]))
+				break;
+			heap[pos] = heap[parent];
+			positions[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = key;
+		positions[key] = pos;
+	}
+	
+	private void siftDown(int pos) {
+		int key = heap[pos];
+		while (2 * pos + 1 < size) {
+			int child = 2 * pos + 1;
+			if (child + 1 < size && before(heap[child + 1], heap[child]))
+				child++;
+			if (!before(heap[child], key))
+				break;
+			heap[pos] = heap[child];
+			positions[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = key;
+		positions[key] = pos;
+	}
+}
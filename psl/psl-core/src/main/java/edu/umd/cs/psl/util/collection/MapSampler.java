@@ -19,8 +19,7 @@ package edu.umd.cs.psl.util.collection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -37,17 +36,6 @@ public class MapSampler {
 	public MapSampler() {
 	}
 	
-	private static <K, V extends Number > K selectKey(List<K> order, Map<K,V>map, double selector){
-		double curr=0;
-		for(int i = 0; i < order.size(); i++){
-			curr += Math.abs(map.get(order.get(i)).doubleValue());
-			if(curr >= selector){
-				return order.get(i);
-			}
-		}
-		return order.get(order.size()-1);
-	}
-	
 	public static <K> K sampleRepresentative(Map<K,Number>map){
 		double curr=0;
 		Random rnd = new Random();
@@ -83,43 +71,40 @@ public class MapSampler {
 	}
 	
 	
-	private static <K,V extends Number> double computeTotal(Map<K,V>map, List<K> keys){
-		double total = 0.0;
-		for(K key : keys){
-			Number n = map.get(key);
-			if(n.doubleValue() < 0){
-					log.warn("Map contains negative values. Sampling will fail.");
-				}
-				total += Math.abs(n.doubleValue());
-		}
-		return total;
+	public static <K, V extends Number> Set<K> sampleRepresentativeSet( Map<K, V> map , int numToSelect){
+		return sampleRepresentativeSet(map, numToSelect, new Random());
 	}
 	
-	public static <K, V extends Number> Set<K> sampleRepresentativeSet( Map<K, V> map , int numToSelect){
-		Random rnd = new Random();
-		Set<K> retSet = new HashSet<K>();
-		List<K> orderedKeys = new LinkedList<K>();
-		orderedKeys.addAll(map.keySet());
-		int toSelect = Math.min(numToSelect, map.size());
-		int sampleLimit = 10*toSelect;
-		double total = computeTotal(map,orderedKeys);
-		int selected = 0;
-		int rounds = 0;
-		while(selected < toSelect && rounds < sampleLimit){
-			rounds++;
-			K select = selectKey(orderedKeys, map, total*rnd.nextDouble());
-			if(!retSet.contains(select)) {
-				retSet.add(select);
-				orderedKeys.remove(select);
-				selected++;
-				total = computeTotal(map,orderedKeys);
-			}
+	/**
+	 * Samples keys with probability proportional to the absolute values of
+	 * their values, without replacement, using a {@link WeightedSampler}.
+	 * If fewer than numToSelect keys have non-zero values, keys with zero
+	 * values fill the rest.
+	 * 
+	 * @param rnd  source of randomness, which can be seeded to reproduce
+	 *             a sample from a map with the same iteration order
+	 * @return min(numToSelect, map.size()) sampled keys, in the order sampled
+	 */
+	public static <K, V extends Number> Set<K> sampleRepresentativeSet( Map<K, V> map , int numToSelect, Random rnd){
+		List<K> keys = new ArrayList<K>(map.size());
+		double[] weights = new double[map.size()];
+		boolean negative = false;
+		for(Map.Entry<K, V> e : map.entrySet()){
+			double weight = e.getValue().doubleValue();
+			negative |= weight < 0;
+			weights[keys.size()] = weight;
+			keys.add(e.getKey());
 		}
-		if(rounds >= sampleLimit){
-			//Introduced if there are many zero or near-zero values.
-			log.error("Hit sampling limit, returning "+selected+" instead of "+toSelect);
+		if(negative){
+			log.warn("Map contains negative values. Sampling by absolute value.");
+		}
+		
+		int[] sampled = WeightedSampler.sample(weights, numToSelect, rnd);
+		/* Keeps the sampled order, so callers that stop early are reproducible too */
+		Set<K> retSet = new LinkedHashSet<K>(sampled.length * 2);
+		for(int i : sampled){
+			retSet.add(keys.get(i));
 		}
 		return retSet;
 	}
 }
-
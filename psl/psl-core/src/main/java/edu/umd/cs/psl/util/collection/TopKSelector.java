@@ -0,0 +1,190 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import edu.umd.cs.psl.util.concurrent.ThreadPool;
+
+/**
+ * Selects the k highest scores from an array of primitive scores, like
+ * {@link QuickSelector} but without boxing or copying the input.
+ * <p>
+ * Uses a bounded min-heap of the best k entries seen so far, so selection
+ * costs O(n log k) time and O(k) extra space. Ties are broken by ascending id,
+ * so the result is deterministic if the ids are distinct.
+ * <p>
+ * Large inputs can be divided among threads of the {@link ThreadPool}, each
+ * of which selects the top k of its part, and the parts' selections merged.
+ */
+public class TopKSelector {
+	
+	private TopKSelector() {}
+	
+	/**
+	 * Selects the entries with the k highest scores.
+	 * 
+	 * @param scores  the scores, which must not be NaN
+	 * @param ids  the tie-breaking id of each entry, or null to break ties
+	 *             by index
+	 * @param k  the number of entries to select
+	 * @return the indices of the min(k, scores.length) selected entries, in
+	 *         descending order of score
+	 * @throws IllegalArgumentException  if k is negative or ids has a
+	 *                                   different length than scores
+	 */
+	public static int[] select(double[] scores, int[] ids, int k) {
+		return select(scores, ids, k, 1);
+	}
+	
+	/**
+	 * Selects the entries with the k highest scores, dividing the entries
+	 * among up to numThreads threads. The result is the same as
+	 * {@link #select(double[], int[], int)}.
+	 * 
+	 * @param numThreads  the maximum number of threads to use
+	 * @throws IllegalArgumentException  if k is negative, numThreads is not
+	 *                                   positive, or ids has a different
+	 *                                   length than scores
+	 */
+	public static int[] select(final double[] scores, final int[] ids, final int k, int numThreads) {
+		if (k < 0)
+			throw new IllegalArgumentException("k must be non-negative.");
+		if (numThreads <= 0)
+			throw new IllegalArgumentException("Number of threads must be positive.");
+		if (ids != null && ids.length != scores.length)
+			throw new IllegalArgumentException("Scores and ids must have the same length.");
+		
+		/* Only divides the entries if each part is much larger than k */
+		int numParts = Math.min(numThreads, scores.length / Math.max(MIN_PART_SIZE, 4 * k));
+		if (numParts <= 1)
+			return select(null, 0, scores.length, scores, ids, k);
+		
+		final int[][] selected = new int[numParts][];
+		List<Future<?>> futures = new ArrayList<Future<?>>(numParts);
+		int partSize = (scores.length + numParts - 1) / numParts;
+		for (int part = 0; part < numParts; part++) {
+			final int index = part;
+			final int start = part * partSize;
+			final int end = Math.min(scores.length, start + partSize);
+			futures.add(ThreadPool.getPool().submit(new Runnable() {
+				@Override
+				public void run() {
+					selected[index] = select(null, start, end, scores, ids, k);
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		
+		/* The top k entries are among the top k of each part */
+		int numCandidates = 0;
+		for (int[] part : selected)
+			numCandidates += part.length;
+		int[] candidates = new int[numCandidates];
+		numCandidates = 0;
+		for (int[] part : selected) {
+			System.arraycopy(part, 0, candidates, numCandidates, part.length);
+			numCandidates += part.length;
+		}
+		return select(candidates, 0, candidates.length, scores, ids, k);
+	}
+	
+	/** Fewest entries worth giving to another thread */
+	private static final int MIN_PART_SIZE = 10000;
+	
+	/**
+	 * Selects the top k of the entries at positions start (inclusive) to end
+	 * (exclusive) of entries, or of the entries with those indices if entries
+	 * is null.
+	 */
+	private static int[] select(int[] entries, int start, int end, double[] scores, int[] ids, int k) {
+		int size = Math.min(k, end - start);
+		int[] heap = new int[size];
+		for (int i = 0; i < size; i++) {
+			heap[i] = (entries == null) ? start + i : entries[start + i];
+			siftUp(heap, i, scores, ids);
+		}
+		
+		/* Replaces the worst selected entry with each better one */
+		for (int pos = start + size; pos < end; pos++) {
+			int i = (entries == null) ? pos : entries[pos];
+			if (size > 0 && before(i, heap[0], scores, ids)) {
+				heap[0] = i;
+				siftDown(heap, size, scores, ids);
+			}
+		}
+		
+		/* Sorts in place by repeatedly moving the worst entry to the end */
+		for (int n = size - 1; n > 0; n--) {
+			int worst = heap[0];
+			heap[0] = heap[n];
+			heap[n] = worst;
+			siftDown(heap, n, scores, ids);
+		}
+		
+		return heap;
+	}
+	
+	/**
+	 * @return true if entry i ranks before entry j
+	 */
+	private static boolean before(int i, int j, double[] scores, int[] ids) {
+		if (scores[i] != scores[j])
+			return scores[i] > scores[j];
+		else if (ids != null)
+			return ids[i] < ids[j];
+		else
+			return i < j;
+	}
+	
+	private static void siftUp(int[] heap, int pos, double[] scores, int[] ids) {
+		int entry = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!before(heap[parent], entry, scores, ids))
+				break;
+			heap[pos] = heap[parent];
+			pos = parent;
+		}
+		heap[pos] = entry;
+	}
+	
+	private static void siftDown(int[] heap, int size, double[] scores, int[] ids) {
+		int pos = 0;
+		int entry = heap[0];
+		while (2 * pos + 1 < size) {
+			int child = 2 * pos + 1;
+			if (child + 1 < size && before(heap[child], heap[child + 1], scores, ids))
+				child++;
+			if (!before(entry, heap[child], scores, ids))
+				break;
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = entry;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import java.util.Random;
+
+/**
+ * Samples indices with probability proportional to their weights, without
+ * replacement.
+ * <p>
+ * The weights are kept in a Fenwick (binary indexed) tree, so construction
+ * costs O(n) time and each sample or removal costs O(log n) time. Sampling
+ * k indices without replacement therefore costs O(n + k log n).
+ */
+public class WeightedSampler {
+	
+	private final double[] weights;
+	/* tree[i] is the sum of weights (i - lowbit(i), i], 1-indexed */
+	private final double[] tree;
+	private final int topBit;
+	private int numPositive;
+	
+	/**
+	 * @param weights  the weight of each index, which must be non-negative.
+	 *                 Absolute values are used.
+	 */
+	public WeightedSampler(double[] weights) {
+		int n = weights.length;
+		this.weights = new double[n];
+		tree = new double[n + 1];
+		numPositive = 0;
+		for (int i = 0; i < n; i++) {
+			this.weights[i] = Math.abs(weights[i]);
+			if (this.weights[i] > 0.0)
+				numPositive++;
+		}
+		buildTree();
+		
+		int bit = 1;
+		while (bit <= n / 2)
+			bit <<= 1;
+		topBit = (n == 0) ? 0 : bit;
+	}
+	
+	/**
+	 * @return the number of indices with positive weight that have not
+	 *         been removed
+	 */
+	public int getNumPositive() {
+		return numPositive;
+	}
+	
+	/**
+	 * Samples an index with probability proportional to its weight.
+	 * 
+	 * @return the index, or -1 if no index with positive weight remains
+	 */
+	public int sample(Random rand) {
+		int misses = 0;
+		while (numPositive > 0) {
+			double target = rand.nextDouble() * total();
+			
+			/* Finds the first index whose prefix sum exceeds target */
+			int pos = 0;
+			for (int bit = topBit; bit > 0; bit >>= 1) {
+				int next = pos + bit;
+				if (next < tree.length && tree[next] <= target) {
+					pos = next;
+					target -= tree[next];
+				}
+			}
+			
+			/* Rounding can land on a removed or zero-weight index, so retries */
+			if (pos < weights.length && weights[pos] > 0.0)
+				return pos;
+			
+			/* Clears accumulated rounding error if it keeps happening */
+			if (++misses % 64 == 0)
+				buildTree();
+		}
+		return -1;
+	}
+	
+	/**
+	 * Sets the weight of an index to zero so that it is not sampled again.
+	 */
+	public void remove(int index) {
+		double weight = weights[index];
+		if (weight == 0.0)
+			return;
+		weights[index] = 0.0;
+		numPositive--;
+		for (int i = index + 1; i < tree.length; i += i & -i)
+			tree[i] -= weight;
+	}
+	
+	/**
+	 * Samples indices with probability proportional to their weights, without
+	 * replacement. If fewer than k indices have positive weight, the rest
+	 * are the first zero-weight indices.
+	 * 
+	 * @param weights  the weight of each index. Absolute values are used.
+	 * @param k  the number of indices to sample
+	 * @return the min(k, weights.length) sampled indices, in the order sampled
+	 */
+	public static int[] sample(double[] weights, int k, Random rand) {
+		WeightedSampler sampler = new WeightedSampler(weights);
+		int[] sampled = new int[Math.min(k, weights.length)];
+		int count = 0;
+		while (count < sampled.length && sampler.getNumPositive() > 0) {
+			int index = sampler.sample(rand);
+			sampler.remove(index);
+			sampled[count++] = index;
+		}
+		for (int i = 0; count < sampled.length; i++)
+			if (weights[i] == 0.0)
+				sampled[count++] = i;
+		return sampled;
+	}
+	
+	/**
+	 * Builds the tree from the weights in O(n) time.
+	 */
+	private void buildTree() {
+		int n = weights.length;
+		for (int i = 1; i <= n; i++)
+			tree[i] = weights[i - 1];
+		for (int i = 1; i <= n; i++) {
+			/* Adds the completed partial sum to its parent */
+			int parent = i + (i & -i);
+			if (parent <= n)
+				tree[parent] += tree[i];
+		}
+	}
+	
+	private double total() {
+		double total = 0.0;
+		for (int i = weights.length; i > 0; i -= i & -i)
+			total += tree[i];
+		return total;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.application.inference;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+import edu.umd.cs.psl.database.DataStore;
+import edu.umd.cs.psl.database.Database;
+import edu.umd.cs.psl.database.Partition;
+import edu.umd.cs.psl.database.loading.Inserter;
+import edu.umd.cs.psl.database.rdbms.RDBMSDataStore;
+import edu.umd.cs.psl.database.rdbms.driver.H2DatabaseDriver;
+import edu.umd.cs.psl.database.rdbms.driver.H2DatabaseDriver.Type;
+import edu.umd.cs.psl.evaluation.result.FullInferenceResult;
+import edu.umd.cs.psl.evaluation.result.memory.ReasonerFullInferenceResult;
+import edu.umd.cs.psl.model.Model;
+import edu.umd.cs.psl.model.argument.ArgumentType;
+import edu.umd.cs.psl.model.argument.IntegerAttribute;
+import edu.umd.cs.psl.model.argument.Variable;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.QueryAtom;
+import edu.umd.cs.psl.model.formula.Conjunction;
+import edu.umd.cs.psl.model.formula.Negation;
+import edu.umd.cs.psl.model.formula.Rule;
+import edu.umd.cs.psl.model.kernel.GroundKernel;
+import edu.umd.cs.psl.model.kernel.rule.CompatibilityRuleKernel;
+import edu.umd.cs.psl.model.predicate.PredicateFactory;
+import edu.umd.cs.psl.model.predicate.StandardPredicate;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasoner;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasonerState;
+import edu.umd.cs.psl.reasoner.admm.ADMMStateActivator;
+
+public class OnlineInferenceSessionTest {
+
+	private static final String DB_NAME = "OnlineInferenceSessionTest";
+
+	private ConfigBundle config;
+	private StandardPredicate seed, link, label;
+	private Model model;
+	private List<DataStore> dataStores;
+
+	@Before
+	public final void setUp() throws ConfigurationException {
+		config = ConfigManager.getManager().getBundle("onlinesession");
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, true);
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+
+		PredicateFactory pf = PredicateFactory.getFactory();
+		seed = pf.createStandardPredicate("OnlineInferenceSessionTest_Seed", ArgumentType.Integer);
+		link = pf.createStandardPredicate("OnlineInferenceSessionTest_Link", ArgumentType.Integer, ArgumentType.Integer);
+		label = pf.createStandardPredicate("OnlineInferenceSessionTest_Label", ArgumentType.Integer);
+
+		/* Labels spread from seeds along links and are otherwise pulled toward 0 */
+		Variable a = new Variable("A");
+		Variable b = new Variable("B");
+		model = new Model();
+		model.addKernel(new CompatibilityRuleKernel(
+				new Rule(new QueryAtom(seed, a), new QueryAtom(label, a)), 2.0, true));
+		model.addKernel(new CompatibilityRuleKernel(
+				new Rule(new Conjunction(new QueryAtom(link, a, b), new QueryAtom(label, a)), new QueryAtom(label, b)), 1.0, true));
+		model.addKernel(new CompatibilityRuleKernel(new Negation(new QueryAtom(label, a)), 0.5, true));
+
+		dataStores = new ArrayList<DataStore>();
+	}
+
+	@After
+	public final void tearDown() {
+		for (DataStore dataStore : dataStores)
+			dataStore.close();
+	}
+
+	@Test
+	public void testUpdateEvidence() throws SQLException {
+		Database db = populate(DB_NAME, 0.2);
+		OnlineInferenceSession session = new OnlineInferenceSession(model, db, config);
+		FullInferenceResult first = session.mpeInference();
+		ADMMReasonerState firstState = ((ReasonerFullInferenceResult) first).getADMMReasonerState();
+		double[] firstScores = new ADMMStateActivator(firstState, config).scoreVariablesByIndex();
+		double[] firstEstimates = new double[firstState.getNumVariables()];
+		for (int i = 0; i < firstEstimates.length; i++)
+			firstEstimates[i] = firstState.getConsensusEstimate(i);
+
+		GroundAtom oldSeed = db.getAtom(seed, new IntegerAttribute(2));
+		List<GroundKernel> before = new ArrayList<GroundKernel>();
+		for (GroundKernel gk : session.getReasoner().getCompatibilityKernels())
+			before.add(gk);
+
+		/* Changes the evidence behind the Database's back, then tells the session */
+		Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + DB_NAME);
+		try {
+			Statement stmt = connection.createStatement();
+			assertEquals(1, stmt.executeUpdate("UPDATE " + seed.getName() + "_predicate SET truth = 0.9 WHERE Integer_0 = 2"));
+			stmt.close();
+		} finally {
+			connection.close();
+		}
+		/* The QueryAtom keeps its arguments in a Term[] */
+		int added = session.updateEvidence(Collections.singleton(new QueryAtom(seed, new IntegerAttribute(2))));
+
+		/* Only the ground kernels of the changed atom are replaced */
+		Set<GroundKernel> after = Collections.newSetFromMap(new IdentityHashMap<GroundKernel, Boolean>());
+		for (GroundKernel gk : session.getReasoner().getCompatibilityKernels())
+			after.add(gk);
+		int stale = 0;
+		for (GroundKernel gk : before) {
+			boolean containsSeed = gk.getAtoms().contains(oldSeed);
+			if (containsSeed)
+				stale++;
+			assertEquals(!containsSeed, after.contains(gk));
+		}
+		assertEquals(1, stale);
+		assertEquals(stale, added);
+		assertEquals(before.size(), after.size());
+		session.mpeInference();
+
+		/* The first result keeps the state of the first round */
+		double[] scores = new ADMMStateActivator(firstState, config).scoreVariablesByIndex();
+		for (int i = 0; i < firstScores.length; i++)
+			assertEquals(firstScores[i], scores[i], 0.0);
+		for (int i = 0; i < firstEstimates.length; i++)
+			assertEquals(firstEstimates[i], firstState.getConsensusEstimate(i), 0.0);
+
+		/* Matches grounding the changed evidence from scratch */
+		Database referenceDB = populate(DB_NAME + "Reference", 0.9);
+		OnlineInferenceSession reference = new OnlineInferenceSession(model, referenceDB, config);
+		reference.mpeInference();
+		assertEquals(reference.getReasoner().size(), session.getReasoner().size());
+		for (int i = 0; i < 4; i++)
+			assertEquals(referenceDB.getAtom(label, new IntegerAttribute(i)).getValue(),
+					db.getAtom(label, new IntegerAttribute(i)).getValue(), 1e-3);
+
+		session.close();
+		reference.close();
+		db.close();
+		referenceDB.close();
+	}
+
+	/**
+	 * Creates a Database over entities 0 through 3, in which entities 0 and 2
+	 * are seeds, 0 links to 1, and 2 links to 3.
+	 */
+	private Database populate(String name, double seedValue) {
+		DataStore dataStore = new RDBMSDataStore(new H2DatabaseDriver(Type.Memory, name, true), config);
+		dataStores.add(dataStore);
+		dataStore.registerPredicate(seed);
+		dataStore.registerPredicate(link);
+		dataStore.registerPredicate(label);
+		Partition partition = dataStore.getPartition("0");
+
+		Inserter inserter = dataStore.getInserter(seed, partition);
+		inserter.insertValue(1.0, 0);
+		inserter.insertValue(seedValue, 2);
+		inserter = dataStore.getInserter(link, partition);
+		inserter.insertValue(1.0, 0, 1);
+		inserter.insertValue(1.0, 2, 3);
+		inserter = dataStore.getInserter(label, partition);
+		for (int i = 0; i < 4; i++)
+			inserter.insertValue(0.0, i);
+
+		Set<StandardPredicate> toClose = new HashSet<StandardPredicate>();
+		toClose.add(seed);
+		toClose.add(link);
+		return dataStore.getDatabase(partition, toClose);
+	}
+}
@@ -16,16 +16,47 @@
  */
 package edu.umd.cs.psl.database.rdbms;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
 
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
 import edu.umd.cs.psl.config.EmptyBundle;
 import edu.umd.cs.psl.database.DataStore;
 import edu.umd.cs.psl.database.DataStoreContractTest;
+import edu.umd.cs.psl.database.Database;
+import edu.umd.cs.psl.database.DatabaseQuery;
+import edu.umd.cs.psl.database.Partition;
+import edu.umd.cs.psl.database.ResultCursor;
+import edu.umd.cs.psl.database.ResultList;
+import edu.umd.cs.psl.database.loading.Inserter;
 import edu.umd.cs.psl.database.rdbms.driver.DatabaseDriver;
 import edu.umd.cs.psl.database.rdbms.driver.H2DatabaseDriver;
+import edu.umd.cs.psl.model.argument.ArgumentType;
+import edu.umd.cs.psl.model.argument.StringAttribute;
+import edu.umd.cs.psl.model.argument.Variable;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.ObservedAtom;
+import edu.umd.cs.psl.model.atom.QueryAtom;
+import edu.umd.cs.psl.model.atom.RandomVariableAtom;
+import edu.umd.cs.psl.model.predicate.PredicateFactory;
+import edu.umd.cs.psl.model.predicate.StandardPredicate;
 
 public class RDBMSDataStoreTest extends DataStoreContractTest {
 	
+	private static final StandardPredicate p = PredicateFactory.getFactory().createStandardPredicate(
+			"RDBMSDataStoreTest_P", ArgumentType.String, ArgumentType.String);
+	
 	private String dbPath;
 	private String dbName;
 
@@ -47,5 +78,247 @@ public class RDBMSDataStoreTest extends DataStoreContractTest {
 		file = new File(dbPath + dbName + ".trace.db");
 		file.delete();
 	}
+	
+	@Test
+	public void testBatchedInserts() throws Exception {
+		ConfigBundle config = ConfigManager.getManager().getBundle("rdbmsdatastoretest");
+		config.setProperty(RDBMSDataStore.BATCH_SIZE_KEY, 2);
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestBatch", true), config);
+		dataStore.registerPredicate(p);
+		Partition partition = dataStore.getPartition("0");
+		
+		/* The last row is still batched until the Database is opened */
+		Inserter inserter = dataStore.getInserter(p, partition);
+		inserter.insertValue(0.1, "a", "b");
+		inserter.insertValue(0.2, "b", "c");
+		inserter.insertValue(0.3, "c", "d");
+		
+		Database db = dataStore.getDatabase(partition);
+		assertEquals(0.1, db.getAtom(p, new StringAttribute("a"), new StringAttribute("b")).getValue(), 0.0);
+		assertEquals(0.3, db.getAtom(p, new StringAttribute("c"), new StringAttribute("d")).getValue(), 0.0);
+		db.close();
+		dataStore.close();
+	}
+	
+	@Test
+	public void testLoadDelimitedData() throws Exception {
+		for (boolean csvRead : new boolean[] {true, false}) {
+			File file = File.createTempFile("rdbmsDataStoreTest", ".txt");
+			PrintWriter out = new PrintWriter(file);
+			out.println("// comment");
+			out.println("a\tb\t0.5");
+			out.println();
+			out.println("b\tc\t1.0");
+			out.close();
+			
+			ConfigBundle config = ConfigManager.getManager().getBundle("rdbmsdatastoretest");
+			config.setProperty(RDBMSDataStore.USE_CSVREAD_KEY, csvRead);
+			RDBMSDataStore dataStore = new RDBMSDataStore(
+					new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestLoad" + csvRead, true), config);
+			dataStore.registerPredicate(p);
+			Partition partition = dataStore.getPartition("0");
+			assertEquals(2, dataStore.loadDelimitedData(p, partition, file.getPath(), "\t", true));
+			
+			Database db = dataStore.getDatabase(partition);
+			assertEquals(0.5, db.getAtom(p, new StringAttribute("a"), new StringAttribute("b")).getValue(), 0.0);
+			assertEquals(1.0, db.getAtom(p, new StringAttribute("b"), new StringAttribute("c")).getValue(), 0.0);
+			assertEquals(0.0, db.getAtom(p, new StringAttribute("a"), new StringAttribute("c")).getValue(), 0.0);
+			db.close();
+			dataStore.close();
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testLoadDelimitedDataWithCSVRead() throws Exception {
+		File file = File.createTempFile("rdbmsDataStoreTest", ".csv");
+		PrintWriter out = new PrintWriter(file);
+		out.println("a, \"b\"");
+		out.println("a,c");
+		out.println("a, \"b\"");
+		out.close();
+		
+		ConfigBundle config = ConfigManager.getManager().getBundle("rdbmsdatastoretest");
+		config.setProperty(RDBMSDataStore.USE_CSVREAD_KEY, true);
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestCSVRead", true), config);
+		dataStore.registerPredicate(p);
+		Partition partition = dataStore.getPartition("0");
+		
+		/* The repeated atom fails the load and leaves the table empty */
+		try {
+			dataStore.loadDelimitedData(p, partition, file.getPath(), ",", false);
+			fail("Loaded a file that repeats an atom.");
+		}
+		catch (RuntimeException e) {}
+		
+		out = new PrintWriter(file);
+		out.println("a, \"b\"");
+		out.println("a,c");
+		out.close();
+		assertEquals(2, dataStore.loadDelimitedData(p, partition, file.getPath(), ",", false));
+		/* The primary key was created again */
+		try {
+			dataStore.loadDelimitedData(p, partition, file.getPath(), ",", false);
+			fail("Loaded the same atoms twice.");
+		}
+		catch (RuntimeException e) {}
+		
+		/* Fields are trimmed but not unquoted */
+		Database db = dataStore.getDatabase(partition);
+		assertEquals(1.0, db.getAtom(p, new StringAttribute("a"), new StringAttribute("\"b\"")).getValue(), 0.0);
+		assertEquals(1.0, db.getAtom(p, new StringAttribute("a"), new StringAttribute("c")).getValue(), 0.0);
+		assertEquals(2, db.executeQuery(new DatabaseQuery(
+				new QueryAtom(p, new Variable("A"), new Variable("B")))).size());
+		db.close();
+		dataStore.close();
+		file.delete();
+	}
+	
+	@Test
+	public void testGetAtoms() throws Exception {
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestGetAtoms", true), new EmptyBundle());
+		dataStore.registerPredicate(p);
+		Partition read = dataStore.getPartition("0");
+		Partition write = dataStore.getPartition("1");
+		dataStore.getInserter(p, read).insertValue(0.1, "a", "b");
+		dataStore.getInserter(p, write).insertValue(0.2, "b", "c");
+		
+		Database db = dataStore.getDatabase(write, read);
+		List<QueryAtom> atoms = new ArrayList<QueryAtom>();
+		atoms.add(new QueryAtom(p, new StringAttribute("a"), new StringAttribute("b")));
+		atoms.add(new QueryAtom(p, new StringAttribute("b"), new StringAttribute("c")));
+		atoms.add(new QueryAtom(p, new StringAttribute("a"), new StringAttribute("c")));
+		atoms.add(new QueryAtom(p, new StringAttribute("a"), new StringAttribute("b")));
+		List<GroundAtom> results = db.getAtoms(atoms);
+		
+		assertEquals(4, results.size());
+		assertTrue(results.get(0) instanceof ObservedAtom);
+		assertEquals(0.1, results.get(0).getValue(), 0.0);
+		assertTrue(results.get(1) instanceof RandomVariableAtom);
+		assertEquals(0.2, results.get(1).getValue(), 0.0);
+		assertTrue(results.get(2) instanceof RandomVariableAtom);
+		assertEquals(0.0, results.get(2).getValue(), 0.0);
+		assertSame(results.get(0), results.get(3));
+		assertSame(results.get(1), db.getAtom(p, new StringAttribute("b"), new StringAttribute("c")));
+		db.close();
+		dataStore.close();
+	}
+	
+	@Test
+	public void testGetAtomsMixedArguments() throws Exception {
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestGetAtomsMixedArguments", true), new EmptyBundle());
+		dataStore.registerPredicate(p);
+		Partition read = dataStore.getPartition("0");
+		Partition write = dataStore.getPartition("1");
+		dataStore.getInserter(p, read).insertValue(0.1, "a", "b");
+		dataStore.getInserter(p, read).insertValue(0.3, "c", "d");
+		
+		/* Each requested atom takes its arguments from a different stored atom */
+		Database db = dataStore.getDatabase(write, read);
+		List<QueryAtom> atoms = new ArrayList<QueryAtom>();
+		atoms.add(new QueryAtom(p, new StringAttribute("a"), new StringAttribute("d")));
+		atoms.add(new QueryAtom(p, new StringAttribute("c"), new StringAttribute("b")));
+		List<GroundAtom> results = db.getAtoms(atoms);
+		
+		assertEquals(2, results.size());
+		for (GroundAtom atom : results) {
+			assertTrue(atom instanceof RandomVariableAtom);
+			assertEquals(0.0, atom.getValue(), 0.0);
+		}
+		assertEquals(0.1, db.getAtom(p, new StringAttribute("a"), new StringAttribute("b")).getValue(), 0.0);
+		assertEquals(0.3, db.getAtom(p, new StringAttribute("c"), new StringAttribute("d")).getValue(), 0.0);
+		db.close();
+		dataStore.close();
+	}
+	
+	@Test
+	public void testCommitAll() throws Exception {
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestCommitAll", true), new EmptyBundle());
+		dataStore.registerPredicate(p);
+		Partition write = dataStore.getPartition("0");
+		dataStore.getInserter(p, write).insertValue(0.2, "a", "b");
+		
+		/* One atom is persisted and one is not, and each is committed twice */
+		Database db = dataStore.getDatabase(write);
+		RandomVariableAtom persisted = (RandomVariableAtom) db.getAtom(p, new StringAttribute("a"), new StringAttribute("b"));
+		RandomVariableAtom missing = (RandomVariableAtom) db.getAtom(p, new StringAttribute("b"), new StringAttribute("c"));
+		List<RandomVariableAtom> atoms = new ArrayList<RandomVariableAtom>();
+		atoms.add(persisted);
+		atoms.add(missing);
+		persisted.setValue(0.4);
+		missing.setValue(0.6);
+		assertEquals(2, db.commitAll(atoms));
+		missing.setValue(0.7);
+		assertEquals(2, db.commitAll(atoms));
+		db.close();
+		
+		db = dataStore.getDatabase(write);
+		assertEquals(0.4, db.getAtom(p, new StringAttribute("a"), new StringAttribute("b")).getValue(), 0.0);
+		assertEquals(0.7, db.getAtom(p, new StringAttribute("b"), new StringAttribute("c")).getValue(), 0.0);
+		db.close();
+		dataStore.close();
+	}
+	
+	@Test
+	public void testQueryTemplates() throws Exception {
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestQueryTemplates", true), new EmptyBundle());
+		dataStore.registerPredicate(p);
+		Partition partition = dataStore.getPartition("0");
+		Inserter inserter = dataStore.getInserter(p, partition);
+		inserter.insertValue(1.0, "a", "b");
+		inserter.insertValue(1.0, "a", "c");
+		inserter.insertValue(1.0, "b", "c");
+		
+		/* Queries with different constants share one template */
+		RDBMSDatabase db = (RDBMSDatabase) dataStore.getDatabase(partition);
+		Variable x = new Variable("X");
+		Variable y = new Variable("Y");
+		DatabaseQuery query = new DatabaseQuery(new QueryAtom(p, x, y));
+		query.getPartialGrounding().assign(x, new StringAttribute("a"));
+		ResultList results = db.executeQuery(query);
+		assertEquals(2, results.size());
+		
+		query = new DatabaseQuery(new QueryAtom(p, x, y));
+		query.getPartialGrounding().assign(x, new StringAttribute("b'"));
+		results = db.executeQuery(query);
+		assertEquals(0, results.size());
+		
+		assertEquals(1, db.getQueryTemplates().size());
+		assertEquals(2, db.getQueryTemplates().get(0).getExecutions());
+		db.close();
+		dataStore.close();
+	}
+	
+	@Test
+	public void testResultCursor() throws Exception {
+		RDBMSDataStore dataStore = new RDBMSDataStore(
+				new H2DatabaseDriver(H2DatabaseDriver.Type.Memory, "rdbmsDataStoreTestCursor", true), new EmptyBundle());
+		dataStore.registerPredicate(p);
+		Partition partition = dataStore.getPartition("0");
+		Inserter inserter = dataStore.getInserter(p, partition);
+		for (int i = 0; i < 5; i++)
+			inserter.insertValue(1.0, "a", "b" + i);
+		
+		Database db = dataStore.getDatabase(partition);
+		Variable x = new Variable("X");
+		Variable y = new Variable("Y");
+		ResultCursor cursor = db.executeQuery(new DatabaseQuery(new QueryAtom(p, x, y)), 2);
+		assertEquals(2, cursor.getArity());
+		assertEquals(2, cursor.nextBlock().size());
+		assertEquals(2, cursor.nextBlock().size());
+		ResultList results = cursor.nextBlock();
+		assertEquals(1, results.size());
+		assertEquals(new StringAttribute("a"), results.get(0, x));
+		assertNull(cursor.nextBlock());
+		cursor.close();
+		db.close();
+		dataStore.close();
+	}
 
 }
@@ -0,0 +1,250 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+
+/**
+ * Times ADMM sweeps over a randomly generated hinge-loss model.
+ * <p>
+ * Compares the {@link ADMMReasoner} iteration (primitive consensus arrays
+ * and compressed incidence lists) against a reference sweep that keeps the
+ * consensus vector, bounds, and incidence lists in boxed collections, as
+ * the reasoner did before, and against the same iteration with terms packed
+ * into a {@link PackedTermStore}. All run single-threaded so that only the
+ * memory layout differs.
+ * <p>
+ * Usage: ADMMReasonerBenchmark [numVariables] [numTerms] [iterations]
+ */
+public class ADMMReasonerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int numVars = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int numTerms = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+		int iterations = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+
+		ConfigBundle config = ConfigManager.getManager().getBundle("benchmark");
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, iterations);
+		config.setProperty(ADMMReasoner.NUM_THREADS_KEY, 1);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, Double.MIN_VALUE);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, Double.MIN_VALUE);
+
+		System.out.println("Generating " + numTerms + " hinge-loss terms over " + numVars + " variables");
+
+		/* Runs the boxed reference first so it cannot benefit from a warmer heap */
+		BoxedModel boxed = new BoxedModel(numVars, numTerms, new Random(4));
+		long gcBefore = gcCount();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			boxed.sweep();
+		report("Boxed reference", iterations, System.nanoTime() - start, gcCount() - gcBefore);
+		boxed = null;
+
+		ADMMReasoner reasoner = generateReasoner(config, numVars, numTerms, false, new Random(4));
+		gcBefore = gcCount();
+		start = System.nanoTime();
+		int iter = reasoner.iterate();
+		report("ADMMReasoner", iter, System.nanoTime() - start, gcCount() - gcBefore);
+		reasoner = null;
+
+		reasoner = generateReasoner(config, numVars, numTerms, true, new Random(4));
+		gcBefore = gcCount();
+		start = System.nanoTime();
+		iter = reasoner.iterate();
+		report("Packed terms", iter, System.nanoTime() - start, gcCount() - gcBefore);
+	}
+
+	private static ADMMReasoner generateReasoner(ConfigBundle config, int numVars, int numTerms,
+			boolean packed, Random rand) {
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		if (packed)
+			reasoner.termStore = new PackedTermStore(ADMMReasoner.PACKED_SLAB_SIZE_DEFAULT);
+		reasoner.z = new double[numVars];
+		reasoner.lb = new double[numVars];
+		reasoner.ub = new double[numVars];
+		for (int i = 0; i < numVars; i++) {
+			reasoner.z[i] = rand.nextDouble();
+			reasoner.ub[i] = 1.0;
+		}
+
+		reasoner.terms = new ArrayList<ADMMObjectiveTerm>(numTerms);
+		for (int t = 0; t < numTerms; t++) {
+			int[] zIndices = randomIndices(numVars, rand);
+			double[] coeffs = randomCoeffs(zIndices.length, rand);
+			reasoner.terms.add(new HingeLossTerm(reasoner, zIndices, coeffs,
+					rand.nextDouble() - 0.5, 1 + 9 * rand.nextDouble()));
+		}
+		reasoner.buildVariableLocations();
+		return reasoner;
+	}
+
+	private static int[] randomIndices(int numVars, Random rand) {
+		int[] zIndices = new int[2 + rand.nextInt(3)];
+		for (int i = 0; i < zIndices.length; i++) {
+			boolean repeated;
+			do {
+				zIndices[i] = rand.nextInt(numVars);
+				repeated = false;
+				for (int j = 0; j < i; j++)
+					repeated = repeated || zIndices[j] == zIndices[i];
+			} while (repeated);
+		}
+		return zIndices;
+	}
+
+	private static double[] randomCoeffs(int size, Random rand) {
+		double[] coeffs = new double[size];
+		for (int i = 0; i < size; i++)
+			coeffs[i] = (rand.nextBoolean()) ? 1.0 : -1.0;
+		return coeffs;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, bean.getCollectionCount());
+		return count;
+	}
+
+	private static void report(String name, int iterations, long nanos, long collections) {
+		System.out.println(String.format("%-16s %6d iterations  %10.3f ms/iteration  %6d collections",
+				name, iterations, nanos / 1e6 / iterations, collections));
+	}
+
+	/**
+	 * Hinge-loss ADMM over boxed collections, mirroring the previous layout of
+	 * {@link ADMMReasoner} and {@link HingeLossTerm}.
+	 */
+	private static class BoxedModel {
+		private final double stepSize = 1.0;
+		private final List<Double> z, lb, ub;
+		private final List<BoxedTerm> terms;
+		private final List<List<BoxedLocation>> varLocations;
+
+		BoxedModel(int numVars, int numTerms, Random rand) {
+			z = new ArrayList<Double>(numVars);
+			lb = new ArrayList<Double>(numVars);
+			ub = new ArrayList<Double>(numVars);
+			varLocations = new ArrayList<List<BoxedLocation>>(numVars);
+			for (int i = 0; i < numVars; i++) {
+				z.add(rand.nextDouble());
+				lb.add(0.0);
+				ub.add(1.0);
+				varLocations.add(new ArrayList<BoxedLocation>());
+			}
+
+			terms = new ArrayList<BoxedTerm>(numTerms);
+			for (int t = 0; t < numTerms; t++) {
+				int[] zIndices = randomIndices(numVars, rand);
+				double[] coeffs = randomCoeffs(zIndices.length, rand);
+				BoxedTerm term = new BoxedTerm(zIndices, coeffs,
+						rand.nextDouble() - 0.5, 1 + 9 * rand.nextDouble());
+				terms.add(term);
+				for (int i = 0; i < zIndices.length; i++)
+					varLocations.get(zIndices[i]).add(new BoxedLocation(term, i));
+			}
+		}
+
+		void sweep() {
+			for (BoxedTerm term : terms) {
+				term.updateLagrange();
+				term.minimize();
+			}
+
+			for (int i = 0; i < z.size(); i++) {
+				double total = 0.0;
+				for (BoxedLocation location : varLocations.get(i))
+					total += location.term.x[location.localIndex] + location.term.y[location.localIndex] / stepSize;
+				double newZ = total / varLocations.get(i).size();
+				if (newZ < lb.get(i))
+					newZ = lb.get(i);
+				else if (newZ > ub.get(i))
+					newZ = ub.get(i);
+				z.set(i, newZ);
+			}
+		}
+
+		private class BoxedTerm {
+			final double[] x, y, coeffs;
+			final int[] zIndices;
+			final double constant, weight;
+
+			BoxedTerm(int[] zIndices, double[] coeffs, double constant, double weight) {
+				this.zIndices = zIndices;
+				this.coeffs = coeffs;
+				this.constant = constant;
+				this.weight = weight;
+				x = new double[zIndices.length];
+				y = new double[zIndices.length];
+				for (int i = 0; i < x.length; i++)
+					x[i] = z.get(zIndices[i]);
+			}
+
+			void updateLagrange() {
+				for (int i = 0; i < y.length; i++)
+					y[i] = y[i] + stepSize * (x[i] - z.get(zIndices[i]));
+			}
+
+			void minimize() {
+				double total = 0.0;
+				for (int i = 0; i < x.length; i++) {
+					x[i] = z.get(zIndices[i]) - y[i] / stepSize;
+					total += coeffs[i] * x[i];
+				}
+				if (total <= constant)
+					return;
+
+				total = 0.0;
+				for (int i = 0; i < x.length; i++) {
+					x[i] = z.get(zIndices[i]) - y[i] / stepSize;
+					x[i] -= weight * coeffs[i] / stepSize;
+					total += coeffs[i] * x[i];
+				}
+				if (total >= constant)
+					return;
+
+				/* Projects onto the hinge (coefficients are +/-1, so the normal has equal magnitudes) */
+				double[] point = new double[x.length];
+				double multiplier = 0.0;
+				for (int i = 0; i < x.length; i++) {
+					point[i] = z.get(zIndices[i]) - y[i] / stepSize;
+					multiplier += coeffs[i] * point[i];
+				}
+				multiplier = (multiplier - constant) / x.length;
+				for (int i = 0; i < x.length; i++)
+					x[i] = point[i] - multiplier * coeffs[i];
+			}
+		}
+
+		private class BoxedLocation {
+			final BoxedTerm term;
+			final int localIndex;
+
+			BoxedLocation(BoxedTerm term, int localIndex) {
+				this.term = term;
+				this.localIndex = localIndex;
+			}
+		}
+	}
+}
@@ -0,0 +1,830 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+import edu.umd.cs.psl.model.argument.ArgumentType;
+import edu.umd.cs.psl.model.argument.GroundTerm;
+import edu.umd.cs.psl.model.argument.IntegerAttribute;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.atom.ObservedAtom;
+import edu.umd.cs.psl.model.atom.RandomVariableAtom;
+import edu.umd.cs.psl.model.kernel.GroundKernel;
+import edu.umd.cs.psl.model.kernel.LinearGroundCompatibilityKernel;
+import edu.umd.cs.psl.model.parameters.PositiveWeight;
+import edu.umd.cs.psl.model.predicate.PredicateFactory;
+import edu.umd.cs.psl.model.predicate.StandardPredicate;
+import edu.umd.cs.psl.reasoner.admm.ADMMReasoner.SchedulingType;
+import edu.umd.cs.psl.reasoner.admm.TestGroundKernel.TestVariable;
+import edu.umd.cs.psl.reasoner.function.AtomFunctionVariable;
+import edu.umd.cs.psl.reasoner.function.MutableAtomFunctionVariable;
+
+public class ADMMReasonerTest {
+
+	private ConfigBundle config;
+
+	@Before
+	public final void setUp() throws ConfigurationException {
+		ConfigManager manager = ConfigManager.getManager();
+		config = manager.getBundle("dummy");
+		/* The shared thread pool has one thread per processor */
+		config.setProperty(ADMMReasoner.NUM_THREADS_KEY, Math.min(3, Runtime.getRuntime().availableProcessors()));
+		config.setProperty(ADMMReasoner.CHUNK_SIZE_KEY, 7);
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 200);
+	}
+
+	@Test
+	public void testSchedulingTypesAgree() {
+		config.setProperty(ADMMReasoner.SCHEDULING_KEY, SchedulingType.STATIC);
+		ADMMReasoner reference = new ADMMReasoner(config);
+		TestVariable[] referenceVars = createVariables(50);
+		for (TestGroundKernel kernel : buildRandomModel(referenceVars, 200, new Random(4)))
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+
+		for (SchedulingType scheduling : SchedulingType.values()) {
+			config.setProperty(ADMMReasoner.SCHEDULING_KEY, scheduling);
+			ADMMReasoner reasoner = new ADMMReasoner(config);
+			TestVariable[] vars = createVariables(50);
+			for (TestGroundKernel kernel : buildRandomModel(vars, 200, new Random(4)))
+				reasoner.addGroundKernel(kernel);
+			reasoner.optimize();
+
+			for (int i = 0; i < vars.length; i++)
+				assertEquals(referenceVars[i].getValue(), vars[i].getValue(), 1e-3);
+			assertEquals(config.getInt(ADMMReasoner.NUM_THREADS_KEY, 0), reasoner.getThreadBusyTimes().length);
+			assertEquals(config.getInt(ADMMReasoner.NUM_THREADS_KEY, 0), reasoner.getThreadIdleTimes().length);
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+
+		/* Optimizes, then changes the model */
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, true);
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		TestVariable[] vars = createVariables(21);
+		List<TestGroundKernel> kernels = buildChain(vars, new Random(4));
+		for (TestGroundKernel kernel : kernels)
+			reasoner.addGroundKernel(kernel);
+		reasoner.optimize();
+		ADMMObjectiveTerm kept = reasoner.terms.get(reasoner.orderedGroundKernels.indexOf(kernels.get(5)));
+		int numVariables = reasoner.variables.size();
+		changeChain(reasoner, vars, kernels);
+		reasoner.optimize();
+
+		/* Builds the changed model from scratch */
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, false);
+		ADMMReasoner reference = new ADMMReasoner(config);
+		TestVariable[] referenceVars = createVariables(21);
+		List<TestGroundKernel> referenceKernels = buildChain(referenceVars, new Random(4));
+		for (TestGroundKernel kernel : referenceKernels)
+			reference.addGroundKernel(kernel);
+		changeChain(reference, referenceVars, referenceKernels);
+		reference.optimize();
+
+		assertTrue(reasoner.terms.contains(kept));
+		assertEquals(reference.terms.size(), reasoner.terms.size());
+		/* The removed variable stays, without terms */
+		assertEquals(numVariables + 1, reasoner.variables.size());
+		assertEquals(0, reasoner.getVariableLocations(reasoner.variables.indexOf(vars[19])).size());
+		for (int i = 0; i < vars.length; i++)
+			if (i != 19)
+				assertEquals(referenceVars[i].getValue(), vars[i].getValue(), 1e-3);
+	}
+
+	@Test
+	public void testPackedIncrementalUpdate() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, true);
+		config.setProperty(ADMMReasoner.PACKED_TERMS_KEY, true);
+		config.setProperty(ADMMReasoner.PACKED_SLAB_SIZE_KEY, 16);
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		TestVariable[] vars = createVariables(21);
+		List<TestGroundKernel> kernels = buildChain(vars, new Random(4));
+		for (TestGroundKernel kernel : kernels)
+			reasoner.addGroundKernel(kernel);
+		reasoner.optimize();
+
+		/* Replaces one term at a time, which releases its packed range */
+		for (int round = 0; round < 200; round++) {
+			TestGroundKernel kernel = kernels.get((round * 7) % kernels.size());
+			reasoner.removeGroundKernel(kernel);
+			reasoner.addGroundKernel(kernel);
+			reasoner.optimize();
+
+			long live = 0;
+			for (ADMMObjectiveTerm term : reasoner.terms)
+				live += term.size;
+			assertTrue(reasoner.termStore.size() <= 2 * live);
+		}
+
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, false);
+		config.setProperty(ADMMReasoner.PACKED_TERMS_KEY, false);
+		ADMMReasoner reference = new ADMMReasoner(config);
+		TestVariable[] referenceVars = createVariables(21);
+		for (TestGroundKernel kernel : buildChain(referenceVars, new Random(4)))
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+
+		assertEquals(kernels.size(), reasoner.terms.size());
+		for (int i = 0; i < vars.length; i++)
+			assertEquals(referenceVars[i].getValue(), vars[i].getValue(), 1e-3);
+	}
+
+	@Test
+	public void testWarmStart() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestWarmStart", ArgumentType.Integer);
+		AtomFunctionVariable[] vars = new AtomFunctionVariable[21];
+		for (int i = 0; i < vars.length; i++)
+			vars[i] = new MutableAtomFunctionVariable(new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {});
+		List<TestGroundKernel> kernels = buildChain(vars, new Random(4));
+		
+		/* Optimizes, then changes a weight */
+		ADMMReasoner previous = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			previous.addGroundKernel(kernel);
+		previous.optimize();
+		ADMMReasonerState state = new ADMMReasonerState(previous);
+		kernels.get(10).setWeight(new PositiveWeight(1.05));
+		
+		/* Optimizes the changed model from the variables' initial values */
+		resetVariables(vars);
+		ADMMReasoner cold = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			cold.addGroundKernel(kernel);
+		cold.optimize();
+		double[] coldValues = new double[vars.length];
+		for (int i = 0; i < vars.length; i++)
+			coldValues[i] = vars[i].getValue();
+		
+		/* Optimizes the changed model from the previous state */
+		resetVariables(vars);
+		ADMMReasoner warm = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			warm.addGroundKernel(kernel);
+		warm.setWarmStart(state);
+		warm.optimize();
+		
+		for (int i = 0; i < vars.length; i++)
+			assertEquals(coldValues[i], vars[i].getValue(), 1e-3);
+		assertTrue(warm.getIterations() < cold.getIterations());
+	}
+	
+	@Test
+	public void testAdaptiveStepSize() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-6);
+		/* Badly scaled for the weights */
+		config.setProperty(ADMMReasoner.STEP_SIZE_KEY, 0.01);
+
+		/* Adds heavily weighted kernels of three variables, which factor their systems */
+		TestVariable[] vars = createVariables(21);
+		List<TestGroundKernel> kernels = buildChain(vars, new Random(4));
+		for (int i = 0; i < 18; i++)
+			kernels.add(new TestGroundKernel(100.0, new double[] {1.0, 1.0, -1.0},
+					new TestVariable[] {vars[i], vars[i+1], vars[i+2]}, 0.5));
+
+		ADMMReasoner reference = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+		double[] referenceValues = new double[vars.length];
+		for (int i = 0; i < vars.length; i++)
+			referenceValues[i] = vars[i].getValue();
+
+		resetVariables(vars);
+		config.setProperty(ADMMReasoner.ADAPTIVE_STEP_SIZE_KEY, true);
+		ADMMReasoner adaptive = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			adaptive.addGroundKernel(kernel);
+		adaptive.optimize();
+
+		for (int i = 0; i < vars.length; i++)
+			assertEquals(referenceValues[i], vars[i].getValue(), 1e-3);
+		assertTrue(adaptive.getStepSize() != 0.01);
+		assertTrue(adaptive.getIterations() < reference.getIterations());
+	}
+
+	@Test
+	public void testAcceleration() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-6);
+		/* Small enough that the unaccelerated updates converge slowly */
+		config.setProperty(ADMMReasoner.STEP_SIZE_KEY, 0.1);
+		TestVariable[] vars = createVariables(21);
+		List<TestGroundKernel> kernels = buildChain(vars, new Random(4));
+		for (int i = 0; i < 18; i++)
+			kernels.add(new TestGroundKernel(10.0, new double[] {1.0, 1.0, -1.0},
+					new TestVariable[] {vars[i], vars[i+1], vars[i+2]}, 0.5));
+
+		ADMMReasoner reference = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+		double[] referenceValues = new double[vars.length];
+		for (int i = 0; i < vars.length; i++)
+			referenceValues[i] = vars[i].getValue();
+
+		double[] relaxations = {1.6, 1.0, 1.6};
+		boolean[] accelerations = {false, true, true};
+		for (int j = 0; j < relaxations.length; j++) {
+			resetVariables(vars);
+			config.setProperty(ADMMReasoner.RELAXATION_KEY, relaxations[j]);
+			config.setProperty(ADMMReasoner.ACCELERATED_KEY, accelerations[j]);
+			ADMMReasoner reasoner = new ADMMReasoner(config);
+			for (TestGroundKernel kernel : kernels)
+				reasoner.addGroundKernel(kernel);
+			reasoner.optimize();
+
+			for (int i = 0; i < vars.length; i++)
+				assertEquals(referenceValues[i], vars[i].getValue(), 1e-3);
+			assertTrue(reasoner.getIterations() < reference.getIterations());
+		}
+	}
+
+	@Test
+	public void testRelaxedIteration() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 2);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, Double.MIN_VALUE);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, Double.MIN_VALUE);
+		config.setProperty(ADMMReasoner.STEP_SIZE_KEY, 1.0);
+		config.setProperty(ADMMReasoner.RELAXATION_KEY, 1.5);
+		TestVariable[] vars = createVariables(1);
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		reasoner.addGroundKernel(new TestGroundKernel(0.5, new double[] {-1.0}, vars, -2.0));
+		reasoner.addGroundKernel(new TestGroundKernel(4.0, new double[] {1.0}, vars, 0.5));
+		reasoner.optimize();
+		assertEquals(2, reasoner.getIterations());
+		
+		/*
+		 * Iteration 1: y = (0, 0), x = (1.25, 0.5), and the relaxed copies
+		 * (1.625, 0.5) average to 1.0625, which is clipped to z = 1. The
+		 * multipliers no longer sum to zero.
+		 * 
+		 * Iteration 2: y = (0.625, -0.5), x = (1.1875, 11/18), and the relaxed
+		 * copies (1.28125, 5/12) plus y give z = (1.90625 - 1/12) / 2. Relaxing
+		 * y as well would give 181/192 instead.
+		 */
+		assertEquals(175.0 / 192.0, vars[0].getValue(), 1e-12);
+	}
+	
+	@Test
+	public void testLinearKernels() {
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 5000);
+		
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestLinearKernels", ArgumentType.Integer);
+		RandomVariableAtom[] atoms = new RandomVariableAtom[20];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		
+		/* Builds the same model from function definitions and from linear summands */
+		List<TestGroundKernel> kernels = new ArrayList<TestGroundKernel>();
+		List<TestGroundKernel> linearKernels = new ArrayList<TestGroundKernel>();
+		Random rand = new Random(4);
+		for (int i = 0; i < atoms.length; i++) {
+			double target = rand.nextDouble();
+			int previous = (i > 0) ? i - 1 : atoms.length - 1;
+			double[][] coeffs = {{1.0}, {-1.0}, {1.0, -1.0}, {0.5, -1.0, 0.5}};
+			RandomVariableAtom[][] kernelAtoms = {{atoms[i]}, {atoms[i]}, {atoms[previous], atoms[i]},
+					{atoms[i], atoms[previous], atoms[i]}};
+			double[] constants = {target, -target, 0.0, 0.1};
+			for (int j = 0; j < coeffs.length; j++) {
+				AtomFunctionVariable[] vars = new AtomFunctionVariable[kernelAtoms[j].length];
+				for (int k = 0; k < vars.length; k++)
+					vars[k] = kernelAtoms[j][k].getVariable();
+				kernels.add(new TestGroundKernel(1.0, coeffs[j], vars, constants[j]));
+				linearKernels.add(new LinearTestGroundKernel(1.0, coeffs[j], kernelAtoms[j], constants[j]));
+			}
+		}
+		
+		ADMMReasoner reference = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : kernels)
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+		double[] referenceValues = new double[atoms.length];
+		for (int i = 0; i < atoms.length; i++) {
+			referenceValues[i] = atoms[i].getValue();
+			atoms[i].setValue(0.5);
+		}
+		
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		for (TestGroundKernel kernel : linearKernels)
+			reasoner.addGroundKernel(kernel);
+		reasoner.optimize();
+		
+		assertEquals(reference.getIterations(), reasoner.getIterations());
+		for (int i = 0; i < atoms.length; i++)
+			assertEquals(referenceValues[i], atoms[i].getValue(), 1e-8);
+		assertTrue(reasoner.getBuildTime() > 0);
+	}
+	
+	@Test
+	public void testNeighbors() {
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestNeighbors", ArgumentType.Integer);
+		RandomVariableAtom[] atoms = new RandomVariableAtom[5];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		
+		/* Atom 4 shares no kernel with another atom */
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0, 1.0, -1.0},
+				new RandomVariableAtom[] {atoms[0], atoms[1], atoms[2]}, 0.5));
+		reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0, -1.0},
+				new RandomVariableAtom[] {atoms[3], atoms[1]}, 0.0));
+		reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0, -1.0},
+				new RandomVariableAtom[] {atoms[1], atoms[0]}, 0.0));
+		reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0},
+				new RandomVariableAtom[] {atoms[4]}, 0.0));
+		reasoner.optimize();
+		
+		ADMMReasonerState state = new ADMMReasonerState(reasoner);
+		assertEquals(atoms.length, state.getNumVariables());
+		int[] start = state.getNeighborStart();
+		int[] neighbors = state.getNeighbors();
+		int[][] expected = {{1, 2}, {0, 2, 3}, {0, 1}, {1}, {}};
+		for (int i = 0; i < atoms.length; i++) {
+			int index = state.getVariableIndex(atoms[i]);
+			assertEquals(atoms[i], state.getVariableAtom(index));
+			assertEquals(expected[i].length, start[index + 1] - start[index]);
+			int previous = -1;
+			for (int k = start[index]; k < start[index + 1]; k++) {
+				GroundAtom neighbor = state.getVariableAtom(neighbors[k]);
+				boolean found = false;
+				for (int j : expected[i])
+					found |= neighbor.equals(atoms[j]);
+				assertTrue(found);
+				assertTrue(neighbors[k] > previous);
+				previous = neighbors[k];
+			}
+		}
+	}
+	
+	@Test
+	public void testStateSnapshot() {
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestStateSnapshot", ArgumentType.Integer);
+		/* Stops before the Lagrange multipliers settle at 0 */
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 5);
+		RandomVariableAtom[] atoms = new RandomVariableAtom[3];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		LinearTestGroundKernel first = new LinearTestGroundKernel(1.0, new double[] {1.0, -1.0},
+				new RandomVariableAtom[] {atoms[0], atoms[1]}, 0.2);
+		LinearTestGroundKernel second = new LinearTestGroundKernel(1.0, new double[] {-1.0},
+				new RandomVariableAtom[] {atoms[0]}, -0.9);
+		reasoner.addGroundKernel(first);
+		reasoner.addGroundKernel(second);
+		reasoner.optimize();
+		
+		ADMMReasonerState state = new ADMMReasonerState(reasoner);
+		assertTrue(state.structure == new ADMMReasonerState(reasoner).structure);
+		assertEquals(2, state.getNumVariables());
+		assertEquals(-1, state.getVariableIndex(atoms[2]));
+		int index = state.getVariableIndex(atoms[0]);
+		double estimate = state.getConsensusEstimate(index);
+		assertEquals(atoms[0].getValue(), estimate, 1e-8);
+		assertEquals(2, state.getAtomKernels(atoms[0]).size());
+		assertTrue(state.getAtomKernels(atoms[0]).contains(second));
+		assertEquals(1, state.getAtomKernels(atoms[1]).size());
+		assertEquals(0, state.getAtomKernels(atoms[2]).size());
+		assertEquals(estimate, state.getVariableStates().get(atoms[0]).consensusEstimate, 0.0);
+		
+		/* Optimizing the same model again does not change the snapshot */
+		int location = state.structure.varLocStart[index];
+		double[] multipliers = new double[state.getNumVariableLocations(index)];
+		for (int k = 0; k < multipliers.length; k++)
+			multipliers[k] = state.getLagrangeMultiplier(location + k);
+		second.setWeight(new PositiveWeight(3.0));
+		reasoner.changedGroundKernelWeight(second);
+		reasoner.optimize();
+		ADMMReasonerState reoptimized = new ADMMReasonerState(reasoner);
+		assertTrue(state.structure == reoptimized.structure);
+		boolean changed = false;
+		for (int k = 0; k < multipliers.length; k++) {
+			assertEquals(multipliers[k], state.getLagrangeMultiplier(location + k), 0.0);
+			changed = changed || multipliers[k] != reoptimized.getLagrangeMultiplier(location + k);
+		}
+		assertTrue(changed);
+		assertEquals(estimate, state.getConsensusEstimate(index), 0.0);
+		
+		/* Changing the model gives later snapshots a new structure */
+		reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0, 1.0},
+				new RandomVariableAtom[] {atoms[1], atoms[2]}, 0.1));
+		reasoner.optimize();
+		ADMMReasonerState later = new ADMMReasonerState(reasoner);
+		assertTrue(state.structure != later.structure);
+		assertEquals(3, later.getNumVariables());
+		assertEquals(2, later.getAtomKernels(atoms[1]).size());
+		assertEquals(2, state.getNumVariables());
+		assertEquals(estimate, state.getConsensusEstimate(index), 0.0);
+	}
+	
+	@Test
+	public void testActivatorScores() {
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestActivatorScores", ArgumentType.Integer);
+		/* Enough atoms for the activator to divide them among threads */
+		RandomVariableAtom[] atoms = new RandomVariableAtom[2500];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		
+		Random rand = new Random(11235);
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		for (int i = 0; i < atoms.length; i++) {
+			reasoner.addGroundKernel(new LinearTestGroundKernel(1.0 + rand.nextDouble(), new double[] {-1.0},
+					new RandomVariableAtom[] {atoms[i]}, -rand.nextDouble()));
+			if (i > 0)
+				reasoner.addGroundKernel(new LinearTestGroundKernel(0.5, new double[] {1.0, -1.0},
+						new RandomVariableAtom[] {atoms[i-1], atoms[i]}, 0.0));
+		}
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 20);
+		reasoner.optimize();
+		ADMMReasonerState state = new ADMMReasonerState(reasoner);
+		
+		config.setProperty(ADMMStateActivator.NUM_THREADS, 3);
+		config.setProperty(ADMMStateActivator.SCORING_METHOD, "wtunsatisfiedtot");
+		double[] unsatisfied = new ADMMStateActivator(state, config).scoreVariablesByIndex();
+		config.setProperty(ADMMStateActivator.SCORING_METHOD, "lagrangemax");
+		double[] lagrange = new ADMMStateActivator(state, config).scoreVariablesByIndex();
+		
+		for (int i = 0; i < atoms.length; i++) {
+			int index = state.getVariableIndex(atoms[i]);
+			double expected = 0.0;
+			for (GroundKernel gk : state.getAtomKernels(atoms[i])) {
+				TestGroundKernel kernel = (TestGroundKernel) gk;
+				expected += kernel.getWeight().getWeight() * kernel.getIncompatibility();
+			}
+			assertEquals(expected, unsatisfied[index], 1e-10);
+			
+			expected = -1;
+			for (int k = state.structure.varLocStart[index]; k < state.structure.varLocStart[index+1]; k++)
+				expected = Math.max(expected, Math.abs(state.getLagrangeMultiplier(k)));
+			assertEquals(expected, lagrange[index], 0.0);
+		}
+		
+		/* Agrees with scoring in one thread and with the map of scores */
+		config.setProperty(ADMMStateActivator.NUM_THREADS, 1);
+		ADMMStateActivator activator = new ADMMStateActivator(state, config);
+		double[] byIndex = activator.scoreVariablesByIndex();
+		assertEquals(lagrange.length, byIndex.length);
+		for (int i = 0; i < lagrange.length; i++)
+			assertEquals(lagrange[i], byIndex[i], 0.0);
+		Map<GroundAtom, Double> scores = activator.scoreVariables();
+		assertEquals(atoms.length, scores.size());
+		for (int i = 0; i < atoms.length; i++)
+			assertEquals(lagrange[state.getVariableIndex(atoms[i])], scores.get(atoms[i]), 0.0);
+	}
+	
+	@Test
+	public void testFixedVariables() {
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestFixedVariables", ArgumentType.Integer);
+		RandomVariableAtom[] atoms = new RandomVariableAtom[4];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		
+		double[][] values = new double[2][];
+		for (int mode = 0; mode < 2; mode++) {
+			boolean fold = (mode == 1);
+			ADMMReasoner reasoner = new ADMMReasoner(config);
+			double[] targets = {0.1, 0.6, 0.8, 0.9};
+			for (int i = 0; i < atoms.length; i++) {
+				atoms[i].setValue(0.5);
+				reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0},
+						new RandomVariableAtom[] {atoms[i]}, targets[i]));
+				reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {-1.0},
+						new RandomVariableAtom[] {atoms[i]}, -targets[i]));
+				if (i > 0)
+					reasoner.addGroundKernel(new LinearTestGroundKernel(2.0, new double[] {1.0, -1.0},
+							new RandomVariableAtom[] {atoms[i-1], atoms[i]}, 0.0));
+			}
+			/* An atom in no term is still in the model */
+			RandomVariableAtom isolated = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(4)}, null, 0.5, 1.0) {};
+			reasoner.fixVariable(atoms[3].getVariable(), 0.2, fold);
+			reasoner.fixVariable(isolated.getVariable(), 0.7, fold);
+			reasoner.optimize();
+			
+			ADMMReasonerState state = new ADMMReasonerState(reasoner);
+			assertEquals(5, state.getNumVariables());
+			int index = state.getVariableIndex(atoms[3]);
+			assertEquals(0.2, atoms[3].getValue(), 0.0);
+			assertEquals(0.2, state.getConsensusEstimate(index), 0.0);
+			assertEquals(0.7, isolated.getValue(), 0.0);
+			assertEquals(0, state.getNumVariableLocations(state.getVariableIndex(isolated)));
+			/* Folding removes the copies of atom 3 and the terms of only atom 3 */
+			assertEquals(fold ? 0 : 3, state.getNumVariableLocations(index));
+			assertEquals(fold ? 9 : 11, state.structure.terms.length);
+			
+			values[mode] = new double[3];
+			for (int i = 0; i < 3; i++)
+				values[mode][i] = atoms[i].getValue();
+		}
+		for (int i = 0; i < 3; i++)
+			assertEquals(values[0][i], values[1][i], 1e-4);
+	}
+	
+	@Test
+	public void testDeadline() {
+		config.setProperty(ADMMReasoner.MAX_ITER_KEY, 25000);
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		TestVariable[] vars = createVariables(21);
+		for (TestGroundKernel kernel : buildChain(vars, new Random(4)))
+			reasoner.addGroundKernel(kernel);
+		
+		/* A deadline that has passed stops before the first iteration */
+		reasoner.setDeadline(System.nanoTime());
+		reasoner.optimize();
+		assertTrue(reasoner.isDeadlineReached());
+		assertEquals(0, reasoner.getIterations());
+		for (TestVariable var : vars)
+			assertEquals(0.5, var.getValue(), 0.0);
+		
+		/* A distant deadline does not change the result */
+		reasoner.setDeadline(System.nanoTime() + 60000000000L);
+		reasoner.optimize();
+		assertFalse(reasoner.isDeadlineReached());
+		double[] values = new double[vars.length];
+		for (int i = 0; i < vars.length; i++)
+			values[i] = vars[i].getValue();
+		ADMMReasonerState state = new ADMMReasonerState(reasoner);
+		assertFalse(state.isDeadlineReached());
+		assertEquals(reasoner.getPrimalResidual(), state.getPrimalResidual(), 0.0);
+		assertTrue(state.getOptimizeTime() > 0);
+		assertEquals(20, state.getNumActiveVariables());
+		
+		ADMMReasoner reference = new ADMMReasoner(config);
+		TestVariable[] referenceVars = createVariables(21);
+		for (TestGroundKernel kernel : buildChain(referenceVars, new Random(4)))
+			reference.addGroundKernel(kernel);
+		reference.optimize();
+		for (int i = 0; i < vars.length; i++)
+			assertEquals(referenceVars[i].getValue(), values[i], 1e-3);
+		
+		/* Stops after an iteration that checked the residuals */
+		config.setProperty(ADMMReasoner.STOP_CHECK_KEY, 5);
+		ADMMReasoner checked = new ADMMReasoner(config) {
+			private int calls = 0;
+			
+			@Override
+			protected boolean isPastDeadline() {
+				return ++calls > 2;
+			}
+		};
+		for (TestGroundKernel kernel : buildChain(createVariables(21), new Random(4)))
+			checked.addGroundKernel(kernel);
+		checked.optimize();
+		assertTrue(checked.isDeadlineReached());
+		assertEquals(6, checked.getIterations());
+		assertTrue(checked.getPrimalResidual() < Double.POSITIVE_INFINITY);
+	}
+	
+	@Test
+	public void testChangedRegion() {
+		StandardPredicate predicate = PredicateFactory.getFactory().createStandardPredicate(
+				"ADMMReasonerTestChangedRegion", ArgumentType.Integer);
+		final RandomVariableAtom[] atoms = new RandomVariableAtom[6];
+		for (int i = 0; i < atoms.length; i++)
+			atoms[i] = new RandomVariableAtom(predicate,
+					new GroundTerm[] {new IntegerAttribute(i)}, null, 0.5, 1.0) {};
+		final ObservedAtom evidence = new ObservedAtom(predicate,
+				new GroundTerm[] {new IntegerAttribute(100)}, null, 1.0, 1.0) {};
+		config.setProperty(ADMMReasoner.INCREMENTAL_KEY, true);
+		config.setProperty(ADMMReasoner.INCREMENTAL_MAX_FRACTION_KEY, 1.0);
+		
+		/* A chain of atoms, two of which share terms with the evidence */
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		for (int i = 1; i < atoms.length; i++)
+			reasoner.addGroundKernel(new LinearTestGroundKernel(1.0, new double[] {1.0, -1.0},
+					new RandomVariableAtom[] {atoms[i-1], atoms[i]}, 0.0));
+		GroundKernel[] evidenceKernels = new GroundKernel[2];
+		for (int j = 0; j < 2; j++) {
+			final RandomVariableAtom atom = atoms[2 + 2 * j];
+			evidenceKernels[j] = new LinearTestGroundKernel(1.0, new double[] {1.0},
+					new RandomVariableAtom[] {atom}, 0.8) {
+				@Override
+				public Set<GroundAtom> getAtoms() {
+					return new HashSet<GroundAtom>(Arrays.asList(atom, evidence));
+				}
+			};
+			reasoner.addGroundKernel(evidenceKernels[j]);
+		}
+		reasoner.optimize();
+		
+		ADMMReasonerState state = new ADMMReasonerState(reasoner);
+		assertEquals(2, state.getEvidenceTerms(evidence).length);
+		assertEquals(new HashSet<GroundKernel>(Arrays.asList(evidenceKernels)), state.getAtomKernels(evidence));
+		assertEquals(0, state.getEvidenceTerms(atoms[0]).length);
+		
+		ADMMReasonerState.ChangedRegion region = state.findChangedRegion(Arrays.asList(evidence), 0);
+		assertEquals(2, region.getTerms().length);
+		assertEquals(2, region.getVariables().length);
+		region = state.findChangedRegion(Arrays.asList(evidence), 1);
+		assertEquals(5, region.getVariables().length);
+		for (int k = 0; k < region.getVariables().length; k++) {
+			GroundAtom atom = state.getVariableAtom(region.getVariables()[k]);
+			boolean near = atom.equals(atoms[2]) || atom.equals(atoms[4]);
+			assertEquals(near ? 0 : 1, region.getDistances()[k]);
+			assertFalse(atom.equals(atoms[0]));
+		}
+		
+		/* Removing a term moves the last one into its place */
+		reasoner.removeGroundKernel(evidenceKernels[0]);
+		reasoner.optimize();
+		state = new ADMMReasonerState(reasoner);
+		int[] terms = state.getEvidenceTerms(evidence);
+		assertEquals(1, terms.length);
+		assertEquals(evidenceKernels[1], state.structure.kernels[terms[0]]);
+		region = state.findChangedRegion(Arrays.asList(evidence), 0);
+		assertEquals(atoms[4], state.getVariableAtom(region.getVariables()[0]));
+	}
+	
+	private TestVariable[] createVariables(int numVariables) {
+		TestVariable[] vars = new TestVariable[numVariables];
+		for (int i = 0; i < vars.length; i++)
+			vars[i] = new TestVariable(0.5);
+		return vars;
+	}
+	
+	private void resetVariables(AtomFunctionVariable[] vars) {
+		for (AtomFunctionVariable var : vars)
+			var.setValue(0.5);
+	}
+	
+	/**
+	 * Creates ground kernels over two to four distinct random variables each,
+	 * with coefficients of +1 or -1 and random constants and weights.
+	 */
+	private List<TestGroundKernel> buildRandomModel(AtomFunctionVariable[] vars, int numKernels, Random rand) {
+		List<TestGroundKernel> kernels = new ArrayList<TestGroundKernel>(numKernels);
+		for (int k = 0; k < numKernels; k++) {
+			List<AtomFunctionVariable> chosen = new ArrayList<AtomFunctionVariable>();
+			int size = 2 + rand.nextInt(3);
+			while (chosen.size() < size) {
+				AtomFunctionVariable var = vars[rand.nextInt(vars.length)];
+				if (!chosen.contains(var))
+					chosen.add(var);
+			}
+			double[] coeffs = new double[size];
+			for (int i = 0; i < size; i++)
+				coeffs[i] = (rand.nextBoolean()) ? 1.0 : -1.0;
+			kernels.add(new TestGroundKernel(1 + 9 * rand.nextDouble(), coeffs,
+					chosen.toArray(new AtomFunctionVariable[size]), rand.nextDouble() - 0.5));
+		}
+		return kernels;
+	}
+
+	/**
+	 * Creates a strictly convex model that pulls each of variables 0 through
+	 * 19 toward a random target and couples neighbors in a ring. Variable 20
+	 * is not used.
+	 * 
+	 * @return the ground kernels, three per variable
+	 */
+	private List<TestGroundKernel> buildChain(AtomFunctionVariable[] vars, Random rand) {
+		List<TestGroundKernel> kernels = new ArrayList<TestGroundKernel>();
+		/* Leaves the last variable out so changeChain can add it to the model */
+		for (int i = 0; i < vars.length - 1; i++) {
+			double target = rand.nextDouble();
+			kernels.add(new TestGroundKernel(1.0, new double[] {1.0}, new AtomFunctionVariable[] {vars[i]}, target));
+			kernels.add(new TestGroundKernel(1.0, new double[] {-1.0}, new AtomFunctionVariable[] {vars[i]}, -target));
+			int previous = (i > 0) ? i - 1 : vars.length - 2;
+			kernels.add(new TestGroundKernel(0.5, new double[] {1.0, -1.0},
+					new AtomFunctionVariable[] {vars[previous], vars[i]}, 0.0));
+		}
+		return kernels;
+	}
+
+	/**
+	 * Removes the kernels of variable 19, adds kernels for variable 20, and
+	 * changes the weight of a kernel of variable 3. The ring becomes a chain
+	 * from variable 0 to variable 20.
+	 */
+	private void changeChain(ADMMReasoner reasoner, TestVariable[] vars, List<TestGroundKernel> kernels) {
+		for (int i = 57; i < 60; i++)
+			reasoner.removeGroundKernel(kernels.get(i));
+		reasoner.removeGroundKernel(kernels.get(2));
+
+		reasoner.addGroundKernel(new TestGroundKernel(1.0, new double[] {1.0}, new TestVariable[] {vars[20]}, 0.25));
+		reasoner.addGroundKernel(new TestGroundKernel(1.0, new double[] {-1.0}, new TestVariable[] {vars[20]}, -0.25));
+		reasoner.addGroundKernel(new TestGroundKernel(0.5, new double[] {1.0, -1.0},
+				new TestVariable[] {vars[18], vars[20]}, 0.0));
+
+		TestGroundKernel changed = kernels.get(10);
+		changed.setWeight(new PositiveWeight(3.0));
+		reasoner.changedGroundKernel(changed);
+	}
+
+	/**
+	 * TestGroundKernel that also describes its function as linear summands.
+	 */
+	private static class LinearTestGroundKernel extends TestGroundKernel
+			implements LinearGroundCompatibilityKernel {
+		
+		private final double[] coeffs;
+		private final GroundAtom[] atoms;
+		private final double constant;
+		
+		private LinearTestGroundKernel(double weight, double[] coeffs, RandomVariableAtom[] atoms, double constant) {
+			super(weight, coeffs, getVariables(atoms), constant);
+			this.coeffs = coeffs;
+			this.atoms = atoms;
+			this.constant = constant;
+		}
+		
+		private static AtomFunctionVariable[] getVariables(RandomVariableAtom[] atoms) {
+			AtomFunctionVariable[] vars = new AtomFunctionVariable[atoms.length];
+			for (int i = 0; i < atoms.length; i++)
+				vars[i] = atoms[i].getVariable();
+			return vars;
+		}
+		
+		@Override
+		public Set<GroundAtom> getAtoms() {
+			return new HashSet<GroundAtom>(Arrays.asList(atoms));
+		}
+		
+		@Override
+		public boolean isSquared() {
+			return true;
+		}
+		
+		@Override
+		public boolean isHinge() {
+			return true;
+		}
+		
+		@Override
+		public int getNumLinearSummands() {
+			return atoms.length;
+		}
+		
+		@Override
+		public double getLinearSummands(GroundAtom[] atoms, double[] coeffs) {
+			System.arraycopy(this.atoms, 0, atoms, 0, this.atoms.length);
+			System.arraycopy(this.coeffs, 0, coeffs, 0, this.coeffs.length);
+			return -1 * constant;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+
+public class AsyncADMMReasonerTest {
+
+	private ConfigBundle config;
+
+	@Before
+	public final void setUp() throws ConfigurationException {
+		ConfigManager manager = ConfigManager.getManager();
+		config = manager.getBundle("dummy");
+		/* The shared thread pool has one thread per processor */
+		config.setProperty(ADMMReasoner.NUM_THREADS_KEY, Math.min(2, Runtime.getRuntime().availableProcessors()));
+		config.setProperty(ADMMReasoner.EPSILON_ABS_KEY, 1e-10);
+		config.setProperty(ADMMReasoner.EPSILON_REL_KEY, 1e-8);
+		config.setProperty(AsyncADMMReasoner.SAMPLE_SIZE_KEY, 40);
+	}
+
+	@Test
+	public void testMatchesSynchronous() {
+		ADMMReasoner sync = new ADMMReasoner(config);
+		populate(sync, 40, new Random(4));
+		sync.iterate();
+
+		ADMMReasoner async = new AsyncADMMReasoner(config);
+		populate(async, 40, new Random(4));
+		int iter = async.iterate();
+
+		assertEquals(iter, async.getIterations());
+		assertTrue(async.getPrimalResidual() < Double.POSITIVE_INFINITY);
+		assertTrue(async.getDualResidual() < Double.POSITIVE_INFINITY);
+		for (int i = 0; i < sync.z.length; i++)
+			assertEquals(sync.z[i], async.z[i], 1e-3);
+	}
+
+	/**
+	 * Pulls each variable toward a random target with a squared loss and
+	 * couples neighboring variables with squared hinge losses, so the
+	 * objective is strictly convex.
+	 */
+	private void populate(ADMMReasoner reasoner, int numVars, Random rand) {
+		reasoner.z = new double[numVars];
+		reasoner.lb = new double[numVars];
+		reasoner.ub = new double[numVars];
+		for (int i = 0; i < numVars; i++)
+			reasoner.ub[i] = 1.0;
+
+		reasoner.terms = new ArrayList<ADMMObjectiveTerm>();
+		for (int i = 0; i < numVars; i++) {
+			double target = rand.nextDouble();
+			reasoner.terms.add(new SquaredHingeLossTerm(reasoner, new int[] {i}, new double[] {1.0}, target, 1.0));
+			reasoner.terms.add(new SquaredHingeLossTerm(reasoner, new int[] {i}, new double[] {-1.0}, -target, 1.0));
+			if (i > 0)
+				reasoner.terms.add(new SquaredHingeLossTerm(reasoner, new int[] {i-1, i},
+						new double[] {1.0, -1.0}, 0.0, 0.5));
+		}
+		reasoner.buildVariableLocations();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class CholeskyCacheTest {
+
+	@Test
+	public void testFactor() {
+		CholeskyCache cache = new CholeskyCache(16);
+		double[] coeffs = {0.0, 1.0, -2.0, 0.5};
+		DoubleMatrix2D L = cache.getL(coeffs, 1, 3, 1.5, 0.7);
+
+		/* L * L^T should be 2 * weight * coeffs * coeffs^T + stepSize * I */
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				double product = 0.0;
+				for (int k = 0; k < 3; k++)
+					product += L.getQuick(i, k) * L.getQuick(j, k);
+				double expected = 2 * 1.5 * coeffs[1 + i] * coeffs[1 + j] + ((i == j) ? 0.7 : 0.0);
+				assertEquals(expected, product, 1e-10);
+			}
+		}
+	}
+
+	@Test
+	public void testSharedFactors() {
+		CholeskyCache cache = new CholeskyCache(1000);
+		DoubleMatrix2D L = cache.getL(new double[] {1.0, -1.0, 0.5}, 0, 3, 2.0, 1.0);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		/* Same system with scaled and negated coefficients */
+		assertSame(L, cache.getL(new double[] {-2.0, 2.0, -1.0}, 0, 3, 0.5, 1.0));
+		/* Different weight and step size */
+		assertNotSame(L, cache.getL(new double[] {1.0, -1.0, 0.5}, 0, 3, 3.0, 1.0));
+		assertNotSame(L, cache.getL(new double[] {1.0, -1.0, 0.5}, 0, 3, 2.0, 2.0));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		CholeskyCache cache = new CholeskyCache(1);
+		for (int i = 0; i < 100; i++)
+			cache.getL(new double[] {1.0, 1.0, 1.0}, 0, 3, i + 1, 1.0);
+		assertEquals(100, cache.getMisses());
+		/* Each of the stripes holds at most one factor */
+		assertEquals(100 - cache.size(), cache.getEvictions());
+		assertTrue(cache.size() <= 16);
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getEvictions());
+	}
+}
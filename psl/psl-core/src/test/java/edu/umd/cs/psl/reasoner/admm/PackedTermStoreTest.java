@@ -0,0 +1,103 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.psl.config.ConfigBundle;
+import edu.umd.cs.psl.config.ConfigManager;
+import edu.umd.cs.psl.reasoner.function.FunctionComparator;
+
+public class PackedTermStoreTest {
+
+	private ConfigBundle config;
+
+	@Before
+	public final void setUp() throws ConfigurationException {
+		ConfigManager manager = ConfigManager.getManager();
+		config = manager.getBundle("dummy");
+		config.setProperty("admmreasoner.stepsize", 0.5);
+	}
+
+	@Test
+	public void testLayout() {
+		ADMMReasoner reasoner = new ADMMReasoner(config);
+		reasoner.z = new double[] {0.3, 0.5, 0.1, 0.7};
+		reasoner.termStore = new PackedTermStore(6);
+
+		ADMMObjectiveTerm first = new HingeLossTerm(reasoner, new int[] {0, 1, 2},
+				new double[] {1.0, -0.5, 0.4}, -0.15, 1.0);
+		ADMMObjectiveTerm second = new LinearLossTerm(reasoner, new int[] {3, 0},
+				new double[] {0.3, -1.0}, 1.0);
+		ADMMObjectiveTerm third = new LinearConstraintTerm(reasoner, new int[] {1, 3},
+				new double[] {1.0, 1.0}, 1.0, FunctionComparator.Equality);
+
+		assertEquals(0, first.start);
+		assertEquals(3, second.start);
+		assertSame(first.x, second.x);
+		assertEquals(0, third.start);
+		assertNotSame(first.x, third.x);
+		assertEquals(2, reasoner.termStore.getNumSlabs());
+
+		/* Local copies start at the consensus values */
+		assertEquals(0.7, second.x[second.start], 1e-10);
+		assertEquals(3, second.zIndices[second.start]);
+	}
+
+	@Test
+	public void testMinimizeMatchesUnpacked() {
+		double[] z = {0.3, 0.5, 0.1, 0.7};
+		double[] y = {0.1, 0.0, -0.05};
+
+		ADMMReasoner unpackedReasoner = new ADMMReasoner(config);
+		unpackedReasoner.z = z;
+		ADMMReasoner packedReasoner = new ADMMReasoner(config);
+		packedReasoner.z = z;
+		packedReasoner.termStore = new PackedTermStore(16);
+
+		/* Offsets the packed terms from the start of the slab */
+		new LinearLossTerm(packedReasoner, new int[] {3, 0}, new double[] {0.3, -1.0}, 1.0);
+
+		ADMMObjectiveTerm[] unpacked = {
+				new HingeLossTerm(unpackedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, -0.15, 1.0),
+				new SquaredHingeLossTerm(unpackedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, -0.15, 1.0),
+				new LinearConstraintTerm(unpackedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, 0.2, FunctionComparator.Equality)
+		};
+		ADMMObjectiveTerm[] packed = {
+				new HingeLossTerm(packedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, -0.15, 1.0),
+				new SquaredHingeLossTerm(packedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, -0.15, 1.0),
+				new LinearConstraintTerm(packedReasoner, new int[] {0, 1, 2}, new double[] {1.0, -0.5, 0.4}, 0.2, FunctionComparator.Equality)
+		};
+
+		for (int t = 0; t < packed.length; t++) {
+			for (int i = 0; i < y.length; i++) {
+				unpacked[t].y[i] = y[i];
+				packed[t].y[packed[t].start + i] = y[i];
+			}
+			unpacked[t].minimize();
+			packed[t].minimize();
+			for (int i = 0; i < y.length; i++)
+				assertEquals(unpacked[t].x[i], packed[t].x[packed[t].start + i], 1e-10);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.reasoner.admm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Set;
+
+import edu.umd.cs.psl.model.atom.Atom;
+import edu.umd.cs.psl.model.atom.GroundAtom;
+import edu.umd.cs.psl.model.kernel.BindingMode;
+import edu.umd.cs.psl.model.kernel.CompatibilityKernel;
+import edu.umd.cs.psl.model.kernel.GroundCompatibilityKernel;
+import edu.umd.cs.psl.model.parameters.PositiveWeight;
+import edu.umd.cs.psl.model.parameters.Weight;
+import edu.umd.cs.psl.reasoner.function.AtomFunctionVariable;
+import edu.umd.cs.psl.reasoner.function.ConstantNumber;
+import edu.umd.cs.psl.reasoner.function.FunctionSum;
+import edu.umd.cs.psl.reasoner.function.FunctionSummand;
+import edu.umd.cs.psl.reasoner.function.FunctionTerm;
+import edu.umd.cs.psl.reasoner.function.MaxFunction;
+import edu.umd.cs.psl.reasoner.function.PowerOfTwo;
+
+/**
+ * Squared hinge-loss ground kernel over {@link AtomFunctionVariable AtomFunctionVariables},
+ * such as {@link TestVariable TestVariables}, for testing reasoners without a
+ * database.
+ */
+class TestGroundKernel implements GroundCompatibilityKernel {
+
+	/** Kernel shared by all TestGroundKernels */
+	static final CompatibilityKernel KERNEL = (CompatibilityKernel) Proxy.newProxyInstance(
+			CompatibilityKernel.class.getClassLoader(), new Class<?>[] {CompatibilityKernel.class},
+			new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("hashCode"))
+						return 0;
+					else if (method.getName().equals("equals"))
+						return proxy == args[0];
+					else if (method.getName().equals("toString"))
+						return "TestKernel";
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+
+	private final FunctionTerm function;
+	private Weight weight;
+
+	/**
+	 * Creates weight * [max(coeffs^T * vars - constant, 0)]^2
+	 */
+	TestGroundKernel(double weight, double[] coeffs, AtomFunctionVariable[] vars, double constant) {
+		FunctionSum sum = new FunctionSum();
+		for (int i = 0; i < vars.length; i++)
+			sum.add(new FunctionSummand(coeffs[i], vars[i]));
+		sum.add(new FunctionSummand(1.0, new ConstantNumber(-1 * constant)));
+		MaxFunction max = new MaxFunction();
+		max.add(sum);
+		max.add(new ConstantNumber(0.0));
+		this.function = new PowerOfTwo(max);
+		this.weight = new PositiveWeight(weight);
+	}
+
+	@Override
+	public boolean updateParameters() {
+		return false;
+	}
+
+	@Override
+	public CompatibilityKernel getKernel() {
+		return KERNEL;
+	}
+
+	@Override
+	public Set<GroundAtom> getAtoms() {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public BindingMode getBinding(Atom atom) {
+		return BindingMode.NoBinding;
+	}
+
+	@Override
+	public Weight getWeight() {
+		return weight;
+	}
+
+	@Override
+	public void setWeight(Weight w) {
+		weight = w;
+	}
+
+	@Override
+	public FunctionTerm getFunctionDefinition() {
+		return function;
+	}
+
+	@Override
+	public double getIncompatibility() {
+		return function.getValue();
+	}
+
+	/**
+	 * Variable with its own value instead of a {@link GroundAtom}. Equal only
+	 * to itself.
+	 */
+	static class TestVariable extends AtomFunctionVariable {
+		private double value;
+
+		TestVariable(double value) {
+			super(null);
+			this.value = value;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return false;
+		}
+
+		@Override
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public void setValue(double val) {
+			value = val;
+		}
+
+		@Override
+		public void setConfidence(double val) {
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+
+		@Override
+		public boolean equals(Object oth) {
+			return oth == this;
+		}
+
+		@Override
+		public String toString() {
+			return "TestVariable:" + value;
+		}
+	}
+}
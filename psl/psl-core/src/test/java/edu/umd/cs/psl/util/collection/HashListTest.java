@@ -0,0 +1,78 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HashListTest {
+
+	@Test
+	public void testSwapRemove() {
+		HashList<Integer> list = new HashList<Integer>();
+		List<Integer> reference = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++) {
+			list.add(i);
+			reference.add(i);
+		}
+
+		Random rand = new Random(5);
+		while (!reference.isEmpty()) {
+			int index = rand.nextInt(reference.size());
+			Integer removed = reference.get(index);
+			Integer last = reference.remove(reference.size() - 1);
+			if (index != reference.size())
+				reference.set(index, last);
+
+			assertEquals(removed, list.swapRemove(index));
+			assertFalse(list.contains(removed));
+			assertEquals(reference.size(), list.size());
+			for (int i = 0; i < reference.size(); i++) {
+				assertEquals(reference.get(i), list.get(i));
+				assertEquals(i, list.indexOf(reference.get(i)));
+			}
+		}
+	}
+
+	@Test
+	public void testRemoveWithDuplicates() {
+		HashList<String> list = new HashList<String>();
+		for (String s : new String[] {"a", "b", "a", "c", "b"})
+			list.add(s);
+
+		assertEquals("a", list.remove(0));
+		assertEquals(0, list.indexOf("b"));
+		assertEquals(1, list.indexOf("a"));
+		assertEquals(2, list.indexOf("c"));
+
+		assertEquals("b", list.remove(0));
+		assertEquals(0, list.indexOf("a"));
+		assertEquals(1, list.indexOf("c"));
+		assertEquals(2, list.indexOf("b"));
+
+		assertEquals("a", list.remove(0));
+		assertEquals(-1, list.indexOf("a"));
+		assertEquals(0, list.indexOf("c"));
+		assertEquals(1, list.indexOf("b"));
+	}
+}
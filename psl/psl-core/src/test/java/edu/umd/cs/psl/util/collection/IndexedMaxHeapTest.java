@@ -0,0 +1,85 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexedMaxHeapTest {
+
+	@Test
+	public void testOrder() {
+		IndexedMaxHeap heap = new IndexedMaxHeap(6);
+		heap.put(0, 0.5);
+		heap.put(1, 0.25);
+		heap.put(2, 0.5);
+		heap.put(3, 0.75);
+		heap.put(4, 0.1);
+		assertEquals(5, heap.size());
+		
+		/* Changes priorities in both directions */
+		heap.put(4, 1.0);
+		heap.put(3, 0.0);
+		heap.remove(1);
+		assertTrue(!heap.contains(1));
+		
+		assertEquals(4, heap.poll());
+		/* Ties are broken by the smaller key */
+		assertEquals(0, heap.poll());
+		assertEquals(2, heap.poll());
+		assertEquals(3, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		Random rand = new Random(9);
+		int capacity = 500;
+		IndexedMaxHeap heap = new IndexedMaxHeap(capacity);
+		double[] priorities = new double[capacity];
+		boolean[] present = new boolean[capacity];
+		for (int i = 0; i < 5000; i++) {
+			int key = rand.nextInt(capacity);
+			if (rand.nextInt(4) == 0) {
+				heap.remove(key);
+				present[key] = false;
+			}
+			else {
+				priorities[key] = rand.nextInt(50);
+				heap.put(key, priorities[key]);
+				present[key] = true;
+			}
+		}
+		
+		int previous = -1;
+		while (!heap.isEmpty()) {
+			int key = heap.poll();
+			assertTrue(present[key]);
+			present[key] = false;
+			if (previous != -1)
+				assertTrue(priorities[previous] > priorities[key]
+						|| (priorities[previous] == priorities[key] && previous < key));
+			previous = key;
+		}
+		for (boolean p : present)
+			assertTrue(!p);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Times sampling keys without replacement from a randomly weighted map.
+ * <p>
+ * Compares {@link MapSampler#sampleRepresentativeSet(Map, int, Random)}
+ * against a reference that removes each sampled key from a LinkedList and
+ * re-sums the remaining weights, as MapSampler did before, and which is
+ * O(n * k). Sizes at which the reference takes too long can be skipped by
+ * setting its size to 0.
+ * <p>
+ * Usage: MapSamplerBenchmark [mapSize] [numToSelect] [referenceMapSize]
+ */
+public class MapSamplerBenchmark {
+
+	public static void main(String[] args) {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		int numToSelect = (args.length > 1) ? Integer.parseInt(args[1]) : size / 10;
+		int referenceSize = (args.length > 2) ? Integer.parseInt(args[2]) : 20000;
+
+		Map<Integer, Double> map = generateMap(size, new Random(4));
+		long start = System.nanoTime();
+		Set<Integer> sample = MapSampler.sampleRepresentativeSet(map, numToSelect, new Random(4));
+		report("WeightedSampler", size, sample.size(), System.nanoTime() - start);
+
+		if (referenceSize > 0) {
+			int referenceToSelect = (int) ((long) numToSelect * referenceSize / size);
+			map = generateMap(referenceSize, new Random(4));
+			start = System.nanoTime();
+			sample = MapSampler.sampleRepresentativeSet(map, referenceToSelect, new Random(4));
+			report("WeightedSampler", referenceSize, sample.size(), System.nanoTime() - start);
+			start = System.nanoTime();
+			sample = sampleReference(map, referenceToSelect, new Random(4));
+			report("LinkedList reference", referenceSize, sample.size(), System.nanoTime() - start);
+		}
+	}
+
+	private static Map<Integer, Double> generateMap(int size, Random rand) {
+		Map<Integer, Double> map = new HashMap<Integer, Double>(size * 2);
+		for (int i = 0; i < size; i++)
+			map.put(i, rand.nextDouble());
+		return map;
+	}
+
+	private static void report(String name, int size, int selected, long nanos) {
+		System.out.println(String.format("%-22s %8d of %8d keys in %10.2f ms",
+				name, selected, size, nanos / 1e6));
+	}
+
+	/**
+	 * The sampling without replacement that MapSampler used before.
+	 */
+	static <K> Set<K> sampleReference(Map<K, Double> map, int numToSelect, Random rnd) {
+		Set<K> retSet = new HashSet<K>();
+		List<K> orderedKeys = new LinkedList<K>(map.keySet());
+		int toSelect = Math.min(numToSelect, map.size());
+		int sampleLimit = 10 * toSelect;
+		double total = computeTotal(map, orderedKeys);
+		int selected = 0;
+		int rounds = 0;
+		while (selected < toSelect && rounds < sampleLimit) {
+			rounds++;
+			double selector = total * rnd.nextDouble();
+			double curr = 0.0;
+			K select = orderedKeys.get(orderedKeys.size() - 1);
+			for (K key : orderedKeys) {
+				curr += Math.abs(map.get(key));
+				if (curr >= selector) {
+					select = key;
+					break;
+				}
+			}
+			if (!retSet.contains(select)) {
+				retSet.add(select);
+				orderedKeys.remove(select);
+				selected++;
+				total = computeTotal(map, orderedKeys);
+			}
+		}
+		return retSet;
+	}
+
+	private static <K> double computeTotal(Map<K, Double> map, List<K> keys) {
+		double total = 0.0;
+		for (K key : keys)
+			total += Math.abs(map.get(key));
+		return total;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKSelectorTest {
+
+	@Test
+	public void testSelect() {
+		Random rand = new Random(7);
+		double[] scores = new double[1000];
+		for (int i = 0; i < scores.length; i++)
+			scores[i] = rand.nextInt(100);
+		
+		double[] sorted = Arrays.copyOf(scores, scores.length);
+		Arrays.sort(sorted);
+		for (int k : new int[] {0, 1, 10, 999, 1000, 2000}) {
+			int[] top = TopKSelector.select(scores, null, k);
+			assertEquals(Math.min(k, scores.length), top.length);
+			for (int i = 0; i < top.length; i++) {
+				assertEquals(sorted[sorted.length - 1 - i], scores[top[i]], 0.0);
+				/* Ties are broken by index */
+				if (i > 0 && scores[top[i]] == scores[top[i-1]])
+					assertTrue(top[i] > top[i-1]);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelSelect() {
+		Random rand = new Random(13);
+		double[] scores = new double[100000];
+		int[] ids = new int[scores.length];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = rand.nextInt(1000);
+			ids[i] = scores.length - i;
+		}
+		
+		for (int k : new int[] {0, 1, 100, 2000, 60000}) {
+			assertArrayEquals(TopKSelector.select(scores, null, k), TopKSelector.select(scores, null, k, 4));
+			assertArrayEquals(TopKSelector.select(scores, ids, k), TopKSelector.select(scores, ids, k, 4));
+		}
+	}
+
+	@Test
+	public void testTieBreaking() {
+		double[] scores = {0.5, 0.9, 0.5, 0.5, 0.1};
+		int[] ids = {7, 3, 2, 9, 0};
+		assertArrayEquals(new int[] {1, 2, 0}, TopKSelector.select(scores, ids, 3));
+		assertArrayEquals(new int[] {1, 2, 0, 3, 4}, TopKSelector.select(scores, ids, 5));
+	}
+}
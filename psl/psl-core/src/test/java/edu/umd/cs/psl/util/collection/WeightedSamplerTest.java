@@ -0,0 +1,74 @@
+/*
+ * This file is part of the PSL software.
+ * Copyright 2011-2015 University of Maryland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.umd.cs.psl.util.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class WeightedSamplerTest {
+
+	@Test
+	public void testDistribution() {
+		double[] weights = {1.0, 0.0, 3.0, 6.0, 0.0, 10.0};
+		WeightedSampler sampler = new WeightedSampler(weights);
+		Random rand = new Random(11);
+		int[] counts = new int[weights.length];
+		int numSamples = 200000;
+		for (int i = 0; i < numSamples; i++)
+			counts[sampler.sample(rand)]++;
+		for (int i = 0; i < weights.length; i++)
+			assertEquals(weights[i] / 20.0, (double) counts[i] / numSamples, 0.005);
+		
+		/* Removed indices are no longer sampled */
+		sampler.remove(5);
+		sampler.remove(3);
+		assertEquals(2, sampler.getNumPositive());
+		for (int i = 0; i < 1000; i++) {
+			int index = sampler.sample(rand);
+			assertTrue(index == 0 || index == 2);
+		}
+		sampler.remove(0);
+		sampler.remove(2);
+		assertEquals(-1, sampler.sample(rand));
+	}
+
+	@Test
+	public void testSampleWithoutReplacement() {
+		Random rand = new Random(3);
+		double[] weights = new double[1000];
+		for (int i = 0; i < weights.length; i++)
+			weights[i] = (i % 10 == 0) ? 0.0 : rand.nextDouble();
+		
+		int[] sampled = WeightedSampler.sample(weights, 950, new Random(5));
+		assertEquals(950, sampled.length);
+		boolean[] seen = new boolean[weights.length];
+		for (int i = 0; i < sampled.length; i++) {
+			assertTrue(!seen[sampled[i]]);
+			seen[sampled[i]] = true;
+			/* Positive weights are exhausted before zero weights are used */
+			assertEquals(i >= 900, weights[sampled[i]] == 0.0);
+		}
+		
+		assertArrayEquals(sampled, WeightedSampler.sample(weights, 950, new Random(5)));
+		assertEquals(1000, WeightedSampler.sample(weights, 2000, new Random(5)).length);
+	}
+}